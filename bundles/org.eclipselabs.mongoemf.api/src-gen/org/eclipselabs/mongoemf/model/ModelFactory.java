@@ -83,6 +83,7 @@ public class ModelFactory extends EFactoryImpl
 		{
 			case ModelPackage.MONGO_CURSOR: return createMongoCursor();
 			case ModelPackage.MONGO_QUERY: return createMongoQuery();
+			case ModelPackage.MONGO_QUERY_RESULT: return createMongoQueryResult();
 			default:
 				throw new IllegalArgumentException("The class '" + eClass.getName() + "' is not a valid classifier");
 		}
@@ -160,6 +161,17 @@ public class ModelFactory extends EFactoryImpl
 		return mongoQuery;
 	}
 
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	public MongoQueryResult createMongoQueryResult()
+	{
+		MongoQueryResult mongoQueryResult = new MongoQueryResult();
+		return mongoQueryResult;
+	}
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
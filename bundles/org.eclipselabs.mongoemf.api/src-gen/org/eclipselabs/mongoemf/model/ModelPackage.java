@@ -137,6 +137,15 @@ public class ModelPackage extends EPackageImpl
 	 */
 	public static final int MONGO_CURSOR__OBJECT_BUILDER = ITERABLE_FEATURE_COUNT + 2;
 
+	/**
+	 * The feature id for the '<em><b>Detached</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_CURSOR__DETACHED = ITERABLE_FEATURE_COUNT + 3;
+
 	/**
 	 * The number of structural features of the '<em>Mongo Cursor</em>' class.
 	 * <!-- begin-user-doc -->
@@ -144,7 +153,7 @@ public class ModelPackage extends EPackageImpl
 	 * @generated
 	 * @ordered
 	 */
-	public static final int MONGO_CURSOR_FEATURE_COUNT = ITERABLE_FEATURE_COUNT + 3;
+	public static final int MONGO_CURSOR_FEATURE_COUNT = ITERABLE_FEATURE_COUNT + 4;
 
 	/**
 	 * The operation id for the '<em>Iterator</em>' operation.
@@ -155,6 +164,24 @@ public class ModelPackage extends EPackageImpl
 	 */
 	public static final int MONGO_CURSOR___ITERATOR = ITERABLE_OPERATION_COUNT + 0;
 
+	/**
+	 * The operation id for the '<em>Partition</em>' operation.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_CURSOR___PARTITION__INT = ITERABLE_OPERATION_COUNT + 1;
+
+	/**
+	 * The operation id for the '<em>Close</em>' operation.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_CURSOR___CLOSE = ITERABLE_OPERATION_COUNT + 2;
+
 	/**
 	 * The number of operations of the '<em>Mongo Cursor</em>' class.
 	 * <!-- begin-user-doc -->
@@ -162,7 +189,7 @@ public class ModelPackage extends EPackageImpl
 	 * @generated
 	 * @ordered
 	 */
-	public static final int MONGO_CURSOR_OPERATION_COUNT = ITERABLE_OPERATION_COUNT + 1;
+	public static final int MONGO_CURSOR_OPERATION_COUNT = ITERABLE_OPERATION_COUNT + 3;
 
 	/**
 	 * The meta object id for the '{@link org.eclipselabs.mongoemf.model.MongoQuery <em>Mongo Query</em>}' class.
@@ -219,6 +246,87 @@ public class ModelPackage extends EPackageImpl
 	 */
 	public static final int MONGO_QUERY__LIMIT = 4;
 
+	/**
+	 * The feature id for the '<em><b>Count</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__COUNT = 5;
+
+	/**
+	 * The feature id for the '<em><b>Distinct</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__DISTINCT = 6;
+
+	/**
+	 * The feature id for the '<em><b>Group</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__GROUP = 7;
+
+	/**
+	 * The feature id for the '<em><b>Pipeline</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__PIPELINE = 8;
+
+	/**
+	 * The feature id for the '<em><b>Hint</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__HINT = 9;
+
+	/**
+	 * The feature id for the '<em><b>Max Time MS</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__MAX_TIME_MS = 10;
+
+	/**
+	 * The feature id for the '<em><b>Batch Size</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__BATCH_SIZE = 11;
+
+	/**
+	 * The feature id for the '<em><b>Comment</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__COMMENT = 12;
+
+	/**
+	 * The feature id for the '<em><b>After</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__AFTER = 13;
+
 	/**
 	 * The number of structural features of the '<em>Mongo Query</em>' class.
 	 * <!-- begin-user-doc -->
@@ -226,7 +334,7 @@ public class ModelPackage extends EPackageImpl
 	 * @generated
 	 * @ordered
 	 */
-	public static final int MONGO_QUERY_FEATURE_COUNT = 5;
+	public static final int MONGO_QUERY_FEATURE_COUNT = 14;
 
 	/**
 	 * The number of operations of the '<em>Mongo Query</em>' class.
@@ -237,6 +345,61 @@ public class ModelPackage extends EPackageImpl
 	 */
 	public static final int MONGO_QUERY_OPERATION_COUNT = 0;
 
+	/**
+	 * The meta object id for the '{@link org.eclipselabs.mongoemf.model.MongoQueryResult <em>Mongo Query Result</em>}' class.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see org.eclipselabs.mongoemf.model.MongoQueryResult
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQueryResult()
+	 * @generated
+	 */
+	public static final int MONGO_QUERY_RESULT = 3;
+
+	/**
+	 * The feature id for the '<em><b>Count</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY_RESULT__COUNT = 0;
+
+	/**
+	 * The feature id for the '<em><b>Values</b></em>' attribute list.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY_RESULT__VALUES = 1;
+
+	/**
+	 * The feature id for the '<em><b>Groups</b></em>' attribute list.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY_RESULT__GROUPS = 2;
+
+	/**
+	 * The number of structural features of the '<em>Mongo Query Result</em>' class.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY_RESULT_FEATURE_COUNT = 3;
+
+	/**
+	 * The number of operations of the '<em>Mongo Query Result</em>' class.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY_RESULT_OPERATION_COUNT = 0;
+
 	/**
 	 * The meta object id for the '<em>DB Object</em>' data type.
 	 * <!-- begin-user-doc -->
@@ -245,7 +408,7 @@ public class ModelPackage extends EPackageImpl
 	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getDBObject()
 	 * @generated
 	 */
-	public static final int DB_OBJECT = 3;
+	public static final int DB_OBJECT = 4;
 
 	/**
 	 * The meta object id for the '<em>DB Cursor</em>' data type.
@@ -255,7 +418,7 @@ public class ModelPackage extends EPackageImpl
 	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getDBCursor()
 	 * @generated
 	 */
-	public static final int DB_CURSOR = 4;
+	public static final int DB_CURSOR = 5;
 
 	/**
 	 * The meta object id for the '<em>DB Collection</em>' data type.
@@ -265,7 +428,7 @@ public class ModelPackage extends EPackageImpl
 	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getDBCollection()
 	 * @generated
 	 */
-	public static final int DB_COLLECTION = 5;
+	public static final int DB_COLLECTION = 6;
 
 	/**
 	 * The meta object id for the '<em>EObject Builder</em>' data type.
@@ -275,7 +438,7 @@ public class ModelPackage extends EPackageImpl
 	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getEObjectBuilder()
 	 * @generated
 	 */
-	public static final int EOBJECT_BUILDER = 6;
+	public static final int EOBJECT_BUILDER = 7;
 
 	/**
 	 * The meta object id for the '<em>Iterator</em>' data type.
@@ -285,7 +448,7 @@ public class ModelPackage extends EPackageImpl
 	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getIterator()
 	 * @generated
 	 */
-	public static final int ITERATOR = 7;
+	public static final int ITERATOR = 8;
 
 	/**
 	 * <!-- begin-user-doc -->
@@ -308,6 +471,13 @@ public class ModelPackage extends EPackageImpl
 	 */
 	private EClass mongoQueryEClass = null;
 
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	private EClass mongoQueryResultEClass = null;
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
@@ -479,6 +649,20 @@ public class ModelPackage extends EPackageImpl
 		return (EAttribute)mongoCursorEClass.getEStructuralFeatures().get(2);
 	}
 
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoCursor#isDetached <em>Detached</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Detached</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoCursor#isDetached()
+	 * @see #getMongoCursor()
+	 * @generated
+	 */
+	public EAttribute getMongoCursor_Detached()
+	{
+		return (EAttribute)mongoCursorEClass.getEStructuralFeatures().get(3);
+	}
+
 	/**
 	 * Returns the meta object for the '{@link org.eclipselabs.mongoemf.model.MongoCursor#iterator() <em>Iterator</em>}' operation.
 	 * <!-- begin-user-doc -->
@@ -492,6 +676,32 @@ public class ModelPackage extends EPackageImpl
 		return mongoCursorEClass.getEOperations().get(0);
 	}
 
+	/**
+	 * Returns the meta object for the '{@link org.eclipselabs.mongoemf.model.MongoCursor#partition(int) <em>Partition</em>}' operation.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the '<em>Partition</em>' operation.
+	 * @see org.eclipselabs.mongoemf.model.MongoCursor#partition(int)
+	 * @generated
+	 */
+	public EOperation getMongoCursor__Partition__int()
+	{
+		return mongoCursorEClass.getEOperations().get(1);
+	}
+
+	/**
+	 * Returns the meta object for the '{@link org.eclipselabs.mongoemf.model.MongoCursor#close() <em>Close</em>}' operation.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the '<em>Close</em>' operation.
+	 * @see org.eclipselabs.mongoemf.model.MongoCursor#close()
+	 * @generated
+	 */
+	public EOperation getMongoCursor__Close()
+	{
+		return mongoCursorEClass.getEOperations().get(2);
+	}
+
 	/**
 	 * Returns the meta object for class '{@link org.eclipselabs.mongoemf.model.MongoQuery <em>Mongo Query</em>}'.
 	 * <!-- begin-user-doc -->
@@ -575,6 +785,187 @@ public class ModelPackage extends EPackageImpl
 		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(4);
 	}
 
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#isCount <em>Count</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Count</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#isCount()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_Count()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(5);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getDistinct <em>Distinct</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Distinct</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getDistinct()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_Distinct()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(6);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getGroup <em>Group</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Group</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getGroup()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_Group()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(7);
+	}
+
+	/**
+	 * Returns the meta object for the attribute list '{@link org.eclipselabs.mongoemf.model.MongoQuery#getPipeline <em>Pipeline</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute list '<em>Pipeline</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getPipeline()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_Pipeline()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(8);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getHint <em>Hint</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Hint</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getHint()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_Hint()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(9);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS <em>Max Time MS</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Max Time MS</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_MaxTimeMS()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(10);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize <em>Batch Size</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Batch Size</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_BatchSize()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(11);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getComment <em>Comment</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Comment</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getComment()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_Comment()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(12);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getAfter <em>After</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>After</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getAfter()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_After()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(13);
+	}
+
+	/**
+	 * Returns the meta object for class '{@link org.eclipselabs.mongoemf.model.MongoQueryResult <em>Mongo Query Result</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for class '<em>Mongo Query Result</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQueryResult
+	 * @generated
+	 */
+	public EClass getMongoQueryResult()
+	{
+		return mongoQueryResultEClass;
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQueryResult#getCount <em>Count</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Count</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQueryResult#getCount()
+	 * @see #getMongoQueryResult()
+	 * @generated
+	 */
+	public EAttribute getMongoQueryResult_Count()
+	{
+		return (EAttribute)mongoQueryResultEClass.getEStructuralFeatures().get(0);
+	}
+
+	/**
+	 * Returns the meta object for the attribute list '{@link org.eclipselabs.mongoemf.model.MongoQueryResult#getValues <em>Values</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute list '<em>Values</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQueryResult#getValues()
+	 * @see #getMongoQueryResult()
+	 * @generated
+	 */
+	public EAttribute getMongoQueryResult_Values()
+	{
+		return (EAttribute)mongoQueryResultEClass.getEStructuralFeatures().get(1);
+	}
+
+	/**
+	 * Returns the meta object for the attribute list '{@link org.eclipselabs.mongoemf.model.MongoQueryResult#getGroups <em>Groups</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute list '<em>Groups</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQueryResult#getGroups()
+	 * @see #getMongoQueryResult()
+	 * @generated
+	 */
+	public EAttribute getMongoQueryResult_Groups()
+	{
+		return (EAttribute)mongoQueryResultEClass.getEStructuralFeatures().get(2);
+	}
+
 	/**
 	 * Returns the meta object for data type '{@link com.mongodb.DBObject <em>DB Object</em>}'.
 	 * <!-- begin-user-doc -->
@@ -683,7 +1074,10 @@ public class ModelPackage extends EPackageImpl
 		createEAttribute(mongoCursorEClass, MONGO_CURSOR__DB_CURSOR);
 		createEAttribute(mongoCursorEClass, MONGO_CURSOR__DB_COLLECTION);
 		createEAttribute(mongoCursorEClass, MONGO_CURSOR__OBJECT_BUILDER);
+		createEAttribute(mongoCursorEClass, MONGO_CURSOR__DETACHED);
 		createEOperation(mongoCursorEClass, MONGO_CURSOR___ITERATOR);
+		createEOperation(mongoCursorEClass, MONGO_CURSOR___PARTITION__INT);
+		createEOperation(mongoCursorEClass, MONGO_CURSOR___CLOSE);
 
 		mongoQueryEClass = createEClass(MONGO_QUERY);
 		createEAttribute(mongoQueryEClass, MONGO_QUERY__FILTER);
@@ -691,6 +1085,20 @@ public class ModelPackage extends EPackageImpl
 		createEAttribute(mongoQueryEClass, MONGO_QUERY__SORT);
 		createEAttribute(mongoQueryEClass, MONGO_QUERY__SKIP);
 		createEAttribute(mongoQueryEClass, MONGO_QUERY__LIMIT);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__COUNT);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__DISTINCT);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__GROUP);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__PIPELINE);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__HINT);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__MAX_TIME_MS);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__BATCH_SIZE);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__COMMENT);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__AFTER);
+
+		mongoQueryResultEClass = createEClass(MONGO_QUERY_RESULT);
+		createEAttribute(mongoQueryResultEClass, MONGO_QUERY_RESULT__COUNT);
+		createEAttribute(mongoQueryResultEClass, MONGO_QUERY_RESULT__VALUES);
+		createEAttribute(mongoQueryResultEClass, MONGO_QUERY_RESULT__GROUPS);
 
 		// Create data types
 		dbObjectEDataType = createEDataType(DB_OBJECT);
@@ -741,15 +1149,35 @@ public class ModelPackage extends EPackageImpl
 		initEAttribute(getMongoCursor_DbCursor(), this.getDBCursor(), "dbCursor", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoCursor_DbCollection(), this.getDBCollection(), "dbCollection", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoCursor_ObjectBuilder(), this.getEObjectBuilder(), "objectBuilder", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoCursor_Detached(), theEcorePackage.getEBoolean(), "detached", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 
 		initEOperation(getMongoCursor__Iterator(), this.getIterator(), "iterator", 0, 1, !IS_UNIQUE, IS_ORDERED);
 
+		EOperation op = initEOperation(getMongoCursor__Partition__int(), this.getIterator(), "partition", 0, -1, !IS_UNIQUE, IS_ORDERED);
+		addEParameter(op, theEcorePackage.getEInt(), "count", 0, 1, !IS_UNIQUE, IS_ORDERED);
+
+		initEOperation(getMongoCursor__Close(), null, "close", 0, 1, !IS_UNIQUE, IS_ORDERED);
+
 		initEClass(mongoQueryEClass, MongoQuery.class, "MongoQuery", !IS_ABSTRACT, !IS_INTERFACE, IS_GENERATED_INSTANCE_CLASS);
 		initEAttribute(getMongoQuery_Filter(), this.getDBObject(), "filter", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoQuery_Projection(), this.getDBObject(), "projection", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoQuery_Sort(), this.getDBObject(), "sort", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoQuery_Skip(), theEcorePackage.getEIntegerObject(), "skip", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoQuery_Limit(), theEcorePackage.getEIntegerObject(), "limit", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_Count(), theEcorePackage.getEBoolean(), "count", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_Distinct(), theEcorePackage.getEString(), "distinct", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_Group(), this.getDBObject(), "group", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_Pipeline(), this.getDBObject(), "pipeline", null, 0, -1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_Hint(), theEcorePackage.getEJavaObject(), "hint", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_MaxTimeMS(), theEcorePackage.getEIntegerObject(), "maxTimeMS", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_BatchSize(), theEcorePackage.getEIntegerObject(), "batchSize", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_Comment(), theEcorePackage.getEString(), "comment", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_After(), theEcorePackage.getEString(), "after", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+
+		initEClass(mongoQueryResultEClass, MongoQueryResult.class, "MongoQueryResult", !IS_ABSTRACT, !IS_INTERFACE, IS_GENERATED_INSTANCE_CLASS);
+		initEAttribute(getMongoQueryResult_Count(), theEcorePackage.getELong(), "count", null, 0, 1, MongoQueryResult.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQueryResult_Values(), theEcorePackage.getEJavaObject(), "values", null, 0, -1, MongoQueryResult.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQueryResult_Groups(), this.getDBObject(), "groups", null, 0, -1, MongoQueryResult.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 
 		// Initialize data types
 		initEDataType(dbObjectEDataType, DBObject.class, "DBObject", IS_SERIALIZABLE, !IS_GENERATED_INSTANCE_CLASS);
@@ -821,6 +1249,14 @@ public class ModelPackage extends EPackageImpl
 		 */
 		public static final EAttribute MONGO_CURSOR__OBJECT_BUILDER = eINSTANCE.getMongoCursor_ObjectBuilder();
 
+		/**
+		 * The meta object literal for the '<em><b>Detached</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_CURSOR__DETACHED = eINSTANCE.getMongoCursor_Detached();
+
 		/**
 		 * The meta object literal for the '<em><b>Iterator</b></em>' operation.
 		 * <!-- begin-user-doc -->
@@ -829,6 +1265,22 @@ public class ModelPackage extends EPackageImpl
 		 */
 		public static final EOperation MONGO_CURSOR___ITERATOR = eINSTANCE.getMongoCursor__Iterator();
 
+		/**
+		 * The meta object literal for the '<em><b>Partition</b></em>' operation.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EOperation MONGO_CURSOR___PARTITION__INT = eINSTANCE.getMongoCursor__Partition__int();
+
+		/**
+		 * The meta object literal for the '<em><b>Close</b></em>' operation.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EOperation MONGO_CURSOR___CLOSE = eINSTANCE.getMongoCursor__Close();
+
 		/**
 		 * The meta object literal for the '{@link org.eclipselabs.mongoemf.model.MongoQuery <em>Mongo Query</em>}' class.
 		 * <!-- begin-user-doc -->
@@ -879,6 +1331,112 @@ public class ModelPackage extends EPackageImpl
 		 */
 		public static final EAttribute MONGO_QUERY__LIMIT = eINSTANCE.getMongoQuery_Limit();
 
+		/**
+		 * The meta object literal for the '<em><b>Count</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__COUNT = eINSTANCE.getMongoQuery_Count();
+
+		/**
+		 * The meta object literal for the '<em><b>Distinct</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__DISTINCT = eINSTANCE.getMongoQuery_Distinct();
+
+		/**
+		 * The meta object literal for the '<em><b>Group</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__GROUP = eINSTANCE.getMongoQuery_Group();
+
+		/**
+		 * The meta object literal for the '<em><b>Pipeline</b></em>' attribute list feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__PIPELINE = eINSTANCE.getMongoQuery_Pipeline();
+
+		/**
+		 * The meta object literal for the '<em><b>Hint</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__HINT = eINSTANCE.getMongoQuery_Hint();
+
+		/**
+		 * The meta object literal for the '<em><b>Max Time MS</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__MAX_TIME_MS = eINSTANCE.getMongoQuery_MaxTimeMS();
+
+		/**
+		 * The meta object literal for the '<em><b>Batch Size</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__BATCH_SIZE = eINSTANCE.getMongoQuery_BatchSize();
+
+		/**
+		 * The meta object literal for the '<em><b>Comment</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__COMMENT = eINSTANCE.getMongoQuery_Comment();
+
+		/**
+		 * The meta object literal for the '<em><b>After</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__AFTER = eINSTANCE.getMongoQuery_After();
+
+		/**
+		 * The meta object literal for the '{@link org.eclipselabs.mongoemf.model.MongoQueryResult <em>Mongo Query Result</em>}' class.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @see org.eclipselabs.mongoemf.model.MongoQueryResult
+		 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQueryResult()
+		 * @generated
+		 */
+		public static final EClass MONGO_QUERY_RESULT = eINSTANCE.getMongoQueryResult();
+
+		/**
+		 * The meta object literal for the '<em><b>Count</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY_RESULT__COUNT = eINSTANCE.getMongoQueryResult_Count();
+
+		/**
+		 * The meta object literal for the '<em><b>Values</b></em>' attribute list feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY_RESULT__VALUES = eINSTANCE.getMongoQueryResult_Values();
+
+		/**
+		 * The meta object literal for the '<em><b>Groups</b></em>' attribute list feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY_RESULT__GROUPS = eINSTANCE.getMongoQueryResult_Groups();
+
 		/**
 		 * The meta object literal for the '<em>DB Object</em>' data type.
 		 * <!-- begin-user-doc -->
@@ -25,6 +25,7 @@ import org.eclipse.emf.ecore.resource.Resource;
 
 import org.eclipselabs.mongoemf.EObjectBuilder;
 
+import org.eclipselabs.mongoemf.util.MongoCursorPartitioner;
 import org.eclipselabs.mongoemf.util.MongoIterator;
 
 /**
@@ -38,6 +39,7 @@ import org.eclipselabs.mongoemf.util.MongoIterator;
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#getDbCursor <em>Db Cursor</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#getDbCollection <em>Db Collection</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#getObjectBuilder <em>Object Builder</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#isDetached <em>Detached</em>}</li>
  * </ul>
  * </p>
  *
@@ -107,6 +109,26 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 	 */
 	protected EObjectBuilder objectBuilder = OBJECT_BUILDER_EDEFAULT;
 
+	/**
+	 * The default value of the '{@link #isDetached() <em>Detached</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #isDetached()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final boolean DETACHED_EDEFAULT = false;
+
+	/**
+	 * The cached value of the '{@link #isDetached() <em>Detached</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #isDetached()
+	 * @generated
+	 * @ordered
+	 */
+	protected boolean detached = DETACHED_EDEFAULT;
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
@@ -233,17 +255,75 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_CURSOR__OBJECT_BUILDER, oldObjectBuilder, objectBuilder));
 	}
 
+	/**
+	 * Returns the value of the '<em><b>Detached</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Detached</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Detached</em>' attribute.
+	 * @see #setDetached(boolean)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoCursor_Detached()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public boolean isDetached()
+	{
+		return detached;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoCursor#isDetached <em>Detached</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Detached</em>' attribute.
+	 * @see #isDetached()
+	 * @generated
+	 */
+	public void setDetached(boolean newDetached)
+	{
+		boolean oldDetached = detached;
+		detached = newDetached;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_CURSOR__DETACHED, oldDetached, detached));
+	}
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
 	 * @model dataType="org.eclipselabs.mongoemf.model.Iterator" unique="false"
-	 *        annotation="http://www.eclipse.org/emf/2002/GenModel body='<%org.eclipse.emf.ecore.resource.Resource%> _eResource = this.eResource();\nreturn new <%org.eclipselabs.mongoemf.util.MongoIterator%>(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder);'"
+	 *        annotation="http://www.eclipse.org/emf/2002/GenModel body='<%org.eclipse.emf.ecore.resource.Resource%> _eResource = this.eResource();\nreturn new <%org.eclipselabs.mongoemf.util.MongoIterator%>(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder, this.detached);'"
 	 * @generated
 	 */
 	public Iterator<EObject> iterator()
 	{
 		Resource _eResource = this.eResource();
-		return new MongoIterator(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder);
+		return new MongoIterator(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder, this.detached);
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @model dataType="org.eclipselabs.mongoemf.model.Iterator" unique="false" many="false" countUnique="false"
+	 *        annotation="http://www.eclipse.org/emf/2002/GenModel body='return <%org.eclipselabs.mongoemf.util.MongoCursorPartitioner%>.partition(this, count);'"
+	 * @generated
+	 */
+	public EList<Iterator<EObject>> partition(final int count)
+	{
+		return MongoCursorPartitioner.partition(this, count);
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @model annotation="http://www.eclipse.org/emf/2002/GenModel body='<%org.eclipselabs.mongoemf.util.MongoCursorPartitioner%>.close(this);'"
+	 * @generated
+	 */
+	public void close()
+	{
+		MongoCursorPartitioner.close(this);
 	}
 
 	/**
@@ -262,6 +342,8 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 				return getDbCollection();
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				return getObjectBuilder();
+			case ModelPackage.MONGO_CURSOR__DETACHED:
+				return isDetached();
 		}
 		return super.eGet(featureID, resolve, coreType);
 	}
@@ -285,6 +367,9 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				setObjectBuilder((EObjectBuilder)newValue);
 				return;
+			case ModelPackage.MONGO_CURSOR__DETACHED:
+				setDetached((Boolean)newValue);
+				return;
 		}
 		super.eSet(featureID, newValue);
 	}
@@ -308,6 +393,9 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				setObjectBuilder(OBJECT_BUILDER_EDEFAULT);
 				return;
+			case ModelPackage.MONGO_CURSOR__DETACHED:
+				setDetached(DETACHED_EDEFAULT);
+				return;
 		}
 		super.eUnset(featureID);
 	}
@@ -328,6 +416,8 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 				return DB_COLLECTION_EDEFAULT == null ? dbCollection != null : !DB_COLLECTION_EDEFAULT.equals(dbCollection);
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				return OBJECT_BUILDER_EDEFAULT == null ? objectBuilder != null : !OBJECT_BUILDER_EDEFAULT.equals(objectBuilder);
+			case ModelPackage.MONGO_CURSOR__DETACHED:
+				return detached != DETACHED_EDEFAULT;
 		}
 		return super.eIsSet(featureID);
 	}
@@ -344,6 +434,11 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 		{
 			case ModelPackage.MONGO_CURSOR___ITERATOR:
 				return iterator();
+			case ModelPackage.MONGO_CURSOR___PARTITION__INT:
+				return partition((Integer)arguments.get(0));
+			case ModelPackage.MONGO_CURSOR___CLOSE:
+				close();
+				return null;
 		}
 		return super.eInvoke(operationID, arguments);
 	}
@@ -365,6 +460,8 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 		result.append(dbCollection);
 		result.append(", objectBuilder: ");
 		result.append(objectBuilder);
+		result.append(", detached: ");
+		result.append(detached);
 		result.append(')');
 		return result.toString();
 	}
@@ -4,14 +4,20 @@ package org.eclipselabs.mongoemf.model;
 
 import com.mongodb.DBObject;
 
+import java.util.Collection;
+
 import org.eclipse.emf.common.notify.Notification;
 
+import org.eclipse.emf.common.util.EList;
+
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
 import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 
+import org.eclipse.emf.ecore.util.EDataTypeEList;
+
 /**
  * <!-- begin-user-doc -->
  * A representation of the model object '<em><b>Mongo Query</b></em>'.
@@ -25,6 +31,15 @@ import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getSort <em>Sort</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getSkip <em>Skip</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getLimit <em>Limit</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#isCount <em>Count</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getDistinct <em>Distinct</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getGroup <em>Group</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getPipeline <em>Pipeline</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getHint <em>Hint</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS <em>Max Time MS</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize <em>Batch Size</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getComment <em>Comment</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getAfter <em>After</em>}</li>
  * </ul>
  * </p>
  *
@@ -134,6 +149,176 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 	 */
 	protected Integer limit = LIMIT_EDEFAULT;
 
+	/**
+	 * The default value of the '{@link #isCount() <em>Count</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #isCount()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final boolean COUNT_EDEFAULT = false;
+
+	/**
+	 * The cached value of the '{@link #isCount() <em>Count</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #isCount()
+	 * @generated
+	 * @ordered
+	 */
+	protected boolean count = COUNT_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getDistinct() <em>Distinct</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getDistinct()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final String DISTINCT_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getDistinct() <em>Distinct</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getDistinct()
+	 * @generated
+	 * @ordered
+	 */
+	protected String distinct = DISTINCT_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getGroup() <em>Group</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getGroup()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final DBObject GROUP_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getGroup() <em>Group</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getGroup()
+	 * @generated
+	 * @ordered
+	 */
+	protected DBObject group = GROUP_EDEFAULT;
+
+	/**
+	 * The cached value of the '{@link #getPipeline() <em>Pipeline</em>}' attribute list.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getPipeline()
+	 * @generated
+	 * @ordered
+	 */
+	protected EList<DBObject> pipeline;
+
+	/**
+	 * The default value of the '{@link #getHint() <em>Hint</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getHint()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Object HINT_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getHint() <em>Hint</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getHint()
+	 * @generated
+	 * @ordered
+	 */
+	protected Object hint = HINT_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getMaxTimeMS() <em>Max Time MS</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getMaxTimeMS()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Integer MAX_TIME_MS_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getMaxTimeMS() <em>Max Time MS</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getMaxTimeMS()
+	 * @generated
+	 * @ordered
+	 */
+	protected Integer maxTimeMS = MAX_TIME_MS_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getBatchSize() <em>Batch Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getBatchSize()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Integer BATCH_SIZE_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getBatchSize() <em>Batch Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getBatchSize()
+	 * @generated
+	 * @ordered
+	 */
+	protected Integer batchSize = BATCH_SIZE_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getComment() <em>Comment</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getComment()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final String COMMENT_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getComment() <em>Comment</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getComment()
+	 * @generated
+	 * @ordered
+	 */
+	protected String comment = COMMENT_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getAfter() <em>After</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getAfter()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final String AFTER_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getAfter() <em>After</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getAfter()
+	 * @generated
+	 * @ordered
+	 */
+	protected String after = AFTER_EDEFAULT;
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
@@ -330,6 +515,309 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__LIMIT, oldLimit, limit));
 	}
 
+	/**
+	 * Returns the value of the '<em><b>Count</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Count</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Count</em>' attribute.
+	 * @see #setCount(boolean)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_Count()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public boolean isCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#isCount <em>Count</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Count</em>' attribute.
+	 * @see #isCount()
+	 * @generated
+	 */
+	public void setCount(boolean newCount)
+	{
+		boolean oldCount = count;
+		count = newCount;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__COUNT, oldCount, count));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Distinct</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Distinct</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Distinct</em>' attribute.
+	 * @see #setDistinct(String)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_Distinct()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public String getDistinct()
+	{
+		return distinct;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getDistinct <em>Distinct</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Distinct</em>' attribute.
+	 * @see #getDistinct()
+	 * @generated
+	 */
+	public void setDistinct(String newDistinct)
+	{
+		String oldDistinct = distinct;
+		distinct = newDistinct;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__DISTINCT, oldDistinct, distinct));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Group</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Group</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Group</em>' attribute.
+	 * @see #setGroup(DBObject)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_Group()
+	 * @model unique="false" dataType="org.eclipselabs.mongoemf.model.DBObject"
+	 * @generated
+	 */
+	public DBObject getGroup()
+	{
+		return group;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getGroup <em>Group</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Group</em>' attribute.
+	 * @see #getGroup()
+	 * @generated
+	 */
+	public void setGroup(DBObject newGroup)
+	{
+		DBObject oldGroup = group;
+		group = newGroup;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__GROUP, oldGroup, group));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Pipeline</b></em>' attribute list.
+	 * The list contents are of type {@link com.mongodb.DBObject}.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Pipeline</em>' attribute list isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Pipeline</em>' attribute list.
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_Pipeline()
+	 * @model unique="false" dataType="org.eclipselabs.mongoemf.model.DBObject"
+	 * @generated
+	 */
+	public EList<DBObject> getPipeline()
+	{
+		if (pipeline == null)
+		{
+			pipeline = new EDataTypeEList<DBObject>(DBObject.class, this, ModelPackage.MONGO_QUERY__PIPELINE);
+		}
+		return pipeline;
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Hint</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Hint</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Hint</em>' attribute.
+	 * @see #setHint(Object)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_Hint()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Object getHint()
+	{
+		return hint;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getHint <em>Hint</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Hint</em>' attribute.
+	 * @see #getHint()
+	 * @generated
+	 */
+	public void setHint(Object newHint)
+	{
+		Object oldHint = hint;
+		hint = newHint;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__HINT, oldHint, hint));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Max Time MS</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Max Time MS</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Max Time MS</em>' attribute.
+	 * @see #setMaxTimeMS(Integer)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_MaxTimeMS()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Integer getMaxTimeMS()
+	{
+		return maxTimeMS;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS <em>Max Time MS</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Max Time MS</em>' attribute.
+	 * @see #getMaxTimeMS()
+	 * @generated
+	 */
+	public void setMaxTimeMS(Integer newMaxTimeMS)
+	{
+		Integer oldMaxTimeMS = maxTimeMS;
+		maxTimeMS = newMaxTimeMS;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__MAX_TIME_MS, oldMaxTimeMS, maxTimeMS));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Batch Size</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Batch Size</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Batch Size</em>' attribute.
+	 * @see #setBatchSize(Integer)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_BatchSize()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Integer getBatchSize()
+	{
+		return batchSize;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize <em>Batch Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Batch Size</em>' attribute.
+	 * @see #getBatchSize()
+	 * @generated
+	 */
+	public void setBatchSize(Integer newBatchSize)
+	{
+		Integer oldBatchSize = batchSize;
+		batchSize = newBatchSize;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__BATCH_SIZE, oldBatchSize, batchSize));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Comment</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Comment</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Comment</em>' attribute.
+	 * @see #setComment(String)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_Comment()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public String getComment()
+	{
+		return comment;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getComment <em>Comment</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Comment</em>' attribute.
+	 * @see #getComment()
+	 * @generated
+	 */
+	public void setComment(String newComment)
+	{
+		String oldComment = comment;
+		comment = newComment;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__COMMENT, oldComment, comment));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>After</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>After</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>After</em>' attribute.
+	 * @see #setAfter(String)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_After()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public String getAfter()
+	{
+		return after;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getAfter <em>After</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>After</em>' attribute.
+	 * @see #getAfter()
+	 * @generated
+	 */
+	public void setAfter(String newAfter)
+	{
+		String oldAfter = after;
+		after = newAfter;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__AFTER, oldAfter, after));
+	}
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
@@ -350,6 +838,24 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 				return getSkip();
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				return getLimit();
+			case ModelPackage.MONGO_QUERY__COUNT:
+				return isCount();
+			case ModelPackage.MONGO_QUERY__DISTINCT:
+				return getDistinct();
+			case ModelPackage.MONGO_QUERY__GROUP:
+				return getGroup();
+			case ModelPackage.MONGO_QUERY__PIPELINE:
+				return getPipeline();
+			case ModelPackage.MONGO_QUERY__HINT:
+				return getHint();
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				return getMaxTimeMS();
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				return getBatchSize();
+			case ModelPackage.MONGO_QUERY__COMMENT:
+				return getComment();
+			case ModelPackage.MONGO_QUERY__AFTER:
+				return getAfter();
 		}
 		return super.eGet(featureID, resolve, coreType);
 	}
@@ -359,6 +865,7 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 	 * <!-- end-user-doc -->
 	 * @generated
 	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public void eSet(int featureID, Object newValue)
 	{
@@ -379,6 +886,34 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				setLimit((Integer)newValue);
 				return;
+			case ModelPackage.MONGO_QUERY__COUNT:
+				setCount((Boolean)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__DISTINCT:
+				setDistinct((String)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__GROUP:
+				setGroup((DBObject)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__PIPELINE:
+				getPipeline().clear();
+				getPipeline().addAll((Collection<? extends DBObject>)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__HINT:
+				setHint(newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				setMaxTimeMS((Integer)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				setBatchSize((Integer)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__COMMENT:
+				setComment((String)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__AFTER:
+				setAfter((String)newValue);
+				return;
 		}
 		super.eSet(featureID, newValue);
 	}
@@ -408,6 +943,33 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				setLimit(LIMIT_EDEFAULT);
 				return;
+			case ModelPackage.MONGO_QUERY__COUNT:
+				setCount(COUNT_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__DISTINCT:
+				setDistinct(DISTINCT_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__GROUP:
+				setGroup(GROUP_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__PIPELINE:
+				getPipeline().clear();
+				return;
+			case ModelPackage.MONGO_QUERY__HINT:
+				setHint(HINT_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				setMaxTimeMS(MAX_TIME_MS_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				setBatchSize(BATCH_SIZE_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__COMMENT:
+				setComment(COMMENT_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__AFTER:
+				setAfter(AFTER_EDEFAULT);
+				return;
 		}
 		super.eUnset(featureID);
 	}
@@ -432,6 +994,24 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 				return SKIP_EDEFAULT == null ? skip != null : !SKIP_EDEFAULT.equals(skip);
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				return LIMIT_EDEFAULT == null ? limit != null : !LIMIT_EDEFAULT.equals(limit);
+			case ModelPackage.MONGO_QUERY__COUNT:
+				return count != COUNT_EDEFAULT;
+			case ModelPackage.MONGO_QUERY__DISTINCT:
+				return DISTINCT_EDEFAULT == null ? distinct != null : !DISTINCT_EDEFAULT.equals(distinct);
+			case ModelPackage.MONGO_QUERY__GROUP:
+				return GROUP_EDEFAULT == null ? group != null : !GROUP_EDEFAULT.equals(group);
+			case ModelPackage.MONGO_QUERY__PIPELINE:
+				return pipeline != null && !pipeline.isEmpty();
+			case ModelPackage.MONGO_QUERY__HINT:
+				return HINT_EDEFAULT == null ? hint != null : !HINT_EDEFAULT.equals(hint);
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				return MAX_TIME_MS_EDEFAULT == null ? maxTimeMS != null : !MAX_TIME_MS_EDEFAULT.equals(maxTimeMS);
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				return BATCH_SIZE_EDEFAULT == null ? batchSize != null : !BATCH_SIZE_EDEFAULT.equals(batchSize);
+			case ModelPackage.MONGO_QUERY__COMMENT:
+				return COMMENT_EDEFAULT == null ? comment != null : !COMMENT_EDEFAULT.equals(comment);
+			case ModelPackage.MONGO_QUERY__AFTER:
+				return AFTER_EDEFAULT == null ? after != null : !AFTER_EDEFAULT.equals(after);
 		}
 		return super.eIsSet(featureID);
 	}
@@ -457,6 +1037,24 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 		result.append(skip);
 		result.append(", limit: ");
 		result.append(limit);
+		result.append(", count: ");
+		result.append(count);
+		result.append(", distinct: ");
+		result.append(distinct);
+		result.append(", group: ");
+		result.append(group);
+		result.append(", pipeline: ");
+		result.append(pipeline);
+		result.append(", hint: ");
+		result.append(hint);
+		result.append(", maxTimeMS: ");
+		result.append(maxTimeMS);
+		result.append(", batchSize: ");
+		result.append(batchSize);
+		result.append(", comment: ");
+		result.append(comment);
+		result.append(", after: ");
+		result.append(after);
 		result.append(')');
 		return result.toString();
 	}
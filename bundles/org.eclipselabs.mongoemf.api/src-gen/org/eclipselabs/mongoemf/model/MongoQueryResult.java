@@ -0,0 +1,293 @@
+/**
+ */
+package org.eclipselabs.mongoemf.model;
+
+import com.mongodb.DBObject;
+
+import java.util.Collection;
+
+import org.eclipse.emf.common.notify.Notification;
+
+import org.eclipse.emf.common.util.EList;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+
+import org.eclipse.emf.ecore.impl.ENotificationImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
+
+import org.eclipse.emf.ecore.util.EDataTypeEList;
+
+/**
+ * <!-- begin-user-doc -->
+ * A representation of the model object '<em><b>Mongo Query Result</b></em>'.
+ * <!-- end-user-doc -->
+ *
+ * <p>
+ * The following features are supported:
+ * <ul>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQueryResult#getCount <em>Count</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQueryResult#getValues <em>Values</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQueryResult#getGroups <em>Groups</em>}</li>
+ * </ul>
+ * </p>
+ *
+ * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQueryResult()
+ * @model kind="class"
+ * @generated
+ */
+public class MongoQueryResult extends MinimalEObjectImpl.Container implements EObject
+{
+	/**
+	 * The default value of the '{@link #getCount() <em>Count</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getCount()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final long COUNT_EDEFAULT = 0L;
+
+	/**
+	 * The cached value of the '{@link #getCount() <em>Count</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getCount()
+	 * @generated
+	 * @ordered
+	 */
+	protected long count = COUNT_EDEFAULT;
+
+	/**
+	 * The cached value of the '{@link #getValues() <em>Values</em>}' attribute list.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getValues()
+	 * @generated
+	 * @ordered
+	 */
+	protected EList<Object> values;
+
+	/**
+	 * The cached value of the '{@link #getGroups() <em>Groups</em>}' attribute list.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getGroups()
+	 * @generated
+	 * @ordered
+	 */
+	protected EList<DBObject> groups;
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	protected MongoQueryResult()
+	{
+		super();
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	@Override
+	protected EClass eStaticClass()
+	{
+		return ModelPackage.Literals.MONGO_QUERY_RESULT;
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Count</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Count</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Count</em>' attribute.
+	 * @see #setCount(long)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQueryResult_Count()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQueryResult#getCount <em>Count</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Count</em>' attribute.
+	 * @see #getCount()
+	 * @generated
+	 */
+	public void setCount(long newCount)
+	{
+		long oldCount = count;
+		count = newCount;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY_RESULT__COUNT, oldCount, count));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Values</b></em>' attribute list.
+	 * The list contents are of type {@link java.lang.Object}.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Values</em>' attribute list isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Values</em>' attribute list.
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQueryResult_Values()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public EList<Object> getValues()
+	{
+		if (values == null)
+		{
+			values = new EDataTypeEList<Object>(Object.class, this, ModelPackage.MONGO_QUERY_RESULT__VALUES);
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Groups</b></em>' attribute list.
+	 * The list contents are of type {@link com.mongodb.DBObject}.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Groups</em>' attribute list isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Groups</em>' attribute list.
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQueryResult_Groups()
+	 * @model unique="false" dataType="org.eclipselabs.mongoemf.model.DBObject"
+	 * @generated
+	 */
+	public EList<DBObject> getGroups()
+	{
+		if (groups == null)
+		{
+			groups = new EDataTypeEList<DBObject>(DBObject.class, this, ModelPackage.MONGO_QUERY_RESULT__GROUPS);
+		}
+		return groups;
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	@Override
+	public Object eGet(int featureID, boolean resolve, boolean coreType)
+	{
+		switch (featureID)
+		{
+			case ModelPackage.MONGO_QUERY_RESULT__COUNT:
+				return getCount();
+			case ModelPackage.MONGO_QUERY_RESULT__VALUES:
+				return getValues();
+			case ModelPackage.MONGO_QUERY_RESULT__GROUPS:
+				return getGroups();
+		}
+		return super.eGet(featureID, resolve, coreType);
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void eSet(int featureID, Object newValue)
+	{
+		switch (featureID)
+		{
+			case ModelPackage.MONGO_QUERY_RESULT__COUNT:
+				setCount((Long)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY_RESULT__VALUES:
+				getValues().clear();
+				getValues().addAll((Collection<? extends Object>)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY_RESULT__GROUPS:
+				getGroups().clear();
+				getGroups().addAll((Collection<? extends DBObject>)newValue);
+				return;
+		}
+		super.eSet(featureID, newValue);
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	@Override
+	public void eUnset(int featureID)
+	{
+		switch (featureID)
+		{
+			case ModelPackage.MONGO_QUERY_RESULT__COUNT:
+				setCount(COUNT_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY_RESULT__VALUES:
+				getValues().clear();
+				return;
+			case ModelPackage.MONGO_QUERY_RESULT__GROUPS:
+				getGroups().clear();
+				return;
+		}
+		super.eUnset(featureID);
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	@Override
+	public boolean eIsSet(int featureID)
+	{
+		switch (featureID)
+		{
+			case ModelPackage.MONGO_QUERY_RESULT__COUNT:
+				return count != COUNT_EDEFAULT;
+			case ModelPackage.MONGO_QUERY_RESULT__VALUES:
+				return values != null && !values.isEmpty();
+			case ModelPackage.MONGO_QUERY_RESULT__GROUPS:
+				return groups != null && !groups.isEmpty();
+		}
+		return super.eIsSet(featureID);
+	}
+
+	/**
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 */
+	@Override
+	public String toString()
+	{
+		if (eIsProxy()) return super.toString();
+
+		StringBuffer result = new StringBuffer(super.toString());
+		result.append(" (count: ");
+		result.append(count);
+		result.append(", values: ");
+		result.append(values);
+		result.append(", groups: ");
+		result.append(groups);
+		result.append(')');
+		return result.toString();
+	}
+
+} // MongoQueryResult
@@ -92,6 +92,11 @@ public class ModelAdapterFactory extends AdapterFactoryImpl
 				return createMongoQueryAdapter();
 			}
 			@Override
+			public Adapter caseMongoQueryResult(MongoQueryResult object)
+			{
+				return createMongoQueryResultAdapter();
+			}
+			@Override
 			public Adapter defaultCase(EObject object)
 			{
 				return createEObjectAdapter();
@@ -158,6 +163,21 @@ public class ModelAdapterFactory extends AdapterFactoryImpl
 		return null;
 	}
 
+	/**
+	 * Creates a new adapter for an object of class '{@link org.eclipselabs.mongoemf.model.MongoQueryResult <em>Mongo Query Result</em>}'.
+	 * <!-- begin-user-doc -->
+	 * This default implementation returns null so that we can easily ignore cases;
+	 * it's useful to ignore a case when inheritance will catch all the cases anyway.
+	 * <!-- end-user-doc -->
+	 * @return the new adapter.
+	 * @see org.eclipselabs.mongoemf.model.MongoQueryResult
+	 * @generated
+	 */
+	public Adapter createMongoQueryResultAdapter()
+	{
+		return null;
+	}
+
 	/**
 	 * Creates a new adapter for the default case.
 	 * <!-- begin-user-doc -->
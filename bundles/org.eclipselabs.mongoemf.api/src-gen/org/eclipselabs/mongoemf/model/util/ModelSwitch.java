@@ -96,6 +96,13 @@ public class ModelSwitch<T> extends Switch<T>
 				if (result == null) result = defaultCase(theEObject);
 				return result;
 			}
+			case ModelPackage.MONGO_QUERY_RESULT:
+			{
+				MongoQueryResult mongoQueryResult = (MongoQueryResult)theEObject;
+				T result = caseMongoQueryResult(mongoQueryResult);
+				if (result == null) result = defaultCase(theEObject);
+				return result;
+			}
 			default: return defaultCase(theEObject);
 		}
 	}
@@ -148,6 +155,22 @@ public class ModelSwitch<T> extends Switch<T>
 		return null;
 	}
 
+	/**
+	 * Returns the result of interpreting the object as an instance of '<em>Mongo Query Result</em>'.
+	 * <!-- begin-user-doc -->
+	 * This implementation returns null;
+	 * returning a non-null result will terminate the switch.
+	 * <!-- end-user-doc -->
+	 * @param object the target of the switch.
+	 * @return the result of interpreting the object as an instance of '<em>Mongo Query Result</em>'.
+	 * @see #doSwitch(org.eclipse.emf.ecore.EObject) doSwitch(EObject)
+	 * @generated
+	 */
+	public T caseMongoQueryResult(MongoQueryResult object)
+	{
+		return null;
+	}
+
 	/**
 	 * Returns the result of interpreting the object as an instance of '<em>EObject</em>'.
 	 * <!-- begin-user-doc -->
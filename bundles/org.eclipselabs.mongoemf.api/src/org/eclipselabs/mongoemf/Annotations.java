@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+/**
+ * These constants are used to annotate model elements to control how they are stored
+ * in MongoDB. The annotation source must be SOURCE, and the details map the keys
+ * below to their values.
+ * 
+ * <code>
+ * &lt;eAnnotations source="http://www.eclipselabs.org/mongoemf"&gt;
+ *   &lt;details key="encoding" value="ordinal"/&gt;
+ * &lt;/eAnnotations&gt;
+ * </code>
+ * 
+ * @author bhunt
+ * 
+ */
+public interface Annotations
+{
+	/**
+	 * The source of all MongoEMF annotations.
+	 */
+	String SOURCE = "http://www.eclipselabs.org/mongoemf";
+
+	/**
+	 * The details key that selects how the values of the annotated element are encoded.
+	 */
+	String ENCODING = "encoding";
+
+	/**
+	 * When used as the ENCODING of an EEnum, literals are stored as their integer value instead
+	 * of their literal string. The value of a literal is its ordinal unless it was explicitly
+	 * assigned in the model.
+	 */
+	String ENCODING_ORDINAL = "ordinal";
+
+	/**
+	 * When used as the ENCODING of a many-valued attribute of type int, long, short, float or
+	 * double, the values are stored as a single little-endian byte array instead of an array
+	 * of numbers. The values cannot be queried individually.
+	 */
+	String ENCODING_PACKED = "packed";
+
+	/**
+	 * When used as the ENCODING of a single-valued byte[] or String attribute, values at or
+	 * above the compression threshold of the builder factory are deflated and stored as
+	 * tagged binary. Compressed values cannot be queried.
+	 */
+	String ENCODING_COMPRESSED = "compressed";
+
+	/**
+	 * When used as the ENCODING of a containment reference, the contained objects and all of
+	 * their contents are stored as a single binary value in EMF's binary resource format
+	 * instead of as embedded documents. The contained objects cannot be queried.
+	 */
+	String ENCODING_BINARY = "binary";
+
+	/**
+	 * The details key that selects where the value of the annotated attribute is stored.
+	 */
+	String STORAGE = "storage";
+
+	/**
+	 * When used as the STORAGE of a single-valued byte[] or String attribute, the value is
+	 * stored in a GridFS bucket named after the collection and the document only holds a
+	 * handle to it. The value is not read when the object is loaded; use ExternalValues to
+	 * stream or resolve it.
+	 */
+	String STORAGE_EXTERNAL = "external";
+}
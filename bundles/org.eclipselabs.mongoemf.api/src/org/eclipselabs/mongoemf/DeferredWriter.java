@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * Receives the MongoDB objects built when a resource is saved with Options.OPTION_DEFERRED_WRITER
+ * instead of having them written to the collection. The objects are complete, including their
+ * _id and time stamp, so the writer is free to write them later in batches. The objects of a
+ * resource are passed in the order of its contents. Implementations must be thread safe if
+ * resources are saved concurrently.
+ * 
+ * @author bhunt
+ */
+public interface DeferredWriter
+{
+	/**
+	 * Called for each object built by a save.
+	 * 
+	 * @param collection the MongoDB collection the object belongs to
+	 * @param dbObject the object to write
+	 * @param insert true if the object is new and its _id was generated by the save; false if
+	 *          the object must be upserted
+	 * @param written run once the object has been written, and not run if the write fails - may
+	 *          be null. If the object replaces a queued object with the same id, only the callback
+	 *          of the object that is written is run.
+	 */
+	void write(DBCollection collection, DBObject dbObject, boolean insert, Runnable written);
+}
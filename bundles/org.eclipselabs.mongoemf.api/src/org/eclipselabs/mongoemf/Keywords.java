@@ -38,5 +38,9 @@ public interface Keywords
 	 * MongoDB Timestamp field identifier. Not intended to be used by clients.
 	 */
 	public static final String TIME_STAMP_KEY = "_timeStamp";
+	/**
+	 * MongoDB external value handle field identifier. Not intended to be used by clients.
+	 */
+	public static final String EXTERNAL_KEY = "_eExternal";
 
 }
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * Checks the existence and time stamps of many objects without reading their documents. The
+ * MongoDB URI handler implements this interface, so it can be obtained with:
+ * 
+ * <code>
+ * MetadataProbe probe = (MetadataProbe) resourceSet.getURIConverter().getURIHandler(uri);
+ * </code>
+ * 
+ * @author bhunt
+ */
+public interface MetadataProbe
+{
+	/**
+	 * Looks up the time stamps of the objects identified by the URIs. The URIs must be of the
+	 * form mongodb://host/database/collection/id and may be in different collections. A single
+	 * query is issued per collection, projected to the _id and time stamp so it can be covered
+	 * by an index on { _id : 1, _timeStamp : 1 }.
+	 * 
+	 * @param uris the URIs of the objects
+	 * @param options the load options
+	 * @return the URIs of the objects that exist mapped to their time stamps - the time stamp is
+	 *         null for objects saved without one
+	 * @throws IOException if a URI is malformed or its database is not available
+	 */
+	Map<URI, Long> probe(Collection<URI> uris, Map<?, ?> options) throws IOException;
+}
@@ -61,6 +61,56 @@ public interface Options
 	 */
 	String OPTION_WRITE_CONCERN = "WRITE_CONCERN";
 
+	/**
+	 * If set, the objects built when a resource is saved are passed to the DeferredWriter instead
+	 * of being written to MongoDB. Ids of new objects are generated by the client so that the
+	 * resource URI can be updated as usual. This is used by BulkSave to group the writes of many
+	 * resources.
+	 * 
+	 * Value type: DeferredWriter
+	 */
+	String OPTION_DEFERRED_WRITER = "DEFERRED_WRITER";
+
+	/**
+	 * If set to Boolean.TRUE, deleting a resource also deletes the objects contained by the
+	 * resource's objects in other documents, recursively. Deleting with a query URI deletes all
+	 * of the objects matching the query.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_CASCADE_DELETE = "CASCADE_DELETE";
+
+	/**
+	 * If set to Boolean.TRUE, deleting with a query URI that has no filter deletes the objects it
+	 * selects from the whole collection. Without this option such a delete fails, so that a
+	 * query such as "limit 1" cannot delete every object by mistake.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_DELETE_UNFILTERED = "DELETE_UNFILTERED";
+
+	/**
+	 * The package registry used to locate the EClasses of the objects found when deleting with a
+	 * query or with OPTION_CASCADE_DELETE, typically the package registry of the resource set. If
+	 * not set, the global package registry is used.
+	 * 
+	 * Value type: EPackage.Registry
+	 */
+	String OPTION_PACKAGE_REGISTRY = "PACKAGE_REGISTRY";
+
+	/**
+	 * If set to Boolean.TRUE, the objects saved or deleted may have values stored in GridFS
+	 * without their attribute being annotated with Annotations.STORAGE_EXTERNAL, typically
+	 * because the builder factory is configured with an external storage threshold. A save then
+	 * removes the values its document no longer references, and a delete removes the values of
+	 * the deleted objects. If not set, a delete by query or with OPTION_CASCADE_DELETE only
+	 * removes the values when the EClass of a deleted object has an annotated attribute, and a
+	 * delete by id does not look for values.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_EXTERNAL_STORAGE = "EXTERNAL_STORAGE";
+
 	/**
 	 * If set to Boolean.TRUE, a query will return a MongoCursor instead of a Result
 	 * 
@@ -68,6 +118,42 @@ public interface Options
 	 */
 	String OPTION_QUERY_CURSOR = "QUERY_CURSOR";
 
+	/**
+	 * If set to Boolean.TRUE, along with OPTION_QUERY_CURSOR, the objects returned by iterating the
+	 * MongoCursor will not be added to a resource. This is intended for read-only scans of large
+	 * collections where the resource set would otherwise grow with each object returned.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_QUERY_CURSOR_DETACHED = "QUERY_CURSOR_DETACHED";
+
+	/**
+	 * If set, the value is passed to MongoDB as the number of objects to return in each batch
+	 * when executing a query.
+	 * 
+	 * Value type: Integer
+	 */
+	String OPTION_BATCH_SIZE = "BATCH_SIZE";
+
+	/**
+	 * If set when loading a single object into a resource that still has its contents, the object
+	 * is only read if its time stamp differs from the value of this option. When the time stamp
+	 * is unchanged the contents are kept. Otherwise the resource is unloaded and the object is
+	 * read. This is used by ResourceRefresh and is ignored when the resource has no contents.
+	 * 
+	 * Value type: Long
+	 */
+	String OPTION_LOADED_TIME_STAMP = "LOADED_TIME_STAMP";
+
+	/**
+	 * If set, single objects are loaded through the DocumentCache, which may be shared by many
+	 * resource sets. When set for a save or a delete, the documents of the saved or deleted
+	 * objects are removed from the cache.
+	 * 
+	 * Value type: DocumentCache
+	 */
+	String OPTION_DOCUMENT_CACHE = "DOCUMENT_CACHE";
+
 	/**
 	 * This option may be used when you wish to read from a particular server in a MongoDB
 	 * replica set that has been tagged.
@@ -80,4 +166,35 @@ public interface Options
 	 * Value type: ReadPreference
 	 */
 	String OPTION_READ_PREFERENCE = "READ_PREFERENCE";
+
+	/**
+	 * The class of the objects in the collection of a query. A query engine that implements
+	 * TypedQueryEngine converts the values of the query to the types of the features, as they are
+	 * stored, so that "count == '5'" matches an int attribute. If not set, the values are used as
+	 * they are parsed. The class is not read from the collection, which may hold objects of
+	 * several classes.
+	 * 
+	 * Value type: EClass
+	 */
+	String OPTION_QUERY_ECLASS = "QUERY_ECLASS";
+
+	/**
+	 * If set when loading a query, the query engine used to build the query instead of the query
+	 * engine of the input stream factory. This allows native and simple queries to be used by the
+	 * same application.
+	 * 
+	 * Value type: QueryEngine
+	 */
+	String OPTION_QUERY_ENGINE = "QUERY_ENGINE";
+
+	/**
+	 * The key of the continuation token in the response of loading a query that is sorted and
+	 * limited, when the page is full and more documents may follow. Pass a map as the
+	 * URIConverter.OPTION_RESPONSE load option to receive it. The next page is read by adding
+	 * the token to the query, as in "order by name after <token> limit 20" for the simple query
+	 * engine or "after" : "<token>" for the native query engine. See ContinuationToken.
+	 * 
+	 * Value type: String
+	 */
+	String RESPONSE_CONTINUATION_TOKEN = "CONTINUATION_TOKEN";
 }
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipselabs.mongoemf.model.MongoQuery;
+
+/**
+ * A query engine that compiles the query against the class of the objects in the collection,
+ * so that the values of the query can be stored the same way as the values of the objects. The
+ * input stream calls this function instead of buildDBObjectQuery(URI) when the query engine
+ * implements this interface.
+ * 
+ * @author bhunt
+ */
+public interface TypedQueryEngine extends QueryEngine
+{
+	/**
+	 * This function builds a DBObject to be used as a query to MongoDB from the EMF query
+	 * 
+	 * @param uri the incoming URI containing the query
+	 * @param eClass the class of the objects in the collection - may be null if it is not known
+	 * @param converterService the service used to convert attribute values when storing objects
+	 * @return the MongoQuery representation of the query
+	 */
+	MongoQuery buildDBObjectQuery(URI uri, EClass eClass, ConverterService converterService);
+}
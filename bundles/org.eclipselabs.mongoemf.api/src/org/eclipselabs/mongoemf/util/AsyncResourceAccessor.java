@@ -0,0 +1,544 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipselabs.mongoemf.Options;
+import org.eclipselabs.mongoemf.model.MongoCursor;
+
+/**
+ * Runs resource loads, saves, deletes and queries on a caller supplied executor so the
+ * calling thread is not blocked on the MongoDB driver. The executor can be any
+ * ExecutorService including one that creates a thread per task.
+ *
+ * Query results can also be streamed to a Subscriber. Objects are only read from the
+ * cursor when the subscriber has requested them, so a slow subscriber does not cause
+ * results to be buffered, and no executor thread is held while there is no demand.
+ * Streamed objects are built from a detached cursor and are not added to the resource set.
+ *
+ * Completion can be observed by waiting on the returned future, or by passing a Callback
+ * that is notified on the executor thread once the future has completed.
+ *
+ * A ResourceSet is not thread safe, so the caller must not access the resource set passed
+ * to any of these functions until the returned future has completed.
+ *
+ * @author bhunt
+ *
+ */
+public class AsyncResourceAccessor
+{
+	/**
+	 * Receives the objects streamed from a query. The functions are never called concurrently
+	 * for the same subscription.
+	 */
+	public interface Subscriber
+	{
+		/**
+		 * Called once before any other function with the subscription used to request objects.
+		 *
+		 * @param subscription the subscription
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called for each object requested from the subscription.
+		 *
+		 * @param eObject the next object in the query result
+		 */
+		void onNext(EObject eObject);
+
+		/**
+		 * Called when the query fails. No further functions are called.
+		 *
+		 * @param throwable the cause of the failure
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Called when all of the query results have been delivered. No further functions are called.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Controls the delivery of objects to a Subscriber.
+	 */
+	public interface Subscription
+	{
+		/**
+		 * Requests n more objects. Long.MAX_VALUE requests all remaining objects.
+		 *
+		 * @param n the number of objects - must be greater than zero
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the delivery of objects and closes the underlying cursor.
+		 */
+		void cancel();
+	}
+
+	/**
+	 * Receives the outcome of a load, save, delete or query. Exactly one of the functions is
+	 * called after the returned future has completed, on the executor thread unless the future
+	 * is cancelled.
+	 *
+	 * @param <T> the type of the result
+	 */
+	public interface Callback<T>
+	{
+		/**
+		 * Called when the operation completes normally.
+		 *
+		 * @param result the result of the operation
+		 */
+		void onSuccess(T result);
+
+		/**
+		 * Called when the operation fails or is cancelled.
+		 *
+		 * @param throwable the cause of the failure
+		 */
+		void onFailure(Throwable throwable);
+	}
+
+	/**
+	 * @param executorService the executor to run the blocking operations on
+	 */
+	public AsyncResourceAccessor(ExecutorService executorService)
+	{
+		this.executorService = executorService;
+	}
+
+	/**
+	 * Loads the resource with the specified URI. A resource with the URI that is already in the
+	 * resource set is used instead of creating a new one, and is returned as is when it is loaded.
+	 * A resource created by this function is removed from the resource set when the load fails.
+	 *
+	 * @param resourceSet the resource set to create the resource in
+	 * @param uri the URI of the resource
+	 * @param options the load options - may be null
+	 * @return the future loaded resource
+	 */
+	public Future<Resource> load(ResourceSet resourceSet, URI uri, Map<?, ?> options)
+	{
+		return load(resourceSet, uri, options, null);
+	}
+
+	/**
+	 * Loads the resource with the specified URI and notifies the callback when the load completes.
+	 *
+	 * @param resourceSet the resource set to create the resource in
+	 * @param uri the URI of the resource
+	 * @param options the load options - may be null
+	 * @param callback the callback to notify - may be null
+	 * @return the future loaded resource
+	 * @see #load(ResourceSet, URI, Map)
+	 */
+	public Future<Resource> load(final ResourceSet resourceSet, final URI uri, final Map<?, ?> options, Callback<? super Resource> callback)
+	{
+		return submit(new Callable<Resource>()
+		{
+			@Override
+			public Resource call() throws Exception
+			{
+				Resource resource = resourceSet.getResource(uri, false);
+
+				if (resource != null && resource.isLoaded())
+					return resource;
+
+				return loadResource(resourceSet, resource, uri, options);
+			}
+		}, callback);
+	}
+
+	/**
+	 * Saves the resource.
+	 *
+	 * @param resource the resource to save
+	 * @param options the save options - may be null
+	 * @return the future saved resource
+	 */
+	public Future<Resource> save(Resource resource, Map<?, ?> options)
+	{
+		return save(resource, options, null);
+	}
+
+	/**
+	 * Saves the resource and notifies the callback when the save completes.
+	 *
+	 * @param resource the resource to save
+	 * @param options the save options - may be null
+	 * @param callback the callback to notify - may be null
+	 * @return the future saved resource
+	 */
+	public Future<Resource> save(final Resource resource, final Map<?, ?> options, Callback<? super Resource> callback)
+	{
+		return submit(new Callable<Resource>()
+		{
+			@Override
+			public Resource call() throws Exception
+			{
+				resource.save(options);
+				return resource;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Deletes the object with the specified URI from the database.
+	 *
+	 * @param resourceSet the resource set providing the URI converter
+	 * @param uri the URI of the object to delete
+	 * @param options the delete options - may be null
+	 * @return the future URI of the deleted object
+	 */
+	public Future<URI> delete(ResourceSet resourceSet, URI uri, Map<?, ?> options)
+	{
+		return delete(resourceSet, uri, options, null);
+	}
+
+	/**
+	 * Deletes the object with the specified URI from the database and notifies the callback
+	 * when the delete completes.
+	 *
+	 * @param resourceSet the resource set providing the URI converter
+	 * @param uri the URI of the object to delete
+	 * @param options the delete options - may be null
+	 * @param callback the callback to notify - may be null
+	 * @return the future URI of the deleted object
+	 */
+	public Future<URI> delete(final ResourceSet resourceSet, final URI uri, final Map<?, ?> options, Callback<? super URI> callback)
+	{
+		return submit(new Callable<URI>()
+		{
+			@Override
+			public URI call() throws Exception
+			{
+				resourceSet.getURIConverter().delete(uri, options);
+				return uri;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Loads the results of a query. The results are contained in a single resource
+	 * in the resource set. A resource with the query URI that is already in the resource
+	 * set is reloaded so the results are current. A resource created by this function is
+	 * removed from the resource set when the query fails.
+	 *
+	 * @param resourceSet the resource set to create the result resource in
+	 * @param uri the query URI
+	 * @param options the load options - may be null
+	 * @return the future query results
+	 */
+	public Future<EList<EObject>> query(ResourceSet resourceSet, URI uri, Map<?, ?> options)
+	{
+		return query(resourceSet, uri, options, (Callback<? super EList<EObject>>) null);
+	}
+
+	/**
+	 * Loads the results of a query and notifies the callback when the query completes.
+	 *
+	 * @param resourceSet the resource set to create the result resource in
+	 * @param uri the query URI
+	 * @param options the load options - may be null
+	 * @param callback the callback to notify - may be null
+	 * @return the future query results
+	 * @see #query(ResourceSet, URI, Map)
+	 */
+	public Future<EList<EObject>> query(final ResourceSet resourceSet, final URI uri, final Map<?, ?> options, Callback<? super EList<EObject>> callback)
+	{
+		return submit(new Callable<EList<EObject>>()
+		{
+			@Override
+			public EList<EObject> call() throws Exception
+			{
+				Resource resource = resourceSet.getResource(uri, false);
+
+				if (resource != null)
+					resource.unload();
+
+				return loadResource(resourceSet, resource, uri, options).getContents();
+			}
+		}, callback);
+	}
+
+	/**
+	 * Streams the results of a query to the subscriber. The subscriber's onSubscribe() is
+	 * called before this function returns. The query is not run until the first request.
+	 *
+	 * @param resourceSet the resource set to create the cursor resource in
+	 * @param uri the query URI
+	 * @param options the load options - may be null
+	 * @param subscriber the subscriber to stream the results to
+	 */
+	public void query(ResourceSet resourceSet, URI uri, Map<?, ?> options, Subscriber subscriber)
+	{
+		HashMap<Object, Object> cursorOptions = new HashMap<Object, Object>();
+
+		if (options != null)
+			cursorOptions.putAll(options);
+
+		cursorOptions.put(Options.OPTION_QUERY_CURSOR, Boolean.TRUE);
+		cursorOptions.put(Options.OPTION_QUERY_CURSOR_DETACHED, Boolean.TRUE);
+		subscriber.onSubscribe(new CursorSubscription(executorService, resourceSet, uri, cursorOptions, subscriber));
+	}
+
+	private <T> Future<T> submit(Callable<T> callable, Callback<? super T> callback)
+	{
+		if (callback == null)
+			return executorService.submit(callable);
+
+		CallbackFuture<T> future = new CallbackFuture<T>(callable, callback);
+		executorService.execute(future);
+		return future;
+	}
+
+	private static Resource loadResource(ResourceSet resourceSet, Resource resource, URI uri, Map<?, ?> options) throws IOException
+	{
+		boolean created = resource == null;
+
+		if (created)
+			resource = resourceSet.createResource(uri);
+
+		try
+		{
+			resource.load(options);
+		}
+		catch (IOException e)
+		{
+			discard(resourceSet, resource, created);
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			discard(resourceSet, resource, created);
+			throw e;
+		}
+
+		return resource;
+	}
+
+	private static void discard(ResourceSet resourceSet, Resource resource, boolean remove)
+	{
+		resource.unload();
+
+		if (remove)
+			resourceSet.getResources().remove(resource);
+	}
+
+	/**
+	 * Notifies a callback when the task completes. The callback is called from done() so the
+	 * future has completed before the callback runs.
+	 */
+	private static class CallbackFuture<T> extends FutureTask<T>
+	{
+		CallbackFuture(Callable<T> callable, Callback<? super T> callback)
+		{
+			super(callable);
+			this.callback = callback;
+		}
+
+		@Override
+		protected void done()
+		{
+			T result;
+
+			try
+			{
+				result = get();
+			}
+			catch (ExecutionException e)
+			{
+				callback.onFailure(e.getCause());
+				return;
+			}
+			catch (CancellationException e)
+			{
+				callback.onFailure(e);
+				return;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				callback.onFailure(e);
+				return;
+			}
+
+			callback.onSuccess(result);
+		}
+
+		private final Callback<? super T> callback;
+	}
+
+	/**
+	 * Delivers the objects of a cursor as they are requested. At most one drain task is
+	 * scheduled on the executor at a time.
+	 */
+	private static class CursorSubscription implements Subscription, Runnable
+	{
+		CursorSubscription(Executor executor, ResourceSet resourceSet, URI uri, Map<?, ?> options, Subscriber subscriber)
+		{
+			this.executor = executor;
+			this.resourceSet = resourceSet;
+			this.uri = uri;
+			this.options = options;
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n)
+		{
+			if (n <= 0)
+			{
+				error = new IllegalArgumentException("The number of requested objects must be greater than zero");
+				schedule();
+				return;
+			}
+
+			long current;
+			long next;
+
+			do
+			{
+				current = demand.get();
+				next = current + n < 0 ? Long.MAX_VALUE : current + n;
+			}
+			while (!demand.compareAndSet(current, next));
+
+			schedule();
+		}
+
+		@Override
+		public void cancel()
+		{
+			if (!cancelled.getAndSet(true))
+				schedule();
+		}
+
+		@Override
+		public void run()
+		{
+			int missed = 1;
+
+			do
+			{
+				if (done)
+					return;
+
+				try
+				{
+					drain();
+				}
+				catch (Throwable t)
+				{
+					close();
+					subscriber.onError(t);
+					return;
+				}
+
+				missed = work.addAndGet(-missed);
+			}
+			while (missed != 0);
+		}
+
+		private void drain() throws Exception
+		{
+			if (error != null)
+				throw error;
+
+			if (cancelled.get())
+			{
+				close();
+				return;
+			}
+
+			if (cursor == null)
+			{
+				if (demand.get() == 0)
+					return;
+
+				Resource resource = loadResource(resourceSet, null, uri, options);
+				cursor = (MongoCursor) resource.getContents().get(0);
+				iterator = cursor.iterator();
+			}
+
+			while (demand.get() > 0 && !cancelled.get() && iterator.hasNext())
+			{
+				subscriber.onNext(iterator.next());
+
+				if (demand.get() != Long.MAX_VALUE)
+					demand.decrementAndGet();
+			}
+
+			if (cancelled.get())
+				close();
+			else if (!iterator.hasNext())
+			{
+				close();
+				subscriber.onComplete();
+			}
+		}
+
+		private void schedule()
+		{
+			if (work.getAndIncrement() == 0)
+				executor.execute(this);
+		}
+
+		private void close()
+		{
+			done = true;
+
+			if (cursor != null)
+			{
+				cursor.close();
+				resourceSet.getResources().remove(cursor.eResource());
+			}
+		}
+
+		private final Executor executor;
+		private final ResourceSet resourceSet;
+		private final URI uri;
+		private final Map<?, ?> options;
+		private final Subscriber subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicBoolean cancelled = new AtomicBoolean();
+		private final AtomicInteger work = new AtomicInteger();
+		private MongoCursor cursor;
+		private Iterator<EObject> iterator;
+		private volatile Exception error;
+		private boolean done;
+	}
+
+	private ExecutorService executorService;
+}
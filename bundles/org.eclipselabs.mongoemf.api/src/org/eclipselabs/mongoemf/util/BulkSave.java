@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipselabs.mongoemf.DeferredWriter;
+import org.eclipselabs.mongoemf.Options;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+
+/**
+ * Saves all of the modified MongoDB resources of a resource set with one batch of writes per
+ * collection instead of a round trip per resource. A resource is considered modified when
+ * it is tracking modification and is modified; resources that do not track modification are
+ * always saved. Resources are saved through the usual EMF save so new URIs and time stamps
+ * are set on the resources exactly as they are by Resource.save().
+ * 
+ * The writes are issued once all of the documents have been built. The new objects of each
+ * collection are inserted with a single insert that continues past errors, and the updated
+ * objects are upserted. The MongoDB driver targeted by this bundle has no bulk update, so the
+ * upserts of a collection are issued individually and only the inserts save round trips.
+ * 
+ * Values of attributes stored externally are written to GridFS while the documents are built.
+ * 
+ * @author bhunt
+ * 
+ */
+public final class BulkSave
+{
+	/**
+	 * Saves the modified MongoDB resources of the resource set. The resources are saved one after
+	 * the other since the saves share the converters and proxy state of the resource set. If the
+	 * writes to a collection fail, the resources whose objects were written to that collection are
+	 * marked as modified again and get their previous time stamp back so that they are saved again
+	 * by the next call. The new URIs of these resources are kept; saving them again upserts the
+	 * objects with the ids they were given.
+	 * 
+	 * @param resourceSet the resource set containing the resources to save
+	 * @param options the save options - may be null
+	 * @return the saved resources
+	 * @throws IOException if a resource could not be saved or the writes to a collection failed - the
+	 *           documents of the other resources are still written
+	 */
+	public static List<Resource> saveAll(ResourceSet resourceSet, Map<?, ?> options) throws IOException
+	{
+		ArrayList<Resource> resources = new ArrayList<Resource>();
+
+		for (Resource resource : resourceSet.getResources())
+		{
+			if (isMongoResource(resource) && !resource.getContents().isEmpty() && (!resource.isTrackingModification() || resource.isModified()))
+				resources.add(resource);
+		}
+
+		Batch batch = new Batch();
+		LinkedHashMap<Object, Object> saveOptions = new LinkedHashMap<Object, Object>();
+
+		if (options != null)
+			saveOptions.putAll(options);
+
+		saveOptions.put(Options.OPTION_DEFERRED_WRITER, batch);
+
+		IOException failure = null;
+		HashMap<Resource, Long> timeStamps = new HashMap<Resource, Long>();
+
+		for (Resource resource : resources)
+		{
+			timeStamps.put(resource, resource.getTimeStamp());
+			batch.resource = resource;
+
+			try
+			{
+				resource.save(saveOptions);
+			}
+			catch (IOException e)
+			{
+				if (failure == null)
+					failure = e;
+			}
+		}
+
+		batch.resource = null;
+		Set<Resource> failedResources = new HashSet<Resource>();
+		MongoException writeFailure = batch.flush((WriteConcern) saveOptions.get(Options.OPTION_WRITE_CONCERN), failedResources);
+
+		for (Resource resource : failedResources)
+		{
+			resource.setModified(true);
+			resource.setTimeStamp(timeStamps.get(resource));
+		}
+
+		if (failure != null)
+			throw failure;
+
+		if (writeFailure != null)
+			throw new IOException(writeFailure);
+
+		return resources;
+	}
+
+	/**
+	 * Inserts the new objects with a single insert that continues past errors and upserts the
+	 * updated objects.
+	 * 
+	 * @param collection the collection to write to
+	 * @param inserts the new objects
+	 * @param upserts the updated objects
+	 * @param writeConcern the write concern - the collection's write concern is used if null
+	 */
+	static void write(DBCollection collection, List<DBObject> inserts, List<DBObject> upserts, WriteConcern writeConcern)
+	{
+		WriteConcern collectionWriteConcern = writeConcern != null ? writeConcern : collection.getWriteConcern();
+
+		if (!inserts.isEmpty())
+			collection.insert(inserts, collectionWriteConcern.continueOnErrorForInsert(true));
+
+		for (DBObject dbObject : upserts)
+			collection.save(dbObject, collectionWriteConcern);
+	}
+
+	private static boolean isMongoResource(Resource resource)
+	{
+		return resource.getURI() != null && "mongodb".equalsIgnoreCase(resource.getURI().scheme());
+	}
+
+	/**
+	 * Collects the objects built by the saves grouped by collection, along with the resources
+	 * they were built from.
+	 */
+	private static class Batch implements DeferredWriter
+	{
+		@Override
+		public void write(DBCollection collection, DBObject dbObject, boolean insert, Runnable written)
+		{
+			Writes writes = writesByCollection.get(collection);
+
+			if (writes == null)
+			{
+				writes = new Writes();
+				writesByCollection.put(collection, writes);
+			}
+
+			if (insert)
+				writes.inserts.add(dbObject);
+			else
+				writes.upserts.add(dbObject);
+
+			if (resource != null)
+				writes.resources.add(resource);
+
+			if (written != null)
+				writes.written.add(written);
+		}
+
+		/**
+		 * Writes the objects of every collection, even if the writes to a collection fail.
+		 * 
+		 * @param writeConcern the write concern - may be null
+		 * @param failedResources receives the resources whose objects were written to a collection
+		 *          whose writes failed
+		 * @return the first failure, or null if all of the writes succeeded
+		 */
+		MongoException flush(WriteConcern writeConcern, Set<Resource> failedResources)
+		{
+			MongoException failure = null;
+
+			for (Map.Entry<DBCollection, Writes> entry : writesByCollection.entrySet())
+			{
+				try
+				{
+					write(entry.getKey(), entry.getValue().inserts, entry.getValue().upserts, writeConcern);
+				}
+				catch (MongoException e)
+				{
+					failedResources.addAll(entry.getValue().resources);
+
+					if (failure == null)
+						failure = e;
+
+					continue;
+				}
+
+				for (Runnable written : entry.getValue().written)
+					written.run();
+			}
+
+			writesByCollection.clear();
+			return failure;
+		}
+
+		Resource resource;
+		private LinkedHashMap<DBCollection, Writes> writesByCollection = new LinkedHashMap<DBCollection, Writes>();
+	}
+
+	private static class Writes
+	{
+		ArrayList<DBObject> inserts = new ArrayList<DBObject>();
+		ArrayList<DBObject> upserts = new ArrayList<DBObject>();
+		LinkedHashSet<Resource> resources = new LinkedHashSet<Resource>();
+		ArrayList<Runnable> written = new ArrayList<Runnable>();
+	}
+
+	private BulkSave()
+	{}
+}
@@ -0,0 +1,417 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.io.BasicOutputBuffer;
+import org.eclipse.emf.common.util.URI;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+
+/**
+ * A local copy of the documents of a collection kept as raw BSON in a memory mapped file,
+ * together with the highest time stamp of the documents. A process that needs all of a
+ * collection at startup can map the file and sync() it, which reads only the documents
+ * saved since the snapshot was last written, instead of reading the whole collection.
+ *
+ * The time stamps are taken from the clocks of the clients that saved the documents, so a
+ * document saved by a client with a slow clock can carry a time stamp lower than one already
+ * in the snapshot. A sync therefore reads the documents saved since the highest time stamp less
+ * a safety window, which should exceed the clock skew between the clients, and reads the most
+ * recently saved documents again. Deleted documents, and documents saved without a time stamp,
+ * are not detected by sync() and remain in the snapshot until resync() reads the whole
+ * collection.
+ *
+ * Each write creates a new version of the snapshot file, named after the file with the version
+ * as suffix, because the previous version may still be mapped and a mapped file cannot be
+ * replaced or deleted on every platform. Previous versions are deleted once they can be.
+ *
+ * The documents can be decoded with getDocuments(), or put in a DocumentCache with warm() so
+ * that objects are loaded from the snapshot without reading them from MongoDB.
+ *
+ * This class is thread safe.
+ *
+ * @author bhunt
+ *
+ */
+public class CollectionSnapshot
+{
+	/**
+	 * The default safety window of one minute.
+	 */
+	public static final long DEFAULT_SAFETY_WINDOW = 60000;
+
+	/**
+	 * @param file the file holding the snapshot; it is created by the first sync
+	 */
+	public CollectionSnapshot(File file)
+	{
+		this(file, DEFAULT_SAFETY_WINDOW);
+	}
+
+	/**
+	 * @param file the file holding the snapshot; it is created by the first sync
+	 * @param safetyWindow the time in milliseconds subtracted from the highest time stamp of the
+	 *          snapshot when reading the documents saved since the snapshot was written
+	 */
+	public CollectionSnapshot(File file, long safetyWindow)
+	{
+		if (safetyWindow < 0)
+			throw new IllegalArgumentException("The safety window must not be negative");
+
+		this.file = file.getAbsoluteFile();
+		this.safetyWindow = safetyWindow;
+	}
+
+	/**
+	 * Maps the snapshot file if it has not been mapped, reads the documents of the collection
+	 * saved since the snapshot was written, and writes the snapshot file if any were read.
+	 *
+	 * @param collection the collection of the snapshot
+	 * @return the number of documents read from MongoDB
+	 * @throws IOException if the snapshot file could not be read or written
+	 */
+	public synchronized int sync(DBCollection collection) throws IOException
+	{
+		if (documents == null)
+			open();
+
+		DBObject query = new BasicDBObject();
+
+		if (timeStamp > 0)
+			query.put(Keywords.TIME_STAMP_KEY, new BasicDBObject("$gte", timeStamp - safetyWindow));
+
+		int count = merge(collection.find(query));
+
+		if (count > 0)
+			write();
+
+		return count;
+	}
+
+	/**
+	 * Discards the snapshot, reads all of the documents of the collection, and writes the
+	 * snapshot file. This removes documents that were deleted from the collection.
+	 *
+	 * @param collection the collection of the snapshot
+	 * @return the number of documents read from MongoDB
+	 * @throws IOException if the snapshot file could not be written
+	 */
+	public synchronized int resync(DBCollection collection) throws IOException
+	{
+		documents = new LinkedHashMap<Object, ByteBuffer>();
+		timeStamp = 0;
+
+		int count = merge(collection.find());
+		write();
+		return count;
+	}
+
+	/**
+	 * @param collection the collection of the snapshot
+	 * @return the decoded documents of the snapshot
+	 * @throws IOException if the snapshot file could not be read
+	 */
+	public synchronized List<DBObject> getDocuments(DBCollection collection) throws IOException
+	{
+		if (documents == null)
+			open();
+
+		List<DBObject> dbObjects = new ArrayList<DBObject>(documents.size());
+
+		for (ByteBuffer document : documents.values())
+			dbObjects.add(decode(document, collection));
+
+		return dbObjects;
+	}
+
+	/**
+	 * Puts the documents of the snapshot in the cache, so that loading the objects with the
+	 * cache set as the Options.OPTION_DOCUMENT_CACHE load option does not read them from MongoDB.
+	 *
+	 * @param documentCache the cache
+	 * @param collection the collection of the snapshot
+	 * @param collectionURI the URI of the collection of the snapshot
+	 * @throws IOException if the snapshot file could not be read
+	 */
+	public synchronized void warm(DocumentCache documentCache, DBCollection collection, URI collectionURI) throws IOException
+	{
+		if (documents == null)
+			open();
+
+		URI baseURI = collectionURI.hasTrailingPathSeparator() ? collectionURI.trimSegments(1) : collectionURI;
+
+		for (Map.Entry<Object, ByteBuffer> entry : documents.entrySet())
+			documentCache.put(baseURI.appendSegment(entry.getKey().toString()), decode(entry.getValue(), collection));
+	}
+
+	/**
+	 * @return the highest time stamp of the documents in the snapshot, or 0 if the snapshot has
+	 *         not been read
+	 */
+	public synchronized long getTimeStamp()
+	{
+		return timeStamp;
+	}
+
+	/**
+	 * @return the number of documents in the snapshot
+	 */
+	public synchronized int getSize()
+	{
+		return documents != null ? documents.size() : 0;
+	}
+
+	private void open() throws IOException
+	{
+		documents = new LinkedHashMap<Object, ByteBuffer>();
+		timeStamp = 0;
+		version = getLatestVersion();
+
+		if (version == 0)
+			return;
+
+		ByteBuffer buffer = map(getVersionFile(version));
+
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+			throw new IOException("The file '" + getVersionFile(version) + "' is not a collection snapshot");
+
+		long storedTimeStamp = buffer.getLong();
+		int count = buffer.getInt();
+
+		// Each document is preceded by a document holding only its _id, so that the snapshot can be
+		// opened without decoding the documents
+
+		for (int i = 0; i < count; i++)
+		{
+			Object id = decode(next(buffer), null).get(Keywords.ID_KEY);
+			documents.put(id, next(buffer));
+		}
+
+		timeStamp = storedTimeStamp;
+	}
+
+	private int merge(DBCursor cursor)
+	{
+		int count = 0;
+
+		try
+		{
+			while (cursor.hasNext())
+			{
+				DBObject dbObject = cursor.next();
+				BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+				DefaultDBEncoder.FACTORY.create().writeObject(outputBuffer, dbObject);
+
+				Object id = dbObject.get(Keywords.ID_KEY);
+				documents.remove(id);
+				documents.put(id, ByteBuffer.wrap(outputBuffer.toByteArray()));
+
+				Object documentTimeStamp = dbObject.get(Keywords.TIME_STAMP_KEY);
+
+				if (documentTimeStamp instanceof Long && (Long) documentTimeStamp > timeStamp)
+					timeStamp = (Long) documentTimeStamp;
+
+				count++;
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+
+		return count;
+	}
+
+	private void write() throws IOException
+	{
+		long nextVersion = Math.max(version, getLatestVersion()) + 1;
+		File versionFile = getVersionFile(nextVersion);
+		File temporaryFile = new File(versionFile.getPath() + ".tmp");
+		RandomAccessFile out = new RandomAccessFile(temporaryFile, "rw");
+
+		try
+		{
+			out.setLength(0);
+			FileChannel channel = out.getChannel();
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putLong(timeStamp).putInt(documents.size());
+			header.flip();
+			write(channel, header);
+
+			for (Map.Entry<Object, ByteBuffer> entry : documents.entrySet())
+			{
+				BasicOutputBuffer idBuffer = new BasicOutputBuffer();
+				DefaultDBEncoder.FACTORY.create().writeObject(idBuffer, new BasicDBObject(Keywords.ID_KEY, entry.getKey()));
+				write(channel, ByteBuffer.wrap(idBuffer.toByteArray()));
+				write(channel, entry.getValue().duplicate());
+			}
+
+			channel.force(false);
+		}
+		finally
+		{
+			out.close();
+		}
+
+		// The new version does not exist yet, so the rename does not replace a mapped file
+
+		if (!temporaryFile.renameTo(versionFile))
+			throw new IOException("The snapshot file '" + versionFile + "' could not be written");
+
+		version = nextVersion;
+
+		// The documents now refer to the new file instead of the heap or the previous mapping
+
+		ByteBuffer buffer = map(versionFile);
+		buffer.position(HEADER_SIZE);
+
+		for (Map.Entry<Object, ByteBuffer> entry : documents.entrySet())
+		{
+			next(buffer);
+			entry.setValue(next(buffer));
+		}
+
+		deletePreviousVersions();
+	}
+
+	private long getLatestVersion()
+	{
+		long latestVersion = 0;
+
+		for (long fileVersion : getVersions())
+			latestVersion = Math.max(latestVersion, fileVersion);
+
+		return latestVersion;
+	}
+
+	private void deletePreviousVersions()
+	{
+		// A previous version that is still mapped cannot be deleted on some platforms; it is deleted
+		// by a later write once the mapping has been released
+
+		for (long fileVersion : getVersions())
+		{
+			if (fileVersion < version)
+				getVersionFile(fileVersion).delete();
+		}
+	}
+
+	private List<Long> getVersions()
+	{
+		List<Long> versions = new ArrayList<Long>();
+		String[] names = file.getParentFile().list();
+
+		if (names == null)
+			return versions;
+
+		String prefix = file.getName() + ".";
+
+		for (String name : names)
+		{
+			if (name.startsWith(prefix))
+			{
+				try
+				{
+					versions.add(Long.parseLong(name.substring(prefix.length())));
+				}
+				catch (NumberFormatException e)
+				{
+					// Not a version of the snapshot
+				}
+			}
+		}
+
+		return versions;
+	}
+
+	private File getVersionFile(long fileVersion)
+	{
+		return new File(file.getParentFile(), file.getName() + "." + fileVersion);
+	}
+
+	private static ByteBuffer map(File versionFile) throws IOException
+	{
+		RandomAccessFile in = new RandomAccessFile(versionFile, "r");
+
+		try
+		{
+			FileChannel channel = in.getChannel();
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static ByteBuffer next(ByteBuffer buffer) throws IOException
+	{
+		if (buffer.remaining() < 4)
+			throw new IOException("The collection snapshot is truncated");
+
+		// BSON documents start with their length in little endian byte order
+
+		int length = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt();
+
+		if (length < 5 || length > buffer.remaining())
+			throw new IOException("The collection snapshot is truncated");
+
+		ByteBuffer document = buffer.slice();
+		document.limit(length);
+		buffer.position(buffer.position() + length);
+		return document;
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		buffer.rewind();
+
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	private static DBObject decode(ByteBuffer document, DBCollection collection)
+	{
+		ByteBuffer data = document.duplicate();
+		data.rewind();
+		byte[] bytes = new byte[data.remaining()];
+		data.get(bytes);
+		return DefaultDBDecoder.FACTORY.create().decode(bytes, collection);
+	}
+
+	private static final int MAGIC = 0x4D454D32;
+	private static final int HEADER_SIZE = 16;
+
+	private final File file;
+	private final long safetyWindow;
+	private Map<Object, ByteBuffer> documents;
+	private long timeStamp;
+	private long version;
+}
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.io.BasicOutputBuffer;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+
+/**
+ * Keyset pagination of sorted queries. Instead of skipping the documents of the previous pages,
+ * which the server must scan and discard, the next page is read with a range predicate on the
+ * sort keys of the last document of the previous page. The cost of reading a page then does not
+ * depend on how far the client has paged.
+ *
+ * The sort keys and the values of the last document are encoded into an opaque token that can
+ * be used in a query URI. The _id is always the last sort key so that documents with equal sort
+ * keys are neither repeated nor skipped. The sort keys should not hold arrays, and must not be
+ * missing or null in the last document of a page, because no range predicate selects the
+ * documents that follow a null value in the order of MongoDB.
+ *
+ * @author bhunt
+ *
+ */
+public final class ContinuationToken
+{
+	/**
+	 * @param sort the sort of the query - may be null
+	 * @return a copy of the sort ending with the _id, so that the order of the documents is total
+	 */
+	public static DBObject getSort(DBObject sort)
+	{
+		DBObject totalSort = new BasicDBObject();
+
+		if (sort != null)
+			totalSort.putAll(sort);
+
+		if (!totalSort.containsField(Keywords.ID_KEY))
+			totalSort.put(Keywords.ID_KEY, 1);
+
+		return totalSort;
+	}
+
+	/**
+	 * @param sort the total sort of the query as returned by getSort()
+	 * @param dbObject the last document of a page
+	 * @return the token of the page following the document
+	 * @throws IllegalArgumentException if a sort key of the document is missing or null
+	 */
+	public static String create(DBObject sort, DBObject dbObject)
+	{
+		DBObject values = new BasicDBObject();
+
+		for (String key : sort.keySet())
+		{
+			Object value = getValue(dbObject, key);
+
+			if (value == null)
+				throw new IllegalArgumentException("The sort key '" + key + "' of the document " + dbObject.get(Keywords.ID_KEY) + " is missing or null");
+
+			values.put(key, value);
+		}
+
+		BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+		DefaultDBEncoder.FACTORY.create().writeObject(outputBuffer, values);
+
+		StringBuilder token = new StringBuilder();
+
+		for (byte b : outputBuffer.toByteArray())
+		{
+			token.append(HEX_DIGITS.charAt((b >> 4) & 0xF));
+			token.append(HEX_DIGITS.charAt(b & 0xF));
+		}
+
+		return token.toString();
+	}
+
+	/**
+	 * Restricts the filter to the documents that follow the last document of the previous page.
+	 * For the sort keys k1 and k2 in ascending order, and the values v1 and v2 of the token, the
+	 * documents must match { $or : [ { k1 : { $gt : v1 } }, { k1 : v1, k2 : { $gt : v2 } } ] }.
+	 *
+	 * @param filter the filter of the query - may be null
+	 * @param sort the total sort of the query as returned by getSort()
+	 * @param token a token returned by create()
+	 * @return the filter of the next page
+	 * @throws IllegalArgumentException if the token is malformed or was created for another sort
+	 */
+	public static DBObject seek(DBObject filter, DBObject sort, String token)
+	{
+		DBObject values = decode(token);
+
+		if (!new ArrayList<String>(values.keySet()).equals(new ArrayList<String>(sort.keySet())))
+			throw new IllegalArgumentException("The continuation token '" + token + "' does not match the sort " + sort);
+
+		List<DBObject> clauses = new ArrayList<DBObject>();
+		DBObject equalities = new BasicDBObject();
+
+		for (String key : sort.keySet())
+		{
+			boolean descending = ((Number) sort.get(key)).intValue() < 0;
+			DBObject clause = new BasicDBObject(equalities.toMap());
+			clause.put(key, new BasicDBObject(descending ? "$lt" : "$gt", values.get(key)));
+			clauses.add(clause);
+			equalities.put(key, values.get(key));
+		}
+
+		DBObject range = clauses.size() == 1 ? clauses.get(0) : new BasicDBObject("$or", clauses);
+
+		if (filter == null || filter.keySet().isEmpty())
+			return range;
+
+		List<DBObject> and = new ArrayList<DBObject>();
+		and.add(filter);
+		and.add(range);
+		return new BasicDBObject("$and", and);
+	}
+
+	private static DBObject decode(String token)
+	{
+		if (token.length() % 2 != 0)
+			throw new IllegalArgumentException("The continuation token '" + token + "' is malformed");
+
+		byte[] bytes = new byte[token.length() / 2];
+
+		for (int i = 0; i < bytes.length; i++)
+		{
+			int high = HEX_DIGITS.indexOf(Character.toLowerCase(token.charAt(2 * i)));
+			int low = HEX_DIGITS.indexOf(Character.toLowerCase(token.charAt(2 * i + 1)));
+
+			if (high < 0 || low < 0)
+				throw new IllegalArgumentException("The continuation token '" + token + "' is malformed");
+
+			bytes[i] = (byte) (high << 4 | low);
+		}
+
+		try
+		{
+			return DefaultDBDecoder.FACTORY.create().decode(bytes, null);
+		}
+		catch (RuntimeException e)
+		{
+			throw new IllegalArgumentException("The continuation token '" + token + "' is malformed", e);
+		}
+	}
+
+	private static Object getValue(DBObject dbObject, String key)
+	{
+		Object value = dbObject;
+
+		for (String segment : key.split("\\."))
+		{
+			if (!(value instanceof DBObject))
+				return null;
+
+			value = ((DBObject) value).get(segment);
+		}
+
+		return value;
+	}
+
+	private static final String HEX_DIGITS = "0123456789abcdef";
+
+	private ContinuationToken()
+	{}
+}
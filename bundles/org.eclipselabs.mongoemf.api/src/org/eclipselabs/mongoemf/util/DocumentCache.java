@@ -0,0 +1,375 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.io.BasicOutputBuffer;
+import org.eclipse.emf.common.util.URI;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.DefaultDBEncoder;
+
+/**
+ * A cache of MongoDB documents that can be shared by all of the resource sets of a process.
+ * The documents are kept as raw BSON outside of the Java heap, keyed by the URI of the object
+ * and tagged with the object's time stamp. The BSON is stored in fixed size blocks carved out
+ * of a few large direct buffers, which are allocated as needed up to the capacity and reused
+ * once allocated. The least recently used documents are evicted when there are not enough
+ * free blocks for a document.
+ * 
+ * The cache is used by setting it as the Options.OPTION_DOCUMENT_CACHE load option. A cached
+ * document is used without contacting MongoDB while it is younger than the maximum age. After
+ * that, only its time stamp is read from MongoDB, and the cached document is used if the
+ * time stamp has not changed. Saves and deletes with the option set remove the affected
+ * documents from the cache.
+ * 
+ * This class is thread safe.
+ * 
+ * @author bhunt
+ * 
+ */
+public class DocumentCache
+{
+	/**
+	 * @param capacity the maximum number of bytes of direct memory to use
+	 * @param maxAge the time in milliseconds a cached document is used without checking its
+	 *          time stamp - 0 checks the time stamp on every use
+	 */
+	public DocumentCache(long capacity, long maxAge)
+	{
+		this.blockCount = (int) Math.min(Integer.MAX_VALUE, capacity / BLOCK_SIZE);
+		this.maxAge = maxAge;
+		this.chunks = new ByteBuffer[(blockCount + BLOCKS_PER_CHUNK - 1) / BLOCKS_PER_CHUNK];
+	}
+
+	/**
+	 * Returns the document of the object from the cache if it is current, otherwise reads it from
+	 * MongoDB and caches it.
+	 * 
+	 * @param collection the collection containing the object
+	 * @param uri the URI of the object
+	 * @param id the id of the object
+	 * @return the document of the object or null if the object does not exist
+	 */
+	public DBObject find(DBCollection collection, URI uri, Object id)
+	{
+		String key = getKey(uri);
+		Entry entry;
+		long generation;
+
+		synchronized (entries)
+		{
+			entry = entries.get(key);
+			generation = generations[getStripe(key)];
+		}
+
+		if (entry != null)
+		{
+			long now = System.currentTimeMillis();
+
+			if (now - entry.validatedAt > maxAge)
+			{
+				DBObject probe = collection.findOne(new BasicDBObject(Keywords.ID_KEY, id), new BasicDBObject(Keywords.TIME_STAMP_KEY, 1));
+
+				if (probe == null || !entry.timeStamp.equals(probe.get(Keywords.TIME_STAMP_KEY)))
+				{
+					remove(uri);
+					entry = null;
+
+					synchronized (entries)
+					{
+						generation = generations[getStripe(key)];
+					}
+				}
+				else
+				{
+					synchronized (entries)
+					{
+						if (entries.get(key) == entry)
+							entry.validatedAt = now;
+					}
+				}
+			}
+		}
+
+		if (entry != null)
+		{
+			// The entry may have been evicted, and its blocks reused, since it was looked up
+
+			byte[] bytes = read(key, entry);
+
+			if (bytes != null)
+			{
+				hits.incrementAndGet();
+				return DefaultDBDecoder.FACTORY.create().decode(bytes, collection);
+			}
+		}
+
+		misses.incrementAndGet();
+		DBObject dbObject = collection.findOne(new BasicDBObject(Keywords.ID_KEY, id));
+
+		// The document is not cached if it was invalidated while it was being read, as it may
+		// have been read before the save or delete that invalidated it
+
+		if (dbObject != null)
+			put(key, dbObject, generation);
+
+		return dbObject;
+	}
+
+	/**
+	 * Caches the document of an object. Documents without a time stamp, and documents larger
+	 * than the capacity, are not cached.
+	 * 
+	 * @param uri the URI of the object
+	 * @param dbObject the document of the object
+	 */
+	public void put(URI uri, DBObject dbObject)
+	{
+		put(getKey(uri), dbObject, -1);
+	}
+
+	/**
+	 * Removes the document of an object from the cache. A document of the object being read
+	 * from MongoDB by find() at the same time is not cached.
+	 * 
+	 * @param uri the URI of the object
+	 */
+	public void remove(URI uri)
+	{
+		String key = getKey(uri);
+
+		synchronized (entries)
+		{
+			generations[getStripe(key)]++;
+			Entry entry = entries.remove(key);
+
+			if (entry != null)
+				release(entry);
+		}
+	}
+
+	/**
+	 * Removes all of the documents from the cache.
+	 */
+	public void clear()
+	{
+		synchronized (entries)
+		{
+			// The buffers are kept, and all of their blocks become free
+
+			for (int i = 0; i < generations.length; i++)
+				generations[i]++;
+
+			entries.clear();
+			size = 0;
+			nextBlock = 0;
+			freeCount = 0;
+		}
+	}
+
+	/**
+	 * @return the number of bytes of BSON cached
+	 */
+	public long getSize()
+	{
+		synchronized (entries)
+		{
+			return size;
+		}
+	}
+
+	/**
+	 * @return the number of documents returned from the cache
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of documents read from MongoDB
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Caches the document unless the generation of its key is no longer the specified
+	 * generation. A generation of -1 caches the document unconditionally.
+	 */
+	private void put(String key, DBObject dbObject, long generation)
+	{
+		Object timeStamp = dbObject.get(Keywords.TIME_STAMP_KEY);
+
+		if (timeStamp == null)
+			return;
+
+		BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+		DefaultDBEncoder.FACTORY.create().writeObject(outputBuffer, dbObject);
+		byte[] bytes = outputBuffer.toByteArray();
+
+		int needed = (bytes.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+		if (needed > blockCount)
+			return;
+
+		synchronized (entries)
+		{
+			if (generation != -1 && generations[getStripe(key)] != generation)
+				return;
+
+			Entry previous = entries.remove(key);
+
+			if (previous != null)
+				release(previous);
+
+			Iterator<Entry> iterator = entries.values().iterator();
+
+			while (freeCount + blockCount - nextBlock < needed)
+			{
+				release(iterator.next());
+				iterator.remove();
+			}
+
+			int[] blocks = allocate(needed);
+
+			for (int i = 0; i < blocks.length; i++)
+			{
+				int offset = i * BLOCK_SIZE;
+				getBlock(blocks[i]).put(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+			}
+
+			entries.put(key, new Entry(blocks, bytes.length, timeStamp, System.currentTimeMillis()));
+			size += bytes.length;
+		}
+	}
+
+	/**
+	 * @return the BSON of the entry, or null if the entry is no longer cached
+	 */
+	private byte[] read(String key, Entry entry)
+	{
+		synchronized (entries)
+		{
+			if (entries.get(key) != entry)
+				return null;
+
+			byte[] bytes = new byte[entry.length];
+
+			for (int i = 0; i < entry.blocks.length; i++)
+			{
+				int offset = i * BLOCK_SIZE;
+				getBlock(entry.blocks[i]).get(bytes, offset, Math.min(BLOCK_SIZE, bytes.length - offset));
+			}
+
+			return bytes;
+		}
+	}
+
+	/**
+	 * Takes the blocks from the free list first, then from the part of the arena that has not
+	 * been used yet, allocating its buffers as they are reached. Must be called holding the lock
+	 * on the entries with enough blocks available.
+	 */
+	private int[] allocate(int count)
+	{
+		int[] blocks = new int[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			if (freeCount > 0)
+				blocks[i] = freeBlocks[--freeCount];
+			else
+			{
+				int chunk = nextBlock / BLOCKS_PER_CHUNK;
+
+				if (chunks[chunk] == null)
+					chunks[chunk] = ByteBuffer.allocateDirect(Math.min(BLOCKS_PER_CHUNK, blockCount - chunk * BLOCKS_PER_CHUNK) * BLOCK_SIZE);
+
+				blocks[i] = nextBlock++;
+			}
+		}
+
+		return blocks;
+	}
+
+	private void release(Entry entry)
+	{
+		if (freeBlocks.length < freeCount + entry.blocks.length)
+			freeBlocks = Arrays.copyOf(freeBlocks, Math.max(freeBlocks.length * 2, freeCount + entry.blocks.length));
+
+		System.arraycopy(entry.blocks, 0, freeBlocks, freeCount, entry.blocks.length);
+		freeCount += entry.blocks.length;
+		size -= entry.length;
+	}
+
+	private ByteBuffer getBlock(int block)
+	{
+		ByteBuffer buffer = chunks[block / BLOCKS_PER_CHUNK].duplicate();
+		buffer.position((block % BLOCKS_PER_CHUNK) * BLOCK_SIZE);
+		return buffer;
+	}
+
+	private static int getStripe(String key)
+	{
+		return key.hashCode() & (GENERATION_STRIPES - 1);
+	}
+
+	private static String getKey(URI uri)
+	{
+		return uri.trimFragment().trimQuery().toString();
+	}
+
+	private static class Entry
+	{
+		Entry(int[] blocks, int length, Object timeStamp, long validatedAt)
+		{
+			this.blocks = blocks;
+			this.length = length;
+			this.timeStamp = timeStamp;
+			this.validatedAt = validatedAt;
+		}
+
+		final int[] blocks;
+		final int length;
+		final Object timeStamp;
+		volatile long validatedAt;
+	}
+
+	private static final int BLOCK_SIZE = 512;
+	private static final int BLOCKS_PER_CHUNK = 32768;
+	private static final int GENERATION_STRIPES = 256;
+
+	private final int blockCount;
+	private final long maxAge;
+	private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final ByteBuffer[] chunks;
+	private int nextBlock;
+	private int[] freeBlocks = new int[64];
+	private int freeCount;
+	private long size;
+	private final long[] generations = new long[GENERATION_STRIPES];
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+}
@@ -0,0 +1,566 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.TreeIterator;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.Annotations;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.gridfs.GridFS;
+import com.mongodb.gridfs.GridFSDBFile;
+import com.mongodb.gridfs.GridFSInputFile;
+
+/**
+ * Manages attribute values that are stored outside of their document in a GridFS bucket
+ * named after the collection. The document holds a handle of the form
+ * { _eExternal : fileId, length : n } in place of the value.
+ * 
+ * The DBObjectBuilder marks values to be stored externally with createMarker(), and the
+ * output stream writes the marked values to GridFS with store() before the document is saved.
+ * When an attribute annotated with Annotations.STORAGE_EXTERNAL is loaded, its value is not
+ * read. The handle is attached to the object so the value can be streamed with openStream()
+ * or read with resolve() on first access, and is written back unchanged when the object is
+ * saved without the attribute having been set.
+ * 
+ * Each file records the id of the document that owns it. Once a save of an existing object
+ * has been written, the files of the object that its document no longer references are
+ * removed with removeReplaced(), and deleting objects removes their files with removeOwned().
+ * When a write fails, the files stored for it are removed with removeUnwritten(). Files stored
+ * without an owner are never removed.
+ * 
+ * Values stored externally because they reached the external storage threshold are read when
+ * the object is loaded. The object is marked with setStored() so that a later save still
+ * removes the files it replaces.
+ * 
+ * @author bhunt
+ * 
+ */
+public final class ExternalValues
+{
+	/**
+	 * @param attribute the attribute to check
+	 * @return true if the attribute is annotated to be stored externally; false otherwise
+	 */
+	public static boolean isExternal(EAttribute attribute)
+	{
+		return !attribute.isMany() && Annotations.STORAGE_EXTERNAL.equals(EcoreUtil.getAnnotation(attribute, Annotations.SOURCE, Annotations.STORAGE));
+	}
+
+	/**
+	 * @param value the value read from MongoDB
+	 * @return true if the value is an external value handle or marker; false otherwise
+	 */
+	public static boolean isHandle(Object value)
+	{
+		return value instanceof DBObject && ((DBObject) value).containsField(Keywords.EXTERNAL_KEY);
+	}
+
+	/**
+	 * @param eObject the object to check
+	 * @return true if the object, or an object it contains in the same document, has an
+	 *         attribute annotated to be stored externally or was loaded with values stored
+	 *         externally; false otherwise
+	 */
+	public static boolean hasExternalAttributes(EObject eObject)
+	{
+		if (hasExternalValues(eObject))
+			return true;
+
+		for (TreeIterator<EObject> iterator = EcoreUtil.getAllProperContents(eObject, false); iterator.hasNext();)
+		{
+			if (hasExternalValues(iterator.next()))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param eClass the class to check
+	 * @return true if the class, or the type of a containment reference reachable from it, has
+	 *         an attribute annotated to be stored externally; false otherwise
+	 */
+	public static boolean hasExternalAttributes(EClass eClass)
+	{
+		ArrayList<EClass> eClasses = new ArrayList<EClass>();
+		eClasses.add(eClass);
+
+		for (int i = 0; i < eClasses.size(); i++)
+		{
+			if (hasAnnotatedAttributes(eClasses.get(i)))
+				return true;
+
+			for (EReference reference : eClasses.get(i).getEAllContainments())
+			{
+				if (!eClasses.contains(reference.getEReferenceType()))
+					eClasses.add(reference.getEReferenceType());
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param dbObject the document to check
+	 * @return true if the document, or an object embedded in it, holds the handle of a value
+	 *         stored in GridFS; false otherwise
+	 */
+	public static boolean containsHandles(DBObject dbObject)
+	{
+		ArrayList<Object> fileIds = new ArrayList<Object>();
+		getFileIds(dbObject, fileIds);
+		return !fileIds.isEmpty();
+	}
+
+	/**
+	 * Wraps a byte[] or String value so that store() writes it to GridFS.
+	 * 
+	 * @param value the value to store externally
+	 * @return the marker to put in the document in place of the value
+	 */
+	public static DBObject createMarker(Object value)
+	{
+		return new BasicDBObject(Keywords.EXTERNAL_KEY, value);
+	}
+
+	/**
+	 * Writes the values of all markers in the document, including markers in embedded
+	 * objects, to the GridFS bucket of the collection and replaces them with handles. The
+	 * files are owned by the _id of the document, which should be set.
+	 * 
+	 * @param collection the collection the document will be saved to
+	 * @param dbObject the document
+	 */
+	public static void store(DBCollection collection, DBObject dbObject)
+	{
+		GridFS gridFS = null;
+		Object owner = dbObject.get(Keywords.ID_KEY);
+
+		for (String key : dbObject.keySet())
+			gridFS = store(collection, gridFS, owner, dbObject.get(key));
+	}
+
+	/**
+	 * Removes the files owned by an object that are not referenced by the handles of its
+	 * document. This must be called after the document has been written.
+	 * 
+	 * @param collection the collection of the object
+	 * @param id the id of the object
+	 * @param dbObject the document that was written
+	 */
+	public static void removeReplaced(DBCollection collection, Object id, DBObject dbObject)
+	{
+		ArrayList<Object> fileIds = new ArrayList<Object>();
+		getFileIds(dbObject, fileIds);
+
+		BasicDBObject query = new BasicDBObject(OWNER_PATH, id);
+
+		if (!fileIds.isEmpty())
+			query.put(Keywords.ID_KEY, new BasicDBObject("$nin", fileIds));
+
+		removeFiles(collection, query);
+	}
+
+	/**
+	 * Removes the files stored for documents whose write failed. The files of the documents that
+	 * were not written are removed, and the documents that exist keep only the files they
+	 * reference. This reads the documents holding handles, so it is only done on failure.
+	 * 
+	 * @param collection the collection the documents were written to
+	 * @param dbObjects the documents of the failed write
+	 */
+	public static void removeUnwritten(DBCollection collection, List<DBObject> dbObjects)
+	{
+		LinkedHashSet<Object> ids = new LinkedHashSet<Object>();
+
+		for (DBObject dbObject : dbObjects)
+		{
+			if (dbObject.get(Keywords.ID_KEY) != null && containsHandles(dbObject))
+				ids.add(dbObject.get(Keywords.ID_KEY));
+		}
+
+		ArrayList<Object> idList = new ArrayList<Object>(ids);
+
+		for (int i = 0; i < idList.size(); i += BATCH_SIZE)
+		{
+			List<Object> batch = idList.subList(i, Math.min(i + BATCH_SIZE, idList.size()));
+			DBCursor cursor = collection.find(new BasicDBObject(Keywords.ID_KEY, new BasicDBObject("$in", batch)));
+
+			try
+			{
+				while (cursor.hasNext())
+				{
+					DBObject written = cursor.next();
+					ids.remove(written.get(Keywords.ID_KEY));
+					removeReplaced(collection, written.get(Keywords.ID_KEY), written);
+				}
+			}
+			finally
+			{
+				cursor.close();
+			}
+		}
+
+		removeOwned(collection, new ArrayList<Object>(ids));
+	}
+
+	/**
+	 * Removes the files owned by deleted objects.
+	 * 
+	 * @param collection the collection of the objects
+	 * @param ids the ids of the deleted objects
+	 */
+	public static void removeOwned(DBCollection collection, List<Object> ids)
+	{
+		for (int i = 0; i < ids.size(); i += BATCH_SIZE)
+			removeFiles(collection, new BasicDBObject(OWNER_PATH, new BasicDBObject("$in", ids.subList(i, Math.min(i + BATCH_SIZE, ids.size())))));
+	}
+
+	/**
+	 * Reads the external value referenced by the handle.
+	 * 
+	 * @param collection the collection the document was read from
+	 * @param handle the handle read from the document
+	 * @return the bytes of the value
+	 * @throws IOException if the value could not be read
+	 */
+	public static byte[] read(DBCollection collection, DBObject handle) throws IOException
+	{
+		InputStream in = openStream(collection, handle);
+
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+
+			while ((count = in.read(buffer)) != -1)
+				out.write(buffer, 0, count);
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Converts the bytes of an external value to the type of the attribute.
+	 * 
+	 * @param attribute the attribute
+	 * @param bytes the bytes of the value
+	 * @return the byte[] or String value of the attribute
+	 */
+	public static Object toValue(EAttribute attribute, byte[] bytes)
+	{
+		if ("byte[]".equals(attribute.getEAttributeType().getInstanceClassName()))
+			return bytes;
+
+		try
+		{
+			return new String(bytes, UTF_8);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Marks an object whose values stored externally were read when it was loaded, so that
+	 * saving the object removes the files it no longer references.
+	 * 
+	 * @param collection the collection the object was read from
+	 * @param eObject the object
+	 */
+	public static void setStored(DBCollection collection, EObject eObject)
+	{
+		getAdapter(collection, eObject);
+	}
+
+	/**
+	 * Attaches the handle of an attribute that was not read to the object.
+	 * 
+	 * @param collection the collection the object was read from
+	 * @param eObject the object
+	 * @param attribute the attribute
+	 * @param handle the handle of the value
+	 */
+	public static void setHandle(DBCollection collection, EObject eObject, EAttribute attribute, DBObject handle)
+	{
+		getAdapter(collection, eObject).handles.put(attribute, handle);
+	}
+
+	/**
+	 * @param eObject the object
+	 * @param attribute the attribute
+	 * @return the handle of the attribute if its value has not been read or set; null otherwise
+	 */
+	public static DBObject getHandle(EObject eObject, EAttribute attribute)
+	{
+		if (eObject.eAdapters().isEmpty())
+			return null;
+
+		HandleAdapter adapter = (HandleAdapter) EcoreUtil.getExistingAdapter(eObject, HandleAdapter.class);
+		return adapter != null ? adapter.handles.get(attribute) : null;
+	}
+
+	/**
+	 * Opens a stream on the value of the attribute. If the value has not been read, it is
+	 * streamed from GridFS; otherwise the stream reads the value of the attribute.
+	 * 
+	 * @param eObject the object
+	 * @param attribute a byte[] or String attribute
+	 * @return the stream, or null if the attribute has no value
+	 * @throws IOException if the value could not be read
+	 */
+	public static InputStream openStream(EObject eObject, EAttribute attribute) throws IOException
+	{
+		HandleAdapter adapter = (HandleAdapter) EcoreUtil.getExistingAdapter(eObject, HandleAdapter.class);
+
+		if (adapter != null && adapter.handles.containsKey(attribute))
+			return openStream(adapter.collection, adapter.handles.get(attribute));
+
+		Object value = eObject.eGet(attribute);
+
+		if (value == null)
+			return null;
+
+		return new ByteArrayInputStream(value instanceof byte[] ? (byte[]) value : ((String) value).getBytes(UTF_8));
+	}
+
+	/**
+	 * Reads the value of the attribute from GridFS if it has not been read, and sets it on
+	 * the object.
+	 * 
+	 * @param eObject the object
+	 * @param attribute a byte[] or String attribute
+	 * @return the value of the attribute
+	 * @throws IOException if the value could not be read
+	 */
+	public static Object resolve(EObject eObject, EAttribute attribute) throws IOException
+	{
+		HandleAdapter adapter = (HandleAdapter) EcoreUtil.getExistingAdapter(eObject, HandleAdapter.class);
+
+		if (adapter != null && adapter.handles.containsKey(attribute))
+			eObject.eSet(attribute, toValue(attribute, read(adapter.collection, adapter.handles.get(attribute))));
+
+		return eObject.eGet(attribute);
+	}
+
+	private static InputStream openStream(DBCollection collection, DBObject handle) throws IOException
+	{
+		Object value = handle.get(Keywords.EXTERNAL_KEY);
+
+		if (value instanceof byte[])
+			return new ByteArrayInputStream((byte[]) value);
+
+		if (value instanceof String)
+			return new ByteArrayInputStream(((String) value).getBytes(UTF_8));
+
+		GridFSDBFile file = new GridFS(collection.getDB(), collection.getName()).findOne((ObjectId) value);
+
+		if (file == null)
+			throw new IOException("The external value '" + value + "' was not found in '" + collection.getName() + "'");
+
+		return file.getInputStream();
+	}
+
+	private static HandleAdapter getAdapter(DBCollection collection, EObject eObject)
+	{
+		HandleAdapter adapter = (HandleAdapter) EcoreUtil.getExistingAdapter(eObject, HandleAdapter.class);
+
+		if (adapter == null)
+		{
+			adapter = new HandleAdapter(collection);
+			eObject.eAdapters().add(adapter);
+		}
+
+		return adapter;
+	}
+
+	private static boolean hasExternalValues(EObject eObject)
+	{
+		if (hasAnnotatedAttributes(eObject.eClass()))
+			return true;
+
+		return !eObject.eAdapters().isEmpty() && EcoreUtil.getExistingAdapter(eObject, HandleAdapter.class) != null;
+	}
+
+	private static void removeFiles(DBCollection collection, DBObject query)
+	{
+		DBCollection files = collection.getDB().getCollection(collection.getName() + ".files");
+		ArrayList<Object> fileIds = new ArrayList<Object>();
+		DBCursor cursor = files.find(query, new BasicDBObject(Keywords.ID_KEY, 1));
+
+		try
+		{
+			while (cursor.hasNext())
+				fileIds.add(cursor.next().get(Keywords.ID_KEY));
+		}
+		finally
+		{
+			cursor.close();
+		}
+
+		if (fileIds.isEmpty())
+			return;
+
+		// The chunks are removed first so that a failure leaves the files to be found again
+
+		BasicDBObject in = new BasicDBObject("$in", fileIds);
+		collection.getDB().getCollection(collection.getName() + ".chunks").remove(new BasicDBObject("files_id", in));
+		files.remove(new BasicDBObject(Keywords.ID_KEY, in));
+	}
+
+	private static void getFileIds(Object value, List<Object> fileIds)
+	{
+		if (value instanceof List)
+		{
+			for (Object element : (List<?>) value)
+				getFileIds(element, fileIds);
+		}
+		else if (value instanceof DBObject)
+		{
+			DBObject dbObject = (DBObject) value;
+
+			if (dbObject.get(Keywords.EXTERNAL_KEY) instanceof ObjectId)
+				fileIds.add(dbObject.get(Keywords.EXTERNAL_KEY));
+			else
+			{
+				for (String key : dbObject.keySet())
+					getFileIds(dbObject.get(key), fileIds);
+			}
+		}
+	}
+
+	private static boolean hasAnnotatedAttributes(EClass eClass)
+	{
+		for (EAttribute attribute : eClass.getEAllAttributes())
+		{
+			if (isExternal(attribute))
+				return true;
+		}
+
+		return false;
+	}
+
+	private static GridFS store(DBCollection collection, GridFS gridFS, Object owner, Object value)
+	{
+		if (value instanceof DBObject && !(value instanceof List))
+		{
+			DBObject dbObject = (DBObject) value;
+			Object externalValue = dbObject.get(Keywords.EXTERNAL_KEY);
+
+			if (externalValue instanceof byte[] || externalValue instanceof String)
+			{
+				byte[] bytes;
+
+				try
+				{
+					bytes = externalValue instanceof byte[] ? (byte[]) externalValue : ((String) externalValue).getBytes(UTF_8);
+				}
+				catch (UnsupportedEncodingException e)
+				{
+					throw new IllegalStateException(e);
+				}
+
+				if (gridFS == null)
+					gridFS = new GridFS(collection.getDB(), collection.getName());
+
+				GridFSInputFile file = gridFS.createFile(bytes);
+
+				if (owner != null)
+					file.setMetaData(new BasicDBObject(OWNER_KEY, owner));
+
+				file.save();
+
+				dbObject.put(Keywords.EXTERNAL_KEY, file.getId());
+				dbObject.put(LENGTH_KEY, bytes.length);
+			}
+			else if (externalValue == null)
+			{
+				for (String key : dbObject.keySet())
+					gridFS = store(collection, gridFS, owner, dbObject.get(key));
+			}
+		}
+		else if (value instanceof List)
+		{
+			for (Object element : (List<?>) value)
+				gridFS = store(collection, gridFS, owner, element);
+		}
+
+		return gridFS;
+	}
+
+	/**
+	 * Holds the handles of the external values of an object that have not been read.
+	 * A handle is discarded when the attribute is set. The adapter also marks an object
+	 * loaded with values stored externally.
+	 */
+	private static class HandleAdapter extends AdapterImpl
+	{
+		HandleAdapter(DBCollection collection)
+		{
+			this.collection = collection;
+		}
+
+		@Override
+		public boolean isAdapterForType(Object type)
+		{
+			return type == HandleAdapter.class;
+		}
+
+		@Override
+		public void notifyChanged(Notification notification)
+		{
+			if (!notification.isTouch() && notification.getFeature() instanceof EAttribute)
+				handles.remove(notification.getFeature());
+		}
+
+		private DBCollection collection;
+		private Map<EAttribute, DBObject> handles = new HashMap<EAttribute, DBObject>();
+	}
+
+	private static final String UTF_8 = "UTF-8";
+	private static final String LENGTH_KEY = "length";
+	private static final String OWNER_KEY = "owner";
+	private static final String OWNER_PATH = "metadata." + OWNER_KEY;
+	private static final int BATCH_SIZE = 1000;
+
+	private ExternalValues()
+	{}
+}
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.model.MongoCursor;
+import org.eclipselabs.mongoemf.model.MongoQuery;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * Splits the result set of a MongoDB cursor into contiguous _id ranges so that the
+ * results can be scanned in parallel. Each range is backed by its own DBCursor created
+ * from the query, projection, batch size and read preference of the original cursor.
+ * The range boundaries are sampled with a single forward walk of the _id index.
+ *
+ * The ranges are disjoint and together cover the result set of the original query. When the
+ * query the cursor was created from has been recorded with setQuery(), its sort, hint, time
+ * limit and comment are applied to each range, so each range is sorted but the ranges are not
+ * merged. A query with a skip or limit cannot be partitioned. The range cursors are closed
+ * along with the original cursor by close(). The iterators may be consumed from different
+ * threads only when detached since the attached iterators create resources in the shared
+ * resource set.
+ *
+ * @author bhunt
+ *
+ */
+public final class MongoCursorPartitioner
+{
+	/**
+	 * Records the query a cursor was created from.
+	 *
+	 * @param mongoCursor the cursor
+	 * @param mongoQuery the query the cursor was created from
+	 */
+	public static void setQuery(MongoCursor mongoCursor, MongoQuery mongoQuery)
+	{
+		getAdapter(mongoCursor).mongoQuery = mongoQuery;
+	}
+
+	/**
+	 * Partitions the results of the cursor into at most count iterators.
+	 *
+	 * @param mongoCursor the cursor to partition - it is not consumed or closed
+	 * @param count the desired number of partitions
+	 * @return the list of partition iterators
+	 * @throws IllegalArgumentException if the query of the cursor has a skip or a limit
+	 */
+	public static EList<Iterator<EObject>> partition(MongoCursor mongoCursor, int count)
+	{
+		PartitionAdapter adapter = getAdapter(mongoCursor);
+		MongoQuery mongoQuery = adapter.mongoQuery;
+
+		if (mongoQuery != null && (isSet(mongoQuery.getSkip()) || isSet(mongoQuery.getLimit())))
+			throw new IllegalArgumentException("A cursor with a skip or limit cannot be partitioned");
+
+		DBCursor dbCursor = mongoCursor.getDbCursor();
+		DBCollection dbCollection = mongoCursor.getDbCollection();
+		DBObject query = dbCursor.getQuery();
+		List<Object> boundaries = count > 1 ? sampleBoundaries(dbCollection, query, count) : new ArrayList<Object>();
+		EList<Iterator<EObject>> iterators = new BasicEList<Iterator<EObject>>(boundaries.size() + 1);
+		Object lowerBound = null;
+
+		for (int i = 0; i <= boundaries.size(); i++)
+		{
+			Object upperBound = i < boundaries.size() ? boundaries.get(i) : null;
+			DBCursor rangeCursor = dbCollection.find(buildRangeQuery(query, lowerBound, upperBound), dbCursor.getKeysWanted());
+			adapter.addRangeCursor(rangeCursor);
+
+			if (dbCursor.getBatchSize() != 0)
+				rangeCursor.batchSize(dbCursor.getBatchSize());
+
+			if (dbCursor.getReadPreference() != null)
+				rangeCursor.setReadPreference(dbCursor.getReadPreference());
+
+			if (mongoQuery != null)
+				applyQuery(rangeCursor, mongoQuery);
+
+			iterators.add(new MongoIterator(rangeCursor, dbCollection, mongoCursor.eResource(), mongoCursor.getObjectBuilder(), mongoCursor.isDetached()));
+			lowerBound = upperBound;
+		}
+
+		return iterators;
+	}
+
+	/**
+	 * Closes the cursor along with the cursors of its partitions.
+	 *
+	 * @param mongoCursor the cursor to close
+	 */
+	public static void close(MongoCursor mongoCursor)
+	{
+		PartitionAdapter adapter = (PartitionAdapter) EcoreUtil.getExistingAdapter(mongoCursor, PartitionAdapter.class);
+
+		try
+		{
+			if (adapter != null)
+				adapter.closeRangeCursors();
+		}
+		finally
+		{
+			mongoCursor.getDbCursor().close();
+		}
+	}
+
+	/**
+	 * Samples count - 1 _id values that split the query results into ranges of roughly
+	 * equal size. Each sample continues from the previous boundary so the _id index is
+	 * only walked once.
+	 *
+	 * @param dbCollection the collection to sample
+	 * @param query the query to partition
+	 * @param count the desired number of partitions
+	 * @return the ordered list of boundaries - may be smaller than count - 1 for small result sets
+	 */
+	private static List<Object> sampleBoundaries(DBCollection dbCollection, DBObject query, int count)
+	{
+		ArrayList<Object> boundaries = new ArrayList<Object>(count - 1);
+		long total = dbCollection.count(query);
+		long step = total / count;
+
+		if (step == 0)
+			return boundaries;
+
+		DBObject keys = new BasicDBObject(Keywords.ID_KEY, 1);
+		DBObject sort = new BasicDBObject(Keywords.ID_KEY, 1);
+		Object lowerBound = null;
+
+		for (int i = 1; i < count; i++)
+		{
+			DBCursor sampleCursor = dbCollection.find(buildRangeQuery(query, lowerBound, null), keys).sort(sort).skip((int) step).limit(1);
+
+			try
+			{
+				if (!sampleCursor.hasNext())
+					break;
+
+				lowerBound = sampleCursor.next().get(Keywords.ID_KEY);
+				boundaries.add(lowerBound);
+			}
+			finally
+			{
+				sampleCursor.close();
+			}
+		}
+
+		return boundaries;
+	}
+
+	/**
+	 * Restricts the query to the _id range [lowerBound, upperBound).
+	 *
+	 * @param query the query to restrict
+	 * @param lowerBound the inclusive lower bound or null if unbounded
+	 * @param upperBound the exclusive upper bound or null if unbounded
+	 * @return the restricted query
+	 */
+	private static DBObject buildRangeQuery(DBObject query, Object lowerBound, Object upperBound)
+	{
+		if (lowerBound == null && upperBound == null)
+			return query;
+
+		BasicDBObject range = new BasicDBObject();
+
+		if (lowerBound != null)
+			range.put("$gte", lowerBound);
+
+		if (upperBound != null)
+			range.put("$lt", upperBound);
+
+		BasicDBObject idQuery = new BasicDBObject(Keywords.ID_KEY, range);
+
+		if (query == null || query.keySet().isEmpty())
+			return idQuery;
+
+		BasicDBList clauses = new BasicDBList();
+		clauses.add(query);
+		clauses.add(idQuery);
+		return new BasicDBObject("$and", clauses);
+	}
+
+	private static void applyQuery(DBCursor rangeCursor, MongoQuery mongoQuery)
+	{
+		if (mongoQuery.getSort() != null)
+			rangeCursor.sort(mongoQuery.getSort());
+
+		if (mongoQuery.getHint() instanceof String)
+			rangeCursor.hint((String) mongoQuery.getHint());
+		else if (mongoQuery.getHint() != null)
+			rangeCursor.hint((DBObject) mongoQuery.getHint());
+
+		if (mongoQuery.getMaxTimeMS() != null)
+			rangeCursor.addSpecial("$maxTimeMS", mongoQuery.getMaxTimeMS());
+
+		if (mongoQuery.getComment() != null)
+			rangeCursor.addSpecial("$comment", mongoQuery.getComment());
+	}
+
+	private static boolean isSet(Integer value)
+	{
+		return value != null && value.intValue() != 0;
+	}
+
+	private static PartitionAdapter getAdapter(MongoCursor mongoCursor)
+	{
+		PartitionAdapter adapter = (PartitionAdapter) EcoreUtil.getExistingAdapter(mongoCursor, PartitionAdapter.class);
+
+		if (adapter == null)
+		{
+			adapter = new PartitionAdapter();
+			mongoCursor.eAdapters().add(adapter);
+		}
+
+		return adapter;
+	}
+
+	/**
+	 * Holds the query of a cursor and the cursors of its partitions.
+	 */
+	private static class PartitionAdapter extends AdapterImpl
+	{
+		@Override
+		public boolean isAdapterForType(Object type)
+		{
+			return type == PartitionAdapter.class;
+		}
+
+		synchronized void addRangeCursor(DBCursor rangeCursor)
+		{
+			rangeCursors.add(rangeCursor);
+		}
+
+		synchronized void closeRangeCursors()
+		{
+			for (DBCursor rangeCursor : rangeCursors)
+				rangeCursor.close();
+
+			rangeCursors.clear();
+		}
+
+		private volatile MongoQuery mongoQuery;
+		private ArrayList<DBCursor> rangeCursors = new ArrayList<DBCursor>();
+	}
+
+	private MongoCursorPartitioner()
+	{}
+}
@@ -23,6 +23,11 @@ import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 
 /**
+ * Iterates over the objects returned by a MongoDB cursor building an EObject for each
+ * DBObject. By default, each EObject is added to its own resource created in the resource
+ * set of the cursor. When the iterator is detached, the EObject is not added to any resource
+ * so the resource set does not grow while the cursor is being scanned.
+ * 
  * @author bhunt
  * 
  */
@@ -32,6 +37,7 @@ public class MongoIterator implements Iterator<EObject>
 	private DBCollection dbCollection;
 	private Resource eResource;
 	private EObjectBuilder objectBuilder;
+	private boolean detached;
 
 	/**
 	 * @param dbCursor
@@ -40,12 +46,25 @@ public class MongoIterator implements Iterator<EObject>
 	 * @param objectBuilder
 	 */
 	public MongoIterator(DBCursor dbCursor, DBCollection dbCollection, Resource eResource, EObjectBuilder objectBuilder)
+	{
+		this(dbCursor, dbCollection, eResource, objectBuilder, false);
+	}
+
+	/**
+	 * @param dbCursor
+	 * @param dbCollection
+	 * @param eResource
+	 * @param objectBuilder
+	 * @param detached true if the objects returned by next() must not be added to a resource; false otherwise
+	 */
+	public MongoIterator(DBCursor dbCursor, DBCollection dbCollection, Resource eResource, EObjectBuilder objectBuilder, boolean detached)
 	{
 		super();
 		this.dbCursor = dbCursor;
 		this.dbCollection = dbCollection;
 		this.eResource = eResource;
 		this.objectBuilder = objectBuilder;
+		this.detached = detached;
 	}
 
 	@Override
@@ -58,6 +77,10 @@ public class MongoIterator implements Iterator<EObject>
 	public EObject next()
 	{
 		DBObject dbObject = dbCursor.next();
+
+		if (detached)
+			return objectBuilder.buildEObject(dbCollection, dbObject, eResource, false);
+
 		URI uri = objectBuilder.buildURI(dbCollection, dbObject);
 		Resource resource = eResource.getResourceSet().createResource(uri, null);
 		EObject eObject = objectBuilder.buildEObject(dbCollection, dbObject, eResource, false);
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipselabs.mongoemf.MetadataProbe;
+import org.eclipselabs.mongoemf.Options;
+
+/**
+ * Reloads MongoDB resources only when their objects have changed since they were loaded. The
+ * time stamp of the loaded contents is compared with the time stamp stored with the object, so
+ * an unchanged resource costs a single projected query and keeps its contents.
+ * 
+ * @author bhunt
+ * 
+ */
+public final class ResourceRefresh
+{
+	/**
+	 * Reloads the resource if its object has changed. A resource that is not loaded is loaded.
+	 * 
+	 * @param resource the resource to refresh
+	 * @param options the load options - may be null
+	 * @return true if the resource was reloaded; false if its contents are current
+	 * @throws IOException if the resource could not be loaded
+	 */
+	public static boolean refresh(Resource resource, Map<?, ?> options) throws IOException
+	{
+		if (!resource.isLoaded() || resource.getContents().isEmpty())
+		{
+			resource.unload();
+			resource.load(options);
+			return true;
+		}
+
+		HashMap<Object, Object> loadOptions = new HashMap<Object, Object>();
+		ResourceSet resourceSet = resource.getResourceSet();
+
+		if (resourceSet != null)
+			loadOptions.putAll(resourceSet.getLoadOptions());
+
+		if (options != null)
+			loadOptions.putAll(options);
+
+		HashMap<Object, Object> response = new HashMap<Object, Object>();
+		long loadedTimeStamp = resource.getTimeStamp();
+		loadOptions.put(URIConverter.OPTION_RESPONSE, response);
+		loadOptions.put(Options.OPTION_LOADED_TIME_STAMP, loadedTimeStamp);
+
+		URIConverter uriConverter = resourceSet != null ? resourceSet.getURIConverter() : URIConverter.INSTANCE;
+		InputStream inputStream = uriConverter.createInputStream(resource.getURI(), loadOptions);
+
+		try
+		{
+			((URIConverter.Loadable) inputStream).loadResource(resource);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+
+		Long timeStamp = (Long) response.get(URIConverter.RESPONSE_TIME_STAMP_PROPERTY);
+
+		if (timeStamp != null && timeStamp == loadedTimeStamp && !resource.getContents().isEmpty())
+			return false;
+
+		resource.setTimeStamp(timeStamp != null ? timeStamp : URIConverter.NULL_TIME_STAMP);
+		resource.setModified(false);
+		return true;
+	}
+
+	/**
+	 * Reloads the resources whose objects have changed. The time stamps of all of the resources
+	 * are read with one query per collection using the MetadataProbe of the resources' URI
+	 * handler, and only the changed resources are reloaded.
+	 * 
+	 * @param resources the loaded MongoDB resources to refresh
+	 * @param options the load options - may be null
+	 * @return the resources that were reloaded
+	 * @throws IOException if the time stamps could not be read or a resource could not be loaded
+	 */
+	public static List<Resource> refreshAll(Collection<Resource> resources, Map<?, ?> options) throws IOException
+	{
+		ArrayList<Resource> reloaded = new ArrayList<Resource>();
+		LinkedHashMap<MetadataProbe, Map<URI, Resource>> resourcesByProbe = new LinkedHashMap<MetadataProbe, Map<URI, Resource>>();
+
+		for (Resource resource : resources)
+		{
+			ResourceSet resourceSet = resource.getResourceSet();
+			URIConverter uriConverter = resourceSet != null ? resourceSet.getURIConverter() : URIConverter.INSTANCE;
+			Object uriHandler = uriConverter.getURIHandler(resource.getURI());
+
+			if (!(uriHandler instanceof MetadataProbe) || !resource.isLoaded() || resource.getURI().hasQuery())
+			{
+				if (refresh(resource, options))
+					reloaded.add(resource);
+
+				continue;
+			}
+
+			Map<URI, Resource> probeResources = resourcesByProbe.get(uriHandler);
+
+			if (probeResources == null)
+			{
+				probeResources = new LinkedHashMap<URI, Resource>();
+				resourcesByProbe.put((MetadataProbe) uriHandler, probeResources);
+			}
+
+			probeResources.put(resource.getURI(), resource);
+		}
+
+		for (Map.Entry<MetadataProbe, Map<URI, Resource>> entry : resourcesByProbe.entrySet())
+		{
+			HashMap<Object, Object> probeOptions = new HashMap<Object, Object>();
+
+			if (options != null)
+				probeOptions.putAll(options);
+
+			Map<URI, Long> timeStamps = entry.getKey().probe(entry.getValue().keySet(), probeOptions);
+
+			for (Resource resource : entry.getValue().values())
+			{
+				Long timeStamp = timeStamps.get(resource.getURI());
+
+				if (timeStamp == null || timeStamp != resource.getTimeStamp())
+				{
+					resource.unload();
+					resource.load(options);
+					reloaded.add(resource);
+				}
+			}
+		}
+
+		return reloaded;
+	}
+
+	private ResourceRefresh()
+	{}
+}
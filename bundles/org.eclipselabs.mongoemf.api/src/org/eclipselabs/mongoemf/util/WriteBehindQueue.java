@@ -0,0 +1,450 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipselabs.mongoemf.DeferredWriter;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+
+/**
+ * Writes saved objects to MongoDB in the background. The queue is used by setting it as the
+ * Options.OPTION_DEFERRED_WRITER save option. A save then returns as soon as its document is
+ * built, and repeated saves of the same object within the window replace each other so only
+ * the last one is written. A background thread writes the objects that have been queued for
+ * longer than the window, grouped by collection.
+ * 
+ * flush() is a barrier: when it returns, every object queued before the call has been
+ * written. shutdown() stops the background thread and writes the remaining objects.
+ * 
+ * The number of queued objects is bounded. A save of an object that is not already queued
+ * blocks while the queue is full, and the background thread writes the queued objects without
+ * waiting for the window to pass. The blocked saves continue once those writes have completed.
+ * 
+ * Loading an object that has a pending write returns the previously written state. The objects
+ * of failed background writes are kept along with the errors, and are reported by the next call
+ * to flush() so they can be saved again.
+ * 
+ * @author bhunt
+ * 
+ */
+public class WriteBehindQueue implements DeferredWriter
+{
+	/**
+	 * @param window the time in milliseconds a save is held back to coalesce it with later saves of the same object
+	 * @param writeConcern the write concern used for the writes - the collection's write concern is used if null
+	 */
+	public WriteBehindQueue(long window, WriteConcern writeConcern)
+	{
+		this(window, writeConcern, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param window the time in milliseconds a save is held back to coalesce it with later saves of the same object
+	 * @param writeConcern the write concern used for the writes - the collection's write concern is used if null
+	 * @param capacity the maximum number of objects waiting to be written
+	 */
+	public WriteBehindQueue(long window, WriteConcern writeConcern, int capacity)
+	{
+		if (window < 0)
+			throw new IllegalArgumentException("The window must not be negative");
+
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity must be positive");
+
+		this.window = window;
+		this.writeConcern = writeConcern;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Queues the object, blocking while the queue is full unless the object is already queued.
+	 * 
+	 * @throws MongoException if the thread is interrupted while waiting for room in the queue
+	 */
+
+	@Override
+	public void write(DBCollection collection, DBObject dbObject, boolean insert, Runnable written)
+	{
+		Key key = new Key(collection, dbObject.get(Keywords.ID_KEY));
+
+		synchronized (pending)
+		{
+			while (pending.size() >= capacity && !pending.containsKey(key) && !shutdown)
+			{
+				// Wake the background thread so it writes the queue without waiting for the window
+
+				pending.notifyAll();
+
+				try
+				{
+					pending.wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					throw new MongoException("Interrupted while waiting for room in the write behind queue", e);
+				}
+			}
+
+			if (shutdown)
+				throw new IllegalStateException("The write behind queue has been shut down");
+
+			Write previous = pending.get(key);
+
+			if (previous == null)
+			{
+				previous = new Write(dbObject, insert, System.currentTimeMillis());
+				pending.put(key, previous);
+			}
+			else
+			{
+				// An object that has not been inserted yet must still be inserted, otherwise the later save wins
+
+				previous.dbObject = dbObject;
+				previous.insert = previous.insert && insert;
+				previous.written.clear();
+				coalescedCount++;
+			}
+
+			if (written != null)
+				previous.written.add(written);
+
+			if (worker == null)
+			{
+				worker = new Thread(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						writeDue();
+					}
+				}, "MongoDB Write Behind");
+
+				worker.setDaemon(true);
+				worker.start();
+			}
+
+			pending.notifyAll();
+		}
+	}
+
+	/**
+	 * Writes all of the queued objects and waits for the writes to complete.
+	 * 
+	 * @throws WriteBehindException if this or an earlier write failed - the exception holds
+	 *           every error and failed object since the last flush
+	 */
+	public void flush()
+	{
+		synchronized (writeLock)
+		{
+			writeQueued(Long.MAX_VALUE);
+
+			if (!errors.isEmpty())
+			{
+				WriteBehindException exception = new WriteBehindException(errors, failedObjects);
+				errors = new ArrayList<RuntimeException>();
+				failedObjects = new ArrayList<DBObject>();
+				throw exception;
+			}
+		}
+	}
+
+	/**
+	 * Stops the background thread and writes the remaining queued objects. Saves using this
+	 * queue fail once it has been shut down.
+	 * 
+	 * @throws WriteBehindException if this or an earlier write failed
+	 */
+	public void shutdown()
+	{
+		Thread thread;
+
+		synchronized (pending)
+		{
+			shutdown = true;
+			thread = worker;
+			pending.notifyAll();
+		}
+
+		if (thread != null)
+		{
+			try
+			{
+				thread.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		flush();
+	}
+
+	/**
+	 * @return the number of objects waiting to be written
+	 */
+	public int getQueuedCount()
+	{
+		synchronized (pending)
+		{
+			return pending.size();
+		}
+	}
+
+	/**
+	 * @return the number of saves that replaced a queued save of the same object
+	 */
+	public long getCoalescedCount()
+	{
+		synchronized (pending)
+		{
+			return coalescedCount;
+		}
+	}
+
+	private void writeDue()
+	{
+		while (true)
+		{
+			long now = System.currentTimeMillis();
+			long delay = 0;
+
+			synchronized (pending)
+			{
+				if (shutdown)
+					return;
+
+				if (pending.isEmpty())
+					delay = Long.MAX_VALUE;
+				else if (pending.size() >= capacity)
+					delay = 0;
+				else
+					delay = pending.values().iterator().next().queuedAt + window - now;
+
+				if (delay > 0)
+				{
+					try
+					{
+						if (delay == Long.MAX_VALUE)
+							pending.wait();
+						else
+							pending.wait(delay);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+
+					continue;
+				}
+			}
+
+			synchronized (writeLock)
+			{
+				writeQueued(isFull() ? Long.MAX_VALUE : now - window);
+			}
+		}
+	}
+
+	private boolean isFull()
+	{
+		synchronized (pending)
+		{
+			return pending.size() >= capacity;
+		}
+	}
+
+	/**
+	 * Removes the objects queued at or before the time from the queue and writes them. The writes
+	 * of a collection that fail are recorded with their objects and the other collections are
+	 * still written. Must be called holding the write lock so the writes of a flush are not
+	 * overtaken.
+	 * 
+	 * @param queuedBefore the latest queue time of the objects to write
+	 */
+	private void writeQueued(long queuedBefore)
+	{
+		LinkedHashMap<DBCollection, ArrayList<Write>> writesByCollection = new LinkedHashMap<DBCollection, ArrayList<Write>>();
+
+		synchronized (pending)
+		{
+			// The queue is ordered by the time the objects were first queued
+
+			Iterator<Map.Entry<Key, Write>> iterator = pending.entrySet().iterator();
+
+			while (iterator.hasNext())
+			{
+				Map.Entry<Key, Write> entry = iterator.next();
+
+				if (entry.getValue().queuedAt > queuedBefore)
+					break;
+
+				ArrayList<Write> writes = writesByCollection.get(entry.getKey().collection);
+
+				if (writes == null)
+				{
+					writes = new ArrayList<Write>();
+					writesByCollection.put(entry.getKey().collection, writes);
+				}
+
+				writes.add(entry.getValue());
+				iterator.remove();
+			}
+		}
+
+		for (Map.Entry<DBCollection, ArrayList<Write>> entry : writesByCollection.entrySet())
+		{
+			ArrayList<DBObject> inserts = new ArrayList<DBObject>();
+			ArrayList<DBObject> upserts = new ArrayList<DBObject>();
+
+			for (Write write : entry.getValue())
+			{
+				if (write.insert)
+					inserts.add(write.dbObject);
+				else
+					upserts.add(write.dbObject);
+			}
+
+			try
+			{
+				BulkSave.write(entry.getKey(), inserts, upserts, writeConcern);
+			}
+			catch (RuntimeException e)
+			{
+				errors.add(e);
+				failedObjects.addAll(inserts);
+				failedObjects.addAll(upserts);
+				continue;
+			}
+
+			for (Write write : entry.getValue())
+			{
+				for (Runnable written : write.written)
+					written.run();
+			}
+		}
+
+		// Saves blocked on a full queue proceed once the objects taken from it have been written
+
+		synchronized (pending)
+		{
+			pending.notifyAll();
+		}
+	}
+
+	/**
+	 * Reports the writes that failed since the last flush. The objects of a failed collection
+	 * write include the objects that may have been written before the error occurred; saving
+	 * them again with an id upserts them.
+	 */
+	public static class WriteBehindException extends MongoException
+	{
+		WriteBehindException(List<RuntimeException> errors, List<DBObject> failedObjects)
+		{
+			super(errors.size() + " write behind batches failed", errors.get(0));
+			this.errors = Collections.unmodifiableList(errors);
+			this.failedObjects = Collections.unmodifiableList(failedObjects);
+		}
+
+		/**
+		 * @return every error, in the order the writes failed
+		 */
+		public List<RuntimeException> getErrors()
+		{
+			return errors;
+		}
+
+		/**
+		 * @return the objects of the failed writes
+		 */
+		public List<DBObject> getFailedObjects()
+		{
+			return failedObjects;
+		}
+
+		private static final long serialVersionUID = 1L;
+		private final List<RuntimeException> errors;
+		private final List<DBObject> failedObjects;
+	}
+
+	/**
+	 * Identifies an object by its collection and id.
+	 */
+	private static class Key
+	{
+		Key(DBCollection collection, Object id)
+		{
+			this.collection = collection;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof Key))
+				return false;
+
+			Key other = (Key) object;
+			return collection.equals(other.collection) && id.equals(other.id);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return collection.hashCode() * 31 + id.hashCode();
+		}
+
+		DBCollection collection;
+		Object id;
+	}
+
+	private static class Write
+	{
+		Write(DBObject dbObject, boolean insert, long queuedAt)
+		{
+			this.dbObject = dbObject;
+			this.insert = insert;
+			this.queuedAt = queuedAt;
+		}
+
+		DBObject dbObject;
+		boolean insert;
+		long queuedAt;
+		ArrayList<Runnable> written = new ArrayList<Runnable>();
+	}
+
+	private static final int DEFAULT_CAPACITY = 10000;
+
+	private long window;
+	private WriteConcern writeConcern;
+	private int capacity;
+	private final LinkedHashMap<Key, Write> pending = new LinkedHashMap<Key, Write>();
+	private final Object writeLock = new Object();
+	private Thread worker;
+	private boolean shutdown;
+	private long coalescedCount;
+	private ArrayList<RuntimeException> errors = new ArrayList<RuntimeException>();
+	private ArrayList<DBObject> failedObjects = new ArrayList<DBObject>();
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt & Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt & Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.bson.types.Binary;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.util.BasicInternalEList;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipselabs.mongoemf.Annotations;
+
+/**
+ * Serializes the subtree of a containment reference annotated with Annotations.ENCODING_BINARY
+ * in EMF's binary resource format into BSON binary tagged with a user defined subtype,
+ * and deserializes it again.
+ * 
+ * @author bhunt
+ * 
+ */
+final class BinaryReferences
+{
+	/**
+	 * The BSON binary subtype of serialized subtrees.
+	 */
+	static final byte BINARY_SUBTYPE = (byte) 0x81;
+
+	/**
+	 * @param reference the reference to check
+	 * @return true if the reference is a containment reference annotated with the binary
+	 *         encoding; false otherwise
+	 */
+	static boolean isBinary(EReference reference)
+	{
+		return reference.isContainment() && Annotations.ENCODING_BINARY.equals(EcoreUtil.getAnnotation(reference, Annotations.SOURCE, Annotations.ENCODING));
+	}
+
+	/**
+	 * @param value the value read from MongoDB
+	 * @return true if the value is a serialized subtree; false otherwise
+	 */
+	static boolean isBinary(Object value)
+	{
+		return value instanceof Binary && ((Binary) value).getType() == BINARY_SUBTYPE;
+	}
+
+	/**
+	 * Serializes the objects contained by the reference, including their contents.
+	 * 
+	 * @param eObject the containing object
+	 * @param reference the containment reference
+	 * @return the serialized subtree
+	 */
+	@SuppressWarnings("unchecked")
+	static Binary encode(EObject eObject, EReference reference)
+	{
+		InternalEList<? extends InternalEObject> values;
+
+		if (reference.isMany())
+			values = (InternalEList<? extends InternalEObject>) eObject.eGet(reference, false);
+		else
+		{
+			BasicInternalEList<InternalEObject> value = new BasicInternalEList<InternalEObject>(InternalEObject.class);
+
+			if (eObject.eGet(reference, false) != null)
+				value.add((InternalEObject) eObject.eGet(reference, false));
+
+			values = value;
+		}
+
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			BinaryResourceImpl.EObjectOutputStream eObjectOutputStream = new BinaryResourceImpl.EObjectOutputStream(out, null);
+			eObjectOutputStream.saveEObjects(values, BinaryResourceImpl.EObjectOutputStream.Check.NOTHING);
+			eObjectOutputStream.flush();
+			return new Binary(BINARY_SUBTYPE, out.toByteArray());
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Could not serialize '" + reference.getName() + "'", e);
+		}
+	}
+
+	/**
+	 * Deserializes a subtree created by encode() and sets it as the value of the reference.
+	 * 
+	 * @param eObject the containing object
+	 * @param reference the containment reference
+	 * @param resource the resource that will contain the object - its resource set is used to
+	 *          locate the packages of the serialized objects
+	 * @param value the serialized subtree
+	 */
+	@SuppressWarnings("unchecked")
+	static void decode(EObject eObject, EReference reference, Resource resource, Binary value)
+	{
+		try
+		{
+			EObjectInputStream eObjectInputStream = new EObjectInputStream(new ByteArrayInputStream(value.getData()), resource);
+
+			if (reference.isMany())
+				eObjectInputStream.loadEObjects((InternalEList<InternalEObject>) eObject.eGet(reference));
+			else
+			{
+				BasicInternalEList<InternalEObject> values = new BasicInternalEList<InternalEObject>(InternalEObject.class);
+				eObjectInputStream.loadEObjects(values);
+				eObject.eSet(reference, values.isEmpty() ? null : values.get(0));
+			}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Could not deserialize '" + reference.getName() + "'", e);
+		}
+	}
+
+	/**
+	 * Resolves the packages of the serialized objects using the resource set of the resource.
+	 */
+	private static class EObjectInputStream extends BinaryResourceImpl.EObjectInputStream
+	{
+		EObjectInputStream(ByteArrayInputStream inputStream, Resource resource) throws IOException
+		{
+			super(inputStream, null);
+
+			if (resource != null)
+				resourceSet = resource.getResourceSet();
+		}
+	}
+
+	private BinaryReferences()
+	{}
+}
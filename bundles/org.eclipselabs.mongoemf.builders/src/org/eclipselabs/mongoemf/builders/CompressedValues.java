@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt & Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt & Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.bson.types.Binary;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.Annotations;
+
+/**
+ * Deflates byte[] and String attribute values annotated with Annotations.ENCODING_COMPRESSED
+ * into BSON binary tagged with a user defined subtype, and inflates them again.
+ * 
+ * @author bhunt
+ * 
+ */
+final class CompressedValues
+{
+	/**
+	 * The BSON binary subtype of compressed values.
+	 */
+	static final byte BINARY_SUBTYPE = (byte) 0x80;
+
+	/**
+	 * @param attribute the attribute to check
+	 * @return true if the attribute is annotated with the compressed encoding; false otherwise
+	 */
+	static boolean isCompressed(EAttribute attribute)
+	{
+		return !attribute.isMany() && Annotations.ENCODING_COMPRESSED.equals(EcoreUtil.getAnnotation(attribute, Annotations.SOURCE, Annotations.ENCODING));
+	}
+
+	/**
+	 * @param value the value read from MongoDB
+	 * @return true if the value is a compressed value; false otherwise
+	 */
+	static boolean isCompressed(Object value)
+	{
+		return value instanceof Binary && ((Binary) value).getType() == BINARY_SUBTYPE;
+	}
+
+	/**
+	 * Deflates a byte[] or String value. The value is returned as is when deflating it does not
+	 * make it smaller.
+	 * 
+	 * @param value the value to compress
+	 * @return the compressed value, or the value if it could not be compressed
+	 */
+	static Object compress(Object value)
+	{
+		byte[] bytes = value instanceof byte[] ? (byte[]) value : toBytes((String) value);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+		try
+		{
+			deflater.setInput(bytes);
+			deflater.finish();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+			byte[] buffer = new byte[8192];
+
+			while (!deflater.finished() && out.size() < bytes.length)
+				out.write(buffer, 0, deflater.deflate(buffer));
+
+			if (!deflater.finished() || out.size() >= bytes.length)
+				return value;
+
+			return new Binary(BINARY_SUBTYPE, out.toByteArray());
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Inflates a value created by compress().
+	 * 
+	 * @param attribute the attribute the value belongs to
+	 * @param value the compressed value
+	 * @return the byte[] value if the attribute is of type byte[]; the String value otherwise
+	 */
+	static Object decompress(EAttribute attribute, Binary value)
+	{
+		Inflater inflater = new Inflater();
+
+		try
+		{
+			byte[] data = value.getData();
+			inflater.setInput(data);
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+			byte[] buffer = new byte[8192];
+
+			while (!inflater.finished())
+			{
+				int count = inflater.inflate(buffer);
+
+				// A value created by compress() never uses a preset dictionary
+
+				if (count == 0 && inflater.needsDictionary())
+					throw new IllegalStateException("The compressed value of '" + attribute.getName() + "' is corrupt");
+
+				if (count == 0 && inflater.needsInput())
+					throw new IllegalStateException("The compressed value of '" + attribute.getName() + "' is truncated");
+
+				out.write(buffer, 0, count);
+			}
+
+			if ("byte[]".equals(attribute.getEAttributeType().getInstanceClassName()))
+				return out.toByteArray();
+
+			return out.toString(UTF_8);
+		}
+		catch (DataFormatException e)
+		{
+			throw new IllegalStateException("The compressed value of '" + attribute.getName() + "' is corrupt", e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
+
+	private static byte[] toBytes(String value)
+	{
+		try
+		{
+			return value.getBytes(UTF_8);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final String UTF_8 = "UTF-8";
+
+	private CompressedValues()
+	{}
+}
@@ -34,6 +34,7 @@ import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.DBObjectBuilder;
 import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
+import org.eclipselabs.mongoemf.util.ExternalValues;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
@@ -48,6 +49,11 @@ import com.mongodb.DBObject;
  */
 public class DBObjectBuilderImpl implements DBObjectBuilder
 {
+	/**
+	 * The default size at which the values of attributes with the compressed encoding are compressed.
+	 */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+
 	/**
 	 * @param converterService the service to use when converting attribute values
 	 * @param uriHandler the handler for creating proxy URIs
@@ -55,10 +61,28 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	 *          false causes default attribute values to be skipped
 	 */
 	public DBObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean serializeDefaultAttributeValues)
+	{
+		this(converterService, uriHandler, serializeDefaultAttributeValues, 0, DEFAULT_COMPRESSION_THRESHOLD);
+	}
+
+	/**
+	 * @param converterService the service to use when converting attribute values
+	 * @param uriHandler the handler for creating proxy URIs
+	 * @param serializeDefaultAttributeValues true causes default attribute values to be written to the DBObject;
+	 *          false causes default attribute values to be skipped
+	 * @param externalStorageThreshold the size at which byte[] and String attribute values are stored
+	 *          outside of the document; 0 stores only the values of annotated attributes externally
+	 * @param compressionThreshold the size at which the values of attributes annotated with the
+	 *          compressed encoding are compressed
+	 */
+	public DBObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean serializeDefaultAttributeValues, int externalStorageThreshold,
+			int compressionThreshold)
 	{
 		this.converterService = converterService;
 		this.uriHandler = uriHandler;
 		this.serializeDefaultAttributeValues = serializeDefaultAttributeValues;
+		this.externalStorageThreshold = externalStorageThreshold;
+		this.compressionThreshold = compressionThreshold;
 	}
 
 	/**
@@ -85,20 +109,30 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 		buildExtrensicID(eObject, dbObject);
 
 		// All attributes are mapped as key / value pairs with the key being the attribute name.
+		// Externally stored values that were never read keep their handle. The persistent
+		// features and their ids come from the cached plan of the EClass.
+
+		FeaturePlan plan = FeaturePlan.get(eClass);
+		InternalEObject internalEObject = (InternalEObject) eObject;
 
-		for (EAttribute attribute : eClass.getEAllAttributes())
+		for (int i = 0; i < plan.attributes.length; i++)
 		{
-			if (!attribute.isTransient() && (eObject.eIsSet(attribute) || (!attribute.isUnsettable() && serializeDefaultAttributeValues)))
+			EAttribute attribute = plan.attributes[i];
+
+			if (internalEObject.eIsSet(plan.attributeIDs[i]))
+				buildAttribute(eObject, dbObject, attribute);
+			else if (plan.externals[i] && ExternalValues.getHandle(eObject, attribute) != null)
+				dbObject.put(attribute.getName(), ExternalValues.getHandle(eObject, attribute));
+			else if (!attribute.isUnsettable() && serializeDefaultAttributeValues)
 				buildAttribute(eObject, dbObject, attribute);
 		}
 
 		// All references are mapped as key / value pairs with the key being the reference name.
 
-		for (EReference reference : eClass.getEAllReferences())
+		for (int i = 0; i < plan.references.length; i++)
 		{
-		  if (!reference.isTransient() && eObject.eIsSet(reference) 
-		          && !(reference.getEOpposite() != null && reference.isContainer()))
-		        buildReference(eObject, dbObject, reference);
+			if (internalEObject.eIsSet(plan.referenceIDs[i]))
+				buildReference(eObject, dbObject, plan.references[i]);
 		}
 
 		return dbObject;
@@ -129,7 +163,9 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 
 	/**
 	 * Serializes an attribute as a java.util.ArrayList. Each value is
-	 * converted using the converter service.
+	 * converted using the converter service. Numeric attributes annotated
+	 * with the packed encoding are serialized as a little-endian byte array
+	 * unless one of the values is null.
 	 * 
 	 * @param dbObject the MongoDB object being built
 	 * @param attribute the attribute to serialize from the EMF object
@@ -139,7 +175,9 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	{
 		EDataType eDataType = attribute.getEAttributeType();
 
-		if (!MongoUtils.isNativeType(eDataType))
+		if (PackedArrays.isPacked(attribute) && !((List<?>) values).contains(null))
+			dbObject.put(attribute.getName(), PackedArrays.pack(eDataType.getInstanceClassName(), (List<?>) values));
+		else if (!MongoUtils.isNativeType(eDataType))
 		{
 			EList<?> eValues = (EList<?>) values;
 			ArrayList<Object> convertedValues = new ArrayList<Object>(eValues.size());
@@ -154,7 +192,9 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	}
 
 	/**
-	 * Converts the attribute value if needed
+	 * Converts the attribute value if needed. Values that must be stored outside of
+	 * the document are wrapped in a marker which the output stream replaces with a handle.
+	 * Values of attributes with the compressed encoding are deflated when that makes them smaller.
 	 * 
 	 * @param dbObject the MongoDB object being built
 	 * @param attribute the attribute to serialize from the EMF object
@@ -163,11 +203,62 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	protected void buildAttributeValue(DBObject dbObject, EAttribute attribute, Object value)
 	{
 		EDataType eDataType = attribute.getEAttributeType();
+		Object dbValue = value;
 
 		if (!MongoUtils.isNativeType(eDataType))
-			dbObject.put(attribute.getName(), convertEMFValueToMongoDBValue(eDataType, value));
-		else
-			dbObject.put(attribute.getName(), value);
+			dbValue = convertEMFValueToMongoDBValue(eDataType, value);
+
+		if (isExternalValue(attribute, dbValue))
+			dbValue = ExternalValues.createMarker(dbValue);
+		else if (isCompressedValue(attribute, dbValue))
+			dbValue = CompressedValues.compress(dbValue);
+
+		dbObject.put(attribute.getName(), dbValue);
+	}
+
+	/**
+	 * Determines whether or not an attribute value is stored outside of the document. Values
+	 * of attributes annotated with Annotations.STORAGE_EXTERNAL are always stored externally,
+	 * and other byte[] and String values when their length reaches the external storage threshold.
+	 * 
+	 * @param attribute the attribute being serialized
+	 * @param dbValue the converted value of the attribute
+	 * @return true if the value must be stored externally; false otherwise
+	 */
+	protected boolean isExternalValue(EAttribute attribute, Object dbValue)
+	{
+		if (!(dbValue instanceof byte[]) && !(dbValue instanceof String))
+			return false;
+
+		if (ExternalValues.isExternal(attribute))
+			return true;
+
+		if (externalStorageThreshold <= 0)
+			return false;
+
+		int length = dbValue instanceof byte[] ? ((byte[]) dbValue).length : ((String) dbValue).length();
+		return length >= externalStorageThreshold;
+	}
+
+	/**
+	 * Determines whether or not an attribute value is compressed. Only byte[] and String values
+	 * of attributes annotated with Annotations.ENCODING_COMPRESSED whose length reaches the
+	 * compression threshold are compressed.
+	 * 
+	 * @param attribute the attribute being serialized
+	 * @param dbValue the converted value of the attribute
+	 * @return true if the value must be compressed; false otherwise
+	 */
+	protected boolean isCompressedValue(EAttribute attribute, Object dbValue)
+	{
+		if (!(dbValue instanceof byte[]) && !(dbValue instanceof String))
+			return false;
+
+		if (!CompressedValues.isCompressed(attribute))
+			return false;
+
+		int length = dbValue instanceof byte[] ? ((byte[]) dbValue).length : ((String) dbValue).length();
+		return length >= compressionThreshold;
 	}
 
 	/**
@@ -234,7 +325,8 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	 * Serializes a reference value from the EMF object. References with cardinality greater
 	 * than one are stored as a java.util.ArrayList. Reference values are mapped in the
 	 * DBObject using the reference name as the key. Building of the referenced object is
-	 * delegated to buildReferencedObject().
+	 * delegated to buildReferencedObject(). Containment references with the binary encoding
+	 * are serialized as a single binary value.
 	 * 
 	 * @param eObject the EMF object to serialize
 	 * @param dbObject the MongoDB object being built
@@ -242,6 +334,12 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	 */
 	protected void buildReference(EObject eObject, DBObject dbObject, EReference reference)
 	{
+		if (BinaryReferences.isBinary(reference))
+		{
+			dbObject.put(reference.getName(), BinaryReferences.encode(eObject, reference));
+			return;
+		}
+
 		Object value = eObject.eGet(reference, false);
 
 		if (reference.isMany())
@@ -319,4 +417,6 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	private ConverterService converterService;
 	private XMLResource.URIHandler uriHandler;
 	private boolean serializeDefaultAttributeValues;
+	private int externalStorageThreshold;
+	private int compressionThreshold;
 }
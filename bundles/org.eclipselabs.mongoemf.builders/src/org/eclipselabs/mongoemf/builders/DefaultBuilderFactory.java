@@ -30,7 +30,7 @@ public class DefaultBuilderFactory implements EObjectBuilderFactory, DBObjectBui
 	@Override
 	public DBObjectBuilder createBuilder(ConverterService converterService, URIHandler uriHandler, boolean serializeDefaultAttributeValues)
 	{
-		return new DBObjectBuilderImpl(converterService, uriHandler, serializeDefaultAttributeValues);
+		return new DBObjectBuilderImpl(converterService, uriHandler, serializeDefaultAttributeValues, externalStorageThreshold, compressionThreshold);
 	}
 
 	@Override
@@ -38,4 +38,20 @@ public class DefaultBuilderFactory implements EObjectBuilderFactory, DBObjectBui
 	{
 		return new EObjectBuilderImpl(converterService, uriHandler, includeAttributesForProxyReferences, eClassCache);
 	}
+
+	void activate(Map<String, Object> properties)
+	{
+		Integer externalStorageThresholdValue = (Integer) properties.get("externalStorageThreshold");
+
+		if (externalStorageThresholdValue != null)
+			externalStorageThreshold = externalStorageThresholdValue;
+
+		Integer compressionThresholdValue = (Integer) properties.get("compressionThreshold");
+
+		if (compressionThresholdValue != null)
+			compressionThreshold = compressionThresholdValue;
+	}
+
+	private int externalStorageThreshold;
+	private int compressionThreshold = DBObjectBuilderImpl.DEFAULT_COMPRESSION_THRESHOLD;
 }
@@ -11,10 +11,12 @@
 
 package org.eclipselabs.mongoemf.builders;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import org.bson.types.Binary;
 import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
@@ -30,11 +32,13 @@ import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.FeatureMap;
 import org.eclipse.emf.ecore.util.FeatureMapUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.EObjectBuilder;
 import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
+import org.eclipselabs.mongoemf.util.ExternalValues;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
@@ -106,11 +110,14 @@ public class EObjectBuilderImpl implements EObjectBuilder
 		buildExtransicID(dbObject, resource, eObject);
 
 		// All attributes are mapped as key / value pairs with the key being the attribute name.
+		// The persistent features come from the cached plan of the EClass.
 
-		for (EAttribute attribute : eClass.getEAllAttributes())
+		FeaturePlan plan = FeaturePlan.get(eClass);
+
+		for (int i = 0; i < plan.attributes.length; i++)
 		{
-			if (!isProxy || !FeatureMapUtil.isFeatureMap(attribute))
-				buildAttribute(collection, dbObject, resource, eObject, attribute);
+			if (!isProxy || !plan.featureMaps[i])
+				buildAttribute(collection, dbObject, resource, eObject, plan.attributes[i]);
 		}
 
 		// isProxy will be set to true when the object is being returned as
@@ -125,7 +132,7 @@ public class EObjectBuilderImpl implements EObjectBuilder
 
 		// All references are mapped as key / value pairs with the key being the reference name.
 
-		for (EReference reference : eClass.getEAllReferences())
+		for (EReference reference : plan.references)
 			buildReference(collection, dbObject, resource, eObject, reference);
 
 		return eObject;
@@ -162,6 +169,8 @@ public class EObjectBuilderImpl implements EObjectBuilder
 
 			if (FeatureMapUtil.isFeatureMap(attribute))
 				buildFeatureMap(collection, resource, eObject, attribute, (List<DBObject>) value);
+			else if (ExternalValues.isHandle(value))
+				buildExternalAttributeValue(collection, eObject, attribute, (DBObject) value);
 			else if (attribute.isMany())
 				buildAttributeArray(eObject, attribute, value);
 			else
@@ -171,7 +180,8 @@ public class EObjectBuilderImpl implements EObjectBuilder
 
 	/**
 	 * Builds a multi-value attribute from a collection of values. Each value is
-	 * converted using the converter service.
+	 * converted using the converter service. Values stored with the packed encoding
+	 * are unpacked and added without the uniqueness check of the attribute list.
 	 * 
 	 * @param eObject the EMF object being built
 	 * @param attribute the attribute to set on the EMF object
@@ -179,7 +189,14 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	 */
 	protected void buildAttributeArray(EObject eObject, EAttribute attribute, Object values)
 	{
-		if (!MongoUtils.isNativeType(attribute.getEAttributeType()))
+		if (values instanceof byte[] && PackedArrays.isPacked(attribute))
+		{
+			@SuppressWarnings("unchecked")
+			InternalEList<Object> eValues = (InternalEList<Object>) eObject.eGet(attribute);
+			eValues.clear();
+			eValues.addAllUnique(PackedArrays.unpack(attribute.getEAttributeType().getInstanceClassName(), (byte[]) values));
+		}
+		else if (!MongoUtils.isNativeType(attribute.getEAttributeType()))
 		{
 			@SuppressWarnings("unchecked")
 			List<Object> eValues = (List<Object>) values;
@@ -195,8 +212,39 @@ public class EObjectBuilderImpl implements EObjectBuilder
 			eObject.eSet(attribute, values);
 	}
 
+	/**
+	 * Builds an attribute value stored outside of the document. The value of an attribute
+	 * annotated with Annotations.STORAGE_EXTERNAL is not read; the handle is attached to the
+	 * EMF object instead. Other values are read and set as usual, and the object is marked so
+	 * that saving it removes the file once the value is replaced.
+	 * 
+	 * @param collection the MongoDB collection containing the DBObject
+	 * @param eObject the EMF object being built
+	 * @param attribute the attribute to set on the EMF object
+	 * @param handle the handle of the external value
+	 */
+	protected void buildExternalAttributeValue(DBCollection collection, EObject eObject, EAttribute attribute, DBObject handle)
+	{
+		if (ExternalValues.isExternal(attribute))
+		{
+			ExternalValues.setHandle(collection, eObject, attribute, handle);
+			return;
+		}
+
+		try
+		{
+			buildAttributeValue(eObject, attribute, ExternalValues.toValue(attribute, ExternalValues.read(collection, handle)));
+			ExternalValues.setStored(collection, eObject);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException("Could not read the external value of '" + attribute.getName() + "'", e);
+		}
+	}
+
 	/**
 	 * Sets the attribute value on the EMF object after converting it using the converter service.
+	 * Compressed values are inflated before they are converted.
 	 * 
 	 * @param eObject the EMF object being built
 	 * @param attribute the attribute to set on the EMF object
@@ -205,6 +253,10 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	protected void buildAttributeValue(EObject eObject, EAttribute attribute, Object value)
 	{
 		EDataType eDataType = attribute.getEAttributeType();
+
+		if (CompressedValues.isCompressed(value))
+			value = CompressedValues.decompress(attribute, (Binary) value);
+
 		eObject.eSet(attribute, convertMongoDBValueToEMFValue(eDataType, value));
 	}
 
@@ -264,7 +316,8 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	 * with cardinality equal to one are expected to be stored as a DBObject.
 	 * Reference values are expected to be mapped in the DBObject using the reference
 	 * name as the key. Building of the referenced object is delegated to
-	 * buildReferencedObject().
+	 * buildReferencedObject(). Containment subtrees stored as binary are deserialized
+	 * directly into the reference.
 	 * 
 	 * @param collection the MongoDB collection containing the DBObject
 	 * @param dbObject the object read from MongoDB
@@ -279,8 +332,11 @@ public class EObjectBuilderImpl implements EObjectBuilder
 		if (!reference.isTransient() && dbObject.containsField(reference.getName()))
 		{
 			boolean isResolveProxies = reference.isResolveProxies();
+			Object value = dbObject.get(reference.getName());
 
-			if (reference.isMany())
+			if (BinaryReferences.isBinary(value))
+				BinaryReferences.decode(eObject, reference, resource, (Binary) value);
+			else if (reference.isMany())
 			{
 				// One to many reference
 
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt & Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt & Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EAnnotation;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.FeatureMapUtil;
+import org.eclipselabs.mongoemf.util.ExternalValues;
+
+/**
+ * The persistent features of an EClass with their feature ids and the annotation
+ * derived properties the builders need for every object. The plan is computed once
+ * per EClass and attached to it as an adapter so the builders do not repeat the
+ * feature filtering and annotation lookups for each object they build.
+ * 
+ * Reading and writing through the feature ids dispatches directly to the switch of
+ * generated classes, and to the dynamic settings of dynamic objects.
+ * 
+ * The plan is discarded when the EClass, one of its super types, one of its features, or an
+ * annotation of one of its attributes is modified. It is attached to each of them as an
+ * adapter to be notified.
+ * 
+ * @author bhunt
+ * 
+ */
+final class FeaturePlan extends AdapterImpl
+{
+	/**
+	 * Returns the plan of the EClass, computing it if necessary.
+	 * 
+	 * @param eClass the EClass
+	 * @return the plan of the EClass
+	 */
+	static FeaturePlan get(EClass eClass)
+	{
+		EList<Adapter> adapters = eClass.eAdapters();
+
+		synchronized (adapters)
+		{
+			// The adapters of a super type also hold the plans of its subtypes
+
+			for (Adapter adapter : adapters)
+			{
+				if (adapter instanceof FeaturePlan && ((FeaturePlan) adapter).eClass == eClass)
+					return (FeaturePlan) adapter;
+			}
+
+			FeaturePlan plan = new FeaturePlan(eClass);
+
+			for (Notifier notifier : plan.notifiers)
+			{
+				EList<Adapter> notifierAdapters = notifier.eAdapters();
+
+				// A plan never locks the adapters of a subtype of its EClass, so taking these locks
+				// while holding the lock of the EClass cannot deadlock
+
+				synchronized (notifierAdapters)
+				{
+					notifierAdapters.add(plan);
+				}
+			}
+
+			return plan;
+		}
+	}
+
+	/**
+	 * The EClass of the plan.
+	 */
+	final EClass eClass;
+
+	/**
+	 * The non-transient attributes.
+	 */
+	final EAttribute[] attributes;
+
+	/**
+	 * The feature ids of the attributes.
+	 */
+	final int[] attributeIDs;
+
+	/**
+	 * True for each attribute that is a feature map.
+	 */
+	final boolean[] featureMaps;
+
+	/**
+	 * True for each attribute that is annotated to be stored externally.
+	 */
+	final boolean[] externals;
+
+	/**
+	 * The non-transient references excluding container references.
+	 */
+	final EReference[] references;
+
+	/**
+	 * The feature ids of the references.
+	 */
+	final int[] referenceIDs;
+
+	@Override
+	public boolean isAdapterForType(Object type)
+	{
+		return type == FeaturePlan.class;
+	}
+
+	@Override
+	public void notifyChanged(Notification notification)
+	{
+		if (notification.isTouch())
+			return;
+
+		for (Notifier notifier : notifiers)
+		{
+			EList<Adapter> adapters = notifier.eAdapters();
+
+			synchronized (adapters)
+			{
+				adapters.remove(this);
+			}
+		}
+	}
+
+	private FeaturePlan(EClass eClass)
+	{
+		this.eClass = eClass;
+
+		notifiers.add(eClass);
+		notifiers.addAll(eClass.getEAllSuperTypes());
+
+		for (EStructuralFeature feature : eClass.getEAllStructuralFeatures())
+		{
+			notifiers.add(feature);
+
+			if (feature instanceof EAttribute)
+			{
+				for (EAnnotation annotation : feature.getEAnnotations())
+				{
+					notifiers.add(annotation);
+
+					// The details are entry objects that notify when their value is set
+
+					for (Map.Entry<String, String> detail : annotation.getDetails())
+						notifiers.add((Notifier) detail);
+				}
+			}
+		}
+
+		ArrayList<EAttribute> persistentAttributes = new ArrayList<EAttribute>();
+
+		for (EAttribute attribute : eClass.getEAllAttributes())
+		{
+			if (!attribute.isTransient())
+				persistentAttributes.add(attribute);
+		}
+
+		attributes = persistentAttributes.toArray(new EAttribute[persistentAttributes.size()]);
+		attributeIDs = new int[attributes.length];
+		featureMaps = new boolean[attributes.length];
+		externals = new boolean[attributes.length];
+
+		for (int i = 0; i < attributes.length; i++)
+		{
+			attributeIDs[i] = eClass.getFeatureID(attributes[i]);
+			featureMaps[i] = FeatureMapUtil.isFeatureMap(attributes[i]);
+			externals[i] = ExternalValues.isExternal(attributes[i]);
+		}
+
+		ArrayList<EReference> persistentReferences = new ArrayList<EReference>();
+
+		for (EReference reference : eClass.getEAllReferences())
+		{
+			if (!reference.isTransient() && !(reference.getEOpposite() != null && reference.isContainer()))
+				persistentReferences.add(reference);
+		}
+
+		references = persistentReferences.toArray(new EReference[persistentReferences.size()]);
+		referenceIDs = new int[references.length];
+
+		for (int i = 0; i < references.length; i++)
+			referenceIDs[i] = eClass.getFeatureID(references[i]);
+	}
+
+	private final ArrayList<Notifier> notifiers = new ArrayList<Notifier>();
+}
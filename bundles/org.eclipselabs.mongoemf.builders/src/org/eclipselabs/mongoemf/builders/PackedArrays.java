@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt & Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt & Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.Annotations;
+
+/**
+ * Encodes the values of many-valued numeric attributes annotated with
+ * Annotations.ENCODING_PACKED as a little-endian byte array, and decodes them again.
+ * 
+ * @author bhunt
+ * 
+ */
+final class PackedArrays
+{
+	/**
+	 * @param attribute the attribute to check
+	 * @return true if the attribute is many-valued, has a numeric type that can be packed,
+	 *         and is annotated with the packed encoding; false otherwise
+	 */
+	static boolean isPacked(EAttribute attribute)
+	{
+		return attribute.isMany() && getElementSize(attribute.getEAttributeType().getInstanceClassName()) > 0
+				&& Annotations.ENCODING_PACKED.equals(EcoreUtil.getAnnotation(attribute, Annotations.SOURCE, Annotations.ENCODING));
+	}
+
+	/**
+	 * Packs the values into a little-endian byte array.
+	 * 
+	 * @param instanceClassName the instance class name of the attribute type
+	 * @param values the attribute values - must not contain null
+	 * @return the packed values
+	 */
+	static byte[] pack(String instanceClassName, List<?> values)
+	{
+		int elementSize = getElementSize(instanceClassName);
+		ByteBuffer buffer = ByteBuffer.allocate(values.size() * elementSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		if (isFloatingPoint(instanceClassName))
+		{
+			if (elementSize == 4)
+			{
+				for (Object value : values)
+					buffer.putFloat((Float) value);
+			}
+			else
+			{
+				for (Object value : values)
+					buffer.putDouble((Double) value);
+			}
+		}
+		else if (elementSize == 2)
+		{
+			for (Object value : values)
+				buffer.putShort((Short) value);
+		}
+		else if (elementSize == 4)
+		{
+			for (Object value : values)
+				buffer.putInt((Integer) value);
+		}
+		else
+		{
+			for (Object value : values)
+				buffer.putLong((Long) value);
+		}
+
+		return buffer.array();
+	}
+
+	/**
+	 * Returns a read-only view of a little-endian byte array created by pack(). The values are
+	 * read from the bytes when they are accessed, so decoding does not copy the values into an
+	 * intermediate array of boxed values. EMF data type lists hold boxed values, so each value is
+	 * still boxed once when the view is added to the attribute list.
+	 * 
+	 * @param instanceClassName the instance class name of the attribute type
+	 * @param bytes the packed values
+	 * @return the values
+	 */
+	static EList<Object> unpack(String instanceClassName, byte[] bytes)
+	{
+		return new PackedEList(getElementSize(instanceClassName), isFloatingPoint(instanceClassName), ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+	}
+
+	private static int getElementSize(String instanceClassName)
+	{
+		// It is valid to use == for string comparison in this case.
+
+		if (instanceClassName == "int" || instanceClassName == "java.lang.Integer" || instanceClassName == "float" || instanceClassName == "java.lang.Float")
+			return 4;
+
+		if (instanceClassName == "long" || instanceClassName == "java.lang.Long" || instanceClassName == "double" || instanceClassName == "java.lang.Double")
+			return 8;
+
+		if (instanceClassName == "short" || instanceClassName == "java.lang.Short")
+			return 2;
+
+		return 0;
+	}
+
+	private static boolean isFloatingPoint(String instanceClassName)
+	{
+		return instanceClassName == "float" || instanceClassName == "java.lang.Float" || instanceClassName == "double" || instanceClassName == "java.lang.Double";
+	}
+
+	private static final class PackedEList extends AbstractList<Object> implements EList<Object>, RandomAccess
+	{
+		PackedEList(int elementSize, boolean floatingPoint, ByteBuffer buffer)
+		{
+			this.elementSize = elementSize;
+			this.floatingPoint = floatingPoint;
+			this.buffer = buffer;
+			this.size = buffer.capacity() / elementSize;
+		}
+
+		@Override
+		public Object get(int index)
+		{
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+
+			int offset = index * elementSize;
+
+			if (floatingPoint)
+				return elementSize == 4 ? (Object) buffer.getFloat(offset) : (Object) buffer.getDouble(offset);
+
+			if (elementSize == 2)
+				return buffer.getShort(offset);
+
+			if (elementSize == 4)
+				return buffer.getInt(offset);
+
+			return buffer.getLong(offset);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		@Override
+		public void move(int newPosition, Object object)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Object move(int newPosition, int oldPosition)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		private final int elementSize;
+		private final boolean floatingPoint;
+		private final ByteBuffer buffer;
+		private final int size;
+	}
+
+	private PackedArrays()
+	{}
+}
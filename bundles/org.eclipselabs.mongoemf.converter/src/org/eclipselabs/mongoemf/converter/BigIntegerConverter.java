@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.converter;
+
+import java.math.BigInteger;
+
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.ValueConverter;
+
+/**
+ * Stores BigInteger values as strings that sort in the order of the values, so that they can
+ * be compared and indexed. The string starts with '<', '=' or '>' for negative values, zero and
+ * positive values. It continues with the number of decimal digits padded to ten digits, followed
+ * by the digits. For negative values, each digit of the count and of the value is replaced by
+ * nine minus the digit, so that values of greater magnitude sort first.
+ * 
+ * Values stored as decimal strings by the default converter, and as longs or byte arrays by
+ * earlier versions, are still accepted when loading.
+ * 
+ * This class is thread safe.
+ * 
+ * @author bhunt
+ * 
+ */
+public class BigIntegerConverter implements ValueConverter
+{
+	@Override
+	public Object convertMongoDBValueToEMFValue(EDataType eDataType, Object databaseValue)
+	{
+		if (databaseValue instanceof Number)
+			return BigInteger.valueOf(((Number) databaseValue).longValue());
+
+		if (databaseValue instanceof byte[])
+			return new BigInteger((byte[]) databaseValue);
+
+		String value = (String) databaseValue;
+
+		if (value.startsWith(ZERO))
+			return BigInteger.ZERO;
+
+		if (value.startsWith(POSITIVE))
+			return new BigInteger(value.substring(1 + COUNT_WIDTH));
+
+		if (value.startsWith(NEGATIVE))
+			return new BigInteger(complement(value.substring(1 + COUNT_WIDTH))).negate();
+
+		return EcoreUtil.createFromString(eDataType, value);
+	}
+
+	@Override
+	public Object convertEMFValueToMongoDBValue(EDataType eDataType, Object emfValue)
+	{
+		if (emfValue == null)
+			return null;
+
+		BigInteger value = (BigInteger) emfValue;
+
+		if (value.signum() == 0)
+			return ZERO;
+
+		String digits = value.abs().toString();
+		StringBuilder count = new StringBuilder(Integer.toString(digits.length()));
+
+		while (count.length() < COUNT_WIDTH)
+			count.insert(0, '0');
+
+		if (value.signum() > 0)
+			return POSITIVE + count + digits;
+
+		return NEGATIVE + complement(count.toString()) + complement(digits);
+	}
+
+	@Override
+	public boolean isConverterForType(EDataType eDataType)
+	{
+		return "java.math.BigInteger".equals(eDataType.getInstanceClassName());
+	}
+
+	private static String complement(String digits)
+	{
+		char[] complement = new char[digits.length()];
+
+		for (int i = 0; i < complement.length; i++)
+			complement[i] = (char) ('9' - digits.charAt(i) + '0');
+
+		return new String(complement);
+	}
+
+	private static final String NEGATIVE = "<";
+	private static final String ZERO = "=";
+	private static final String POSITIVE = ">";
+	private static final int COUNT_WIDTH = 10;
+}
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.converter;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.ValueConverter;
+
+/**
+ * Stores Calendar values as a Date so they can be compared and indexed natively. Only the
+ * instant is stored; the calendar is loaded in the default time zone. Values stored as
+ * strings by earlier versions are still accepted when loading.
+ * 
+ * This class is thread safe.
+ * 
+ * @author bhunt
+ * 
+ */
+public class CalendarConverter implements ValueConverter
+{
+	@Override
+	public Object convertMongoDBValueToEMFValue(EDataType eDataType, Object databaseValue)
+	{
+		if (databaseValue instanceof Date)
+		{
+			GregorianCalendar calendar = new GregorianCalendar();
+			calendar.setTime((Date) databaseValue);
+			return calendar;
+		}
+
+		return EcoreUtil.createFromString(eDataType, (String) databaseValue);
+	}
+
+	@Override
+	public Object convertEMFValueToMongoDBValue(EDataType eDataType, Object emfValue)
+	{
+		if (emfValue == null)
+			return null;
+
+		return ((Calendar) emfValue).getTime();
+	}
+
+	@Override
+	public boolean isConverterForType(EDataType eDataType)
+	{
+		String instanceClassName = eDataType.getInstanceClassName();
+		return "java.util.Calendar".equals(instanceClassName) || "java.util.GregorianCalendar".equals(instanceClassName);
+	}
+}
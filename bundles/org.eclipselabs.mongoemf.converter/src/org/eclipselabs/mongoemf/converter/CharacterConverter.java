@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.converter;
+
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.ValueConverter;
+
+/**
+ * Stores char values as their integer code so they can be compared and indexed natively.
+ * Values stored as strings by earlier versions are still accepted when loading.
+ * 
+ * This class is thread safe.
+ * 
+ * @author bhunt
+ * 
+ */
+public class CharacterConverter implements ValueConverter
+{
+	@Override
+	public Object convertMongoDBValueToEMFValue(EDataType eDataType, Object databaseValue)
+	{
+		if (databaseValue instanceof Number)
+			return (char) ((Number) databaseValue).intValue();
+
+		return EcoreUtil.createFromString(eDataType, (String) databaseValue);
+	}
+
+	@Override
+	public Object convertEMFValueToMongoDBValue(EDataType eDataType, Object emfValue)
+	{
+		if (emfValue == null)
+			return null;
+
+		return (int) ((Character) emfValue).charValue();
+	}
+
+	@Override
+	public boolean isConverterForType(EDataType eDataType)
+	{
+		String instanceClassName = eDataType.getInstanceClassName();
+		return "char".equals(instanceClassName) || "java.lang.Character".equals(instanceClassName);
+	}
+}
@@ -11,13 +11,18 @@
 
 package org.eclipselabs.mongoemf.converter;
 
-import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.emf.ecore.EDataType;
 import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.ValueConverter;
 
 /**
+ * The converter found for each EDataType is cached until a converter is added or removed.
+ * Converters are looked up without locking; adding or removing a converter replaces the
+ * list of converters and the cache.
+ * 
  * This class is thread safe
  * 
  * @author bhunt
@@ -27,7 +32,15 @@ public class DefaultConverterService implements ConverterService
 {
 	public DefaultConverterService()
 	{
-		this.converters = new LinkedList<ValueConverter>();
+		this.converters = new CopyOnWriteArrayList<ValueConverter>();
+
+		// The typed converters must be considered before the default converter which stores every value as a string
+
+		converters.add(new EEnumConverter());
+		converters.add(new BigIntegerConverter());
+		converters.add(new CalendarConverter());
+		converters.add(new XMLGregorianCalendarConverter());
+		converters.add(new CharacterConverter());
 		converters.add(new DefaultConverter());
 	}
 
@@ -36,16 +49,29 @@ public class DefaultConverterService implements ConverterService
 	{
 		// The converter must be added at the beginning of the list so that the default converter is considered last
 
-		converters.addFirst(converter);
+		converters.add(0, converter);
+		cache = new ConcurrentHashMap<EDataType, ValueConverter>();
 	}
 
 	@Override
-	public synchronized ValueConverter getConverter(EDataType eDataType)
+	public ValueConverter getConverter(EDataType eDataType)
 	{
+		// The cache is read before the converters, so a converter selected from converters that
+		// were changed since is put into a cache that has been replaced
+
+		ConcurrentHashMap<EDataType, ValueConverter> currentCache = cache;
+		ValueConverter cachedConverter = currentCache.get(eDataType);
+
+		if (cachedConverter != null)
+			return cachedConverter;
+
 		for (ValueConverter converter : converters)
 		{
 			if (converter.isConverterForType(eDataType))
+			{
+				currentCache.put(eDataType, converter);
 				return converter;
+			}
 		}
 
 		// We should never return null since the list of converters always contains a default converter
@@ -57,7 +83,9 @@ public class DefaultConverterService implements ConverterService
 	public synchronized void removeConverter(ValueConverter converter)
 	{
 		converters.remove(converter);
+		cache = new ConcurrentHashMap<EDataType, ValueConverter>();
 	}
 
-	private LinkedList<ValueConverter> converters;
+	private CopyOnWriteArrayList<ValueConverter> converters;
+	private volatile ConcurrentHashMap<EDataType, ValueConverter> cache = new ConcurrentHashMap<EDataType, ValueConverter>();
 }
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.converter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.common.util.Enumerator;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EEnum;
+import org.eclipse.emf.ecore.EEnumLiteral;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.Annotations;
+import org.eclipselabs.mongoemf.ValueConverter;
+
+/**
+ * Stores EEnum values as their literal string, or as their integer value when the EEnum is
+ * annotated with the ENCODING_ORDINAL encoding. The enumerators are looked up from a cache
+ * instead of being parsed by the EFactory. Both forms are accepted when loading, so the
+ * encoding of an EEnum can be changed without migrating existing documents.
+ * 
+ * This class is thread safe.
+ * 
+ * @author bhunt
+ * 
+ */
+public class EEnumConverter implements ValueConverter
+{
+	@Override
+	public Object convertMongoDBValueToEMFValue(EDataType eDataType, Object databaseValue)
+	{
+		if (databaseValue == null)
+			return null;
+
+		EEnum eEnum = (EEnum) eDataType;
+		Object key = databaseValue instanceof Number ? (Object) ((Number) databaseValue).intValue() : databaseValue;
+		Object enumerator = getEnumerators(eEnum).get(key);
+
+		if (enumerator == null)
+			return EcoreUtil.createFromString(eDataType, databaseValue.toString());
+
+		return enumerator;
+	}
+
+	@Override
+	public Object convertEMFValueToMongoDBValue(EDataType eDataType, Object emfValue)
+	{
+		if (emfValue == null)
+			return null;
+
+		Enumerator enumerator = (Enumerator) emfValue;
+
+		if (Annotations.ENCODING_ORDINAL.equals(EcoreUtil.getAnnotation(eDataType, Annotations.SOURCE, Annotations.ENCODING)))
+			return enumerator.getValue();
+
+		return enumerator.getLiteral();
+	}
+
+	@Override
+	public boolean isConverterForType(EDataType eDataType)
+	{
+		return eDataType instanceof EEnum;
+	}
+
+	/**
+	 * Maps both the literal string and the integer value of each literal of the EEnum to its
+	 * enumerator.
+	 * 
+	 * @param eEnum the enumeration
+	 * @return the enumerators of the EEnum
+	 */
+	private Map<Object, Object> getEnumerators(EEnum eEnum)
+	{
+		Map<Object, Object> enumerators = cache.get(eEnum);
+
+		if (enumerators == null)
+		{
+			enumerators = new ConcurrentHashMap<Object, Object>();
+
+			for (EEnumLiteral literal : eEnum.getELiterals())
+			{
+				Object enumerator = literal.getInstance() != null ? literal.getInstance() : literal;
+				enumerators.put(literal.getLiteral(), enumerator);
+
+				if (!enumerators.containsKey(literal.getValue()))
+					enumerators.put(literal.getValue(), enumerator);
+			}
+
+			cache.put(eEnum, enumerators);
+		}
+
+		return enumerators;
+	}
+
+	private Map<EEnum, Map<Object, Object>> cache = new ConcurrentHashMap<EEnum, Map<Object, Object>>();
+}
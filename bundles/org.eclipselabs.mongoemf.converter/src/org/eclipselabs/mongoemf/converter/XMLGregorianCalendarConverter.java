@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.converter;
+
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.ValueConverter;
+
+/**
+ * Stores XMLGregorianCalendar values of the xsd:dateTime type as a Date so they can be
+ * compared and indexed natively. The time zone is not stored; the value is loaded in UTC.
+ * Partial values such as xsd:date or xsd:gYear cannot be represented by a Date and are
+ * stored as strings as before. Both forms are accepted when loading.
+ * 
+ * This class is thread safe.
+ * 
+ * @author bhunt
+ * 
+ */
+public class XMLGregorianCalendarConverter implements ValueConverter
+{
+	@Override
+	public Object convertMongoDBValueToEMFValue(EDataType eDataType, Object databaseValue)
+	{
+		if (databaseValue instanceof Date)
+		{
+			GregorianCalendar calendar = new GregorianCalendar(UTC);
+			calendar.setTime((Date) databaseValue);
+			return getDatatypeFactory().newXMLGregorianCalendar(calendar);
+		}
+
+		return EcoreUtil.createFromString(eDataType, (String) databaseValue);
+	}
+
+	@Override
+	public Object convertEMFValueToMongoDBValue(EDataType eDataType, Object emfValue)
+	{
+		if (emfValue == null)
+			return null;
+
+		XMLGregorianCalendar calendar = (XMLGregorianCalendar) emfValue;
+
+		if (DatatypeConstants.DATETIME.equals(calendar.getXMLSchemaType()))
+			return calendar.toGregorianCalendar().getTime();
+
+		return EcoreUtil.convertToString(eDataType, emfValue);
+	}
+
+	@Override
+	public boolean isConverterForType(EDataType eDataType)
+	{
+		return "javax.xml.datatype.XMLGregorianCalendar".equals(eDataType.getInstanceClassName());
+	}
+
+	private DatatypeFactory getDatatypeFactory()
+	{
+		// DatatypeFactory is not guaranteed to be thread safe, so each thread gets its own
+
+		DatatypeFactory datatypeFactory = datatypeFactories.get();
+
+		if (datatypeFactory == null)
+		{
+			try
+			{
+				datatypeFactory = DatatypeFactory.newInstance();
+			}
+			catch (DatatypeConfigurationException e)
+			{
+				throw new IllegalStateException(e);
+			}
+
+			datatypeFactories.set(datatypeFactory);
+		}
+
+		return datatypeFactory;
+	}
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private ThreadLocal<DatatypeFactory> datatypeFactories = new ThreadLocal<DatatypeFactory>();
+}
@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt & Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt & Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.handlers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.MongoUtils;
+import org.eclipselabs.mongoemf.model.MongoQuery;
+import org.eclipselabs.mongoemf.util.ExternalValues;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.WriteConcern;
+
+/**
+ * Deletes objects along with the objects they contain in other documents. The tree is walked
+ * one level at a time: the containment reference fields of all objects of a level in the same
+ * collection are read with a single projected query, and the proxies found in them make up the
+ * next level. Embedded objects are searched for proxies as well. The objects are then removed
+ * with one batched remove per collection, the descendants before the roots, without returning
+ * the documents.
+ * 
+ * The objects to delete are selected by a filter along with the sort, skip, limit and hint of
+ * their query, if any. The projection of the query is ignored.
+ * 
+ * The EClasses of the objects are located in the given package registry. Objects of unknown
+ * EClasses are deleted but not searched for contained objects. Contained objects in other
+ * databases are not deleted.
+ * 
+ * @author bhunt
+ * 
+ */
+final class CascadingDelete
+{
+	/**
+	 * The maximum number of ids in a single $in query or remove.
+	 */
+	static final int BATCH_SIZE = 1000;
+
+	/**
+	 * @param collection the collection containing the objects to delete
+	 * @param uri the URI the delete was requested for - of the form mongodb://host/database/collection/{id}
+	 * @param writeConcern the write concern for the removes
+	 * @param packageRegistry the package registry used to locate the EClasses of the objects
+	 */
+	CascadingDelete(DBCollection collection, URI uri, WriteConcern writeConcern, EPackage.Registry packageRegistry)
+	{
+		this.collection = collection;
+		this.databaseURI = uri.trimQuery().trimFragment().trimSegments(2);
+		this.writeConcern = writeConcern;
+		this.packageRegistry = packageRegistry;
+	}
+
+	/**
+	 * Deletes the objects matching the filter without the objects they contain. The ids and
+	 * EClasses of the objects are read first so that they can be reported, and the objects are
+	 * removed by id.
+	 * 
+	 * @param filter the filter selecting the objects to delete
+	 * @param mongoQuery the query the filter was built from - may be null
+	 * @return the ids of the deleted objects
+	 */
+	List<Object> deleteMatching(DBObject filter, MongoQuery mongoQuery)
+	{
+		ArrayList<Object> ids = new ArrayList<Object>();
+		DBCursor cursor = find(filter, mongoQuery);
+
+		try
+		{
+			while (cursor.hasNext())
+			{
+				DBObject dbObject = cursor.next();
+				ids.add(dbObject.get(Keywords.ID_KEY));
+				addDeletedEClass(getEClass((String) dbObject.get(Keywords.ECLASS_KEY)));
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+
+		remove(collection, ids, writeConcern);
+		return ids;
+	}
+
+	/**
+	 * Deletes the objects matching the filter and all of the objects they contain.
+	 * 
+	 * @param filter the filter selecting the objects to delete
+	 * @param mongoQuery the query the filter was built from - may be null
+	 * @return the ids of the deleted objects by collection
+	 * @throws IOException if a contained object has an invalid proxy URI
+	 */
+	Map<DBCollection, List<Object>> delete(DBObject filter, MongoQuery mongoQuery) throws IOException
+	{
+		LinkedHashMap<Object, EClass> roots = new LinkedHashMap<Object, EClass>();
+		DBCursor cursor = find(filter, mongoQuery);
+
+		try
+		{
+			while (cursor.hasNext())
+			{
+				DBObject dbObject = cursor.next();
+				EClass eClass = getEClass((String) dbObject.get(Keywords.ECLASS_KEY));
+				roots.put(dbObject.get(Keywords.ID_KEY), eClass);
+				addDeletedEClass(eClass);
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+
+		LinkedHashMap<DBCollection, LinkedHashMap<Object, EClass>> level = new LinkedHashMap<DBCollection, LinkedHashMap<Object, EClass>>();
+		level.put(collection, roots);
+
+		LinkedHashMap<DBCollection, LinkedHashSet<Object>> descendants = new LinkedHashMap<DBCollection, LinkedHashSet<Object>>();
+		HashSet<String> visited = new HashSet<String>();
+
+		for (Object id : roots.keySet())
+			visited.add(collection.getName() + "/" + id);
+
+		while (!level.isEmpty())
+		{
+			LinkedHashMap<DBCollection, LinkedHashMap<Object, EClass>> nextLevel = new LinkedHashMap<DBCollection, LinkedHashMap<Object, EClass>>();
+
+			for (Map.Entry<DBCollection, LinkedHashMap<Object, EClass>> entry : level.entrySet())
+				findContained(entry.getKey(), entry.getValue(), nextLevel);
+
+			for (Map.Entry<DBCollection, LinkedHashMap<Object, EClass>> entry : nextLevel.entrySet())
+			{
+				DBCollection nextCollection = entry.getKey();
+
+				for (Object id : new ArrayList<Object>(entry.getValue().keySet()))
+				{
+					if (!visited.add(nextCollection.getName() + "/" + id))
+					{
+						entry.getValue().remove(id);
+						continue;
+					}
+
+					LinkedHashSet<Object> ids = descendants.get(nextCollection);
+
+					if (ids == null)
+					{
+						ids = new LinkedHashSet<Object>();
+						descendants.put(nextCollection, ids);
+					}
+
+					ids.add(id);
+					addDeletedEClass(entry.getValue().get(id));
+				}
+			}
+
+			level = nextLevel;
+		}
+
+		LinkedHashMap<DBCollection, List<Object>> deleted = new LinkedHashMap<DBCollection, List<Object>>();
+
+		for (Map.Entry<DBCollection, LinkedHashSet<Object>> entry : descendants.entrySet())
+		{
+			ArrayList<Object> ids = new ArrayList<Object>(entry.getValue());
+			remove(entry.getKey(), ids, writeConcern);
+			deleted.put(entry.getKey(), ids);
+		}
+
+		ArrayList<Object> ids = new ArrayList<Object>(roots.keySet());
+		remove(collection, ids, writeConcern);
+
+		if (deleted.containsKey(collection))
+			deleted.get(collection).addAll(ids);
+		else
+			deleted.put(collection, ids);
+
+		return deleted;
+	}
+
+	/**
+	 * @return true if the EClass of a deleted object has an attribute annotated to be stored
+	 *         externally; false otherwise
+	 */
+	boolean hasExternalAttributes()
+	{
+		return externalAttributes;
+	}
+
+	/**
+	 * Reads the containment reference fields of the objects and adds the objects they contain in
+	 * other documents to the next level.
+	 */
+	private void findContained(DBCollection levelCollection, Map<Object, EClass> objects, Map<DBCollection, LinkedHashMap<Object, EClass>> nextLevel) throws IOException
+	{
+		BasicDBObject projection = new BasicDBObject();
+
+		for (EClass eClass : new HashSet<EClass>(objects.values()))
+		{
+			if (eClass != null)
+			{
+				for (EReference reference : eClass.getEAllContainments())
+				{
+					if (!reference.isTransient())
+						projection.put(reference.getName(), 1);
+				}
+			}
+		}
+
+		if (projection.isEmpty())
+			return;
+
+		ArrayList<Object> ids = new ArrayList<Object>(objects.keySet());
+
+		for (int i = 0; i < ids.size(); i += BATCH_SIZE)
+		{
+			List<Object> batch = ids.subList(i, Math.min(i + BATCH_SIZE, ids.size()));
+			DBCursor cursor = levelCollection.find(new BasicDBObject(Keywords.ID_KEY, new BasicDBObject("$in", batch)), projection);
+
+			try
+			{
+				while (cursor.hasNext())
+				{
+					DBObject dbObject = cursor.next();
+					EClass eClass = objects.get(dbObject.get(Keywords.ID_KEY));
+
+					if (eClass != null)
+					{
+						URI objectURI = databaseURI.appendSegment(levelCollection.getName()).appendSegment(dbObject.get(Keywords.ID_KEY).toString());
+						findContained(dbObject, eClass, objectURI, nextLevel);
+					}
+				}
+			}
+			finally
+			{
+				cursor.close();
+			}
+		}
+	}
+
+	private void findContained(DBObject dbObject, EClass eClass, URI objectURI, Map<DBCollection, LinkedHashMap<Object, EClass>> nextLevel) throws IOException
+	{
+		for (EReference reference : eClass.getEAllContainments())
+		{
+			Object value = dbObject.get(reference.getName());
+
+			if (value instanceof List)
+			{
+				for (Object element : (List<?>) value)
+				{
+					if (element instanceof DBObject)
+						findContainedReference((DBObject) element, objectURI, nextLevel);
+				}
+			}
+			else if (value instanceof DBObject)
+				findContainedReference((DBObject) value, objectURI, nextLevel);
+		}
+	}
+
+	private void findContainedReference(DBObject dbReference, URI objectURI, Map<DBCollection, LinkedHashMap<Object, EClass>> nextLevel) throws IOException
+	{
+		EClass eClass = getEClass((String) dbReference.get(Keywords.ECLASS_KEY));
+		String proxy = (String) dbReference.get(Keywords.PROXY_KEY);
+
+		if (proxy == null)
+		{
+			// An embedded object may itself contain objects in other documents
+
+			if (eClass != null)
+				findContained(dbReference, eClass, objectURI, nextLevel);
+
+			return;
+		}
+
+		URI proxyURI = URI.createURI(proxy).resolve(objectURI).trimFragment().trimQuery();
+
+		if (proxyURI.segmentCount() != 3 || !proxyURI.trimSegments(2).equals(databaseURI))
+			return;
+
+		DBCollection referencedCollection = collection.getDB().getCollection(proxyURI.segment(1));
+		LinkedHashMap<Object, EClass> objects = nextLevel.get(referencedCollection);
+
+		if (objects == null)
+		{
+			objects = new LinkedHashMap<Object, EClass>();
+			nextLevel.put(referencedCollection, objects);
+		}
+
+		objects.put(MongoUtils.getID(proxyURI), eClass);
+	}
+
+	/**
+	 * Reads the ids and EClasses of the objects selected by the filter and the query.
+	 */
+	private DBCursor find(DBObject filter, MongoQuery mongoQuery)
+	{
+		DBCursor cursor = collection.find(filter, new BasicDBObject(Keywords.ECLASS_KEY, 1));
+
+		if (mongoQuery == null)
+			return cursor;
+
+		if (mongoQuery.getSort() != null)
+			cursor.sort(mongoQuery.getSort());
+
+		if (mongoQuery.getSkip() != null)
+			cursor.skip(mongoQuery.getSkip());
+
+		if (mongoQuery.getLimit() != null)
+			cursor.limit(mongoQuery.getLimit());
+
+		if (mongoQuery.getHint() instanceof String)
+			cursor.hint((String) mongoQuery.getHint());
+		else if (mongoQuery.getHint() != null)
+			cursor.hint((DBObject) mongoQuery.getHint());
+
+		if (mongoQuery.getMaxTimeMS() != null)
+			cursor.addSpecial("$maxTimeMS", mongoQuery.getMaxTimeMS());
+
+		if (mongoQuery.getComment() != null)
+			cursor.addSpecial("$comment", mongoQuery.getComment());
+
+		return cursor;
+	}
+
+	private static void remove(DBCollection removeCollection, List<Object> ids, WriteConcern writeConcern)
+	{
+		for (int i = 0; i < ids.size(); i += BATCH_SIZE)
+		{
+			List<Object> batch = ids.subList(i, Math.min(i + BATCH_SIZE, ids.size()));
+			removeCollection.remove(new BasicDBObject(Keywords.ID_KEY, new BasicDBObject("$in", batch)), writeConcern);
+		}
+	}
+
+	private void addDeletedEClass(EClass eClass)
+	{
+		if (eClass != null && !externalAttributes && deletedEClasses.add(eClass))
+			externalAttributes = ExternalValues.hasExternalAttributes(eClass);
+	}
+
+	private EClass getEClass(String eClassURI)
+	{
+		if (eClassURI == null)
+			return null;
+
+		EClass eClass = eClassCache.get(eClassURI);
+
+		if (eClass == null && !eClassCache.containsKey(eClassURI))
+		{
+			URI uri = URI.createURI(eClassURI);
+			EPackage ePackage = packageRegistry.getEPackage(uri.trimFragment().toString());
+
+			if (ePackage != null)
+			{
+				if (ePackage.eResource() != null)
+					eClass = (EClass) ePackage.eResource().getEObject(uri.fragment());
+				else
+				{
+					EClassifier eClassifier = ePackage.getEClassifier(uri.fragment().substring(uri.fragment().lastIndexOf('/') + 1));
+					eClass = eClassifier instanceof EClass ? (EClass) eClassifier : null;
+				}
+			}
+
+			eClassCache.put(eClassURI, eClass);
+		}
+
+		return eClass;
+	}
+
+	private DBCollection collection;
+	private URI databaseURI;
+	private WriteConcern writeConcern;
+	private EPackage.Registry packageRegistry;
+	private HashMap<String, EClass> eClassCache = new HashMap<String, EClass>();
+	private HashSet<EClass> deletedEClasses = new HashSet<EClass>();
+	private boolean externalAttributes;
+}
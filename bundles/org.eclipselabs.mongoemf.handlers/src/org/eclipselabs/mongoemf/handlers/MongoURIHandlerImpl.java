@@ -14,21 +14,38 @@ package org.eclipselabs.mongoemf.handlers;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.ecore.resource.impl.URIHandlerImpl;
 import org.eclipselabs.emongo.MongoDatabaseProvider;
 import org.eclipselabs.mongoemf.InputStreamFactory;
 import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.MetadataProbe;
 import org.eclipselabs.mongoemf.MongoUtils;
 import org.eclipselabs.mongoemf.Options;
 import org.eclipselabs.mongoemf.OutputStreamFactory;
+import org.eclipselabs.mongoemf.QueryEngine;
+import org.eclipselabs.mongoemf.model.MongoQuery;
+import org.eclipselabs.mongoemf.util.DocumentCache;
+import org.eclipselabs.mongoemf.util.ExternalValues;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DB;
 import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
 import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
 
 /**
  * This EMF URI handler interfaces to MongoDB. This URI handler can handle URIs with the "mongodb"
@@ -50,7 +67,7 @@ import com.mongodb.ReadPreference;
  * @author bhunt
  * 
  */
-public class MongoURIHandlerImpl extends URIHandlerImpl
+public class MongoURIHandlerImpl extends URIHandlerImpl implements MetadataProbe
 {
 	/**
 	 * 
@@ -60,10 +77,23 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 	 */
 	public MongoURIHandlerImpl(Map<String, MongoDatabaseProvider> mongoDatabaseProviders, InputStreamFactory inputStreamFactory, OutputStreamFactory outputStreamFactory)
 	{
+		this(mongoDatabaseProviders, inputStreamFactory, outputStreamFactory, null);
+	}
 
+	/**
+	 * 
+	 * @param databaseLocator an instance of the mongo locator service
+	 * @param inputStreamFactory an instance of the input stream factory service
+	 * @param outputStreamFactory an instance of the output stream factory service
+	 * @param queryEngine the query engine used to delete objects by query - may be null
+	 */
+	public MongoURIHandlerImpl(Map<String, MongoDatabaseProvider> mongoDatabaseProviders, InputStreamFactory inputStreamFactory, OutputStreamFactory outputStreamFactory,
+			QueryEngine queryEngine)
+	{
 		this.mongoDatabaseProviders = mongoDatabaseProviders;
 		this.inputStreamFactory = inputStreamFactory;
 		this.outputStreamFactory = outputStreamFactory;
+		this.queryEngine = queryEngine;
 	}
 
 	@Override
@@ -89,13 +119,101 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 		return inputStreamFactory.createInputStream(uri, options, getCollection(uri, options), getResponse(options));
 	}
 
+	/**
+	 * Deletes the object identified by the URI, or the objects selected by the query when the URI
+	 * has a query. The filter, sort, skip, limit and hint of the query are applied; queries that
+	 * count, group, aggregate or continue a page are rejected, and so are queries without a
+	 * filter unless Options.OPTION_DELETE_UNFILTERED is set. The query engine is taken from
+	 * Options.OPTION_QUERY_ENGINE if set. The deleted documents are not returned by MongoDB. When
+	 * Options.OPTION_CASCADE_DELETE is set, the objects contained by the deleted objects in
+	 * other documents are deleted as well. The external values of the deleted objects are
+	 * removed from GridFS when the EClass of a deleted object has an attribute annotated to be
+	 * stored externally, or when Options.OPTION_EXTERNAL_STORAGE is set.
+	 */
 	@Override
 	public void delete(URI uri, Map<?, ?> options) throws IOException
 	{
-		// It is assumed that delete is called with the URI path /database/collection/id
+		// It is assumed that delete is called with the URI path /database/collection/id or
+		// /database/collection/?query
 
 		DBCollection collection = getCollection(uri, options);
-		collection.findAndRemove(new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri)));
+		DBObject filter;
+		MongoQuery mongoQuery = null;
+
+		if (uri.query() != null)
+		{
+			QueryEngine engine = (QueryEngine) options.get(Options.OPTION_QUERY_ENGINE);
+
+			if (engine == null)
+				engine = queryEngine;
+
+			if (engine == null)
+				throw new IOException("The query engine was not found");
+
+			mongoQuery = engine.buildDBObjectQuery(uri);
+
+			if (mongoQuery.isCount() || mongoQuery.getDistinct() != null || mongoQuery.getGroup() != null || !mongoQuery.getPipeline().isEmpty()
+					|| mongoQuery.getAfter() != null)
+				throw new IOException("A delete query must not count, group, aggregate or continue a page: '" + uri.query() + "'");
+
+			filter = mongoQuery.getFilter() != null ? mongoQuery.getFilter() : new BasicDBObject();
+
+			if (filter.keySet().isEmpty() && !Boolean.TRUE.equals(options.get(Options.OPTION_DELETE_UNFILTERED)))
+				throw new IOException("The delete query has no filter and Options.OPTION_DELETE_UNFILTERED is not set: '" + uri.query() + "'");
+		}
+		else
+			filter = new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri));
+
+		WriteConcern writeConcern = (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN);
+
+		if (writeConcern == null)
+			writeConcern = collection.getWriteConcern();
+
+		// The ids of the deleted objects are needed to remove their external values and cached documents
+
+		DocumentCache documentCache = (DocumentCache) options.get(Options.OPTION_DOCUMENT_CACHE);
+		Map<DBCollection, List<Object>> deleted;
+		boolean external = Boolean.TRUE.equals(options.get(Options.OPTION_EXTERNAL_STORAGE));
+
+		if (Boolean.TRUE.equals(options.get(Options.OPTION_CASCADE_DELETE)) || uri.query() != null)
+		{
+			EPackage.Registry packageRegistry = (EPackage.Registry) options.get(Options.OPTION_PACKAGE_REGISTRY);
+			CascadingDelete cascadingDelete = new CascadingDelete(collection, uri, writeConcern, packageRegistry != null ? packageRegistry : EPackage.Registry.INSTANCE);
+
+			if (Boolean.TRUE.equals(options.get(Options.OPTION_CASCADE_DELETE)))
+				deleted = cascadingDelete.delete(filter, mongoQuery);
+			else
+				deleted = Collections.singletonMap(collection, cascadingDelete.deleteMatching(filter, mongoQuery));
+
+			external |= cascadingDelete.hasExternalAttributes();
+		}
+		else
+		{
+			collection.remove(filter, writeConcern);
+			deleted = Collections.singletonMap(collection, Collections.singletonList(filter.get(Keywords.ID_KEY)));
+		}
+
+		// Looking for the external values of the deleted objects costs a query per collection, so it
+		// is skipped unless they may have any
+
+		if (external)
+		{
+			for (Map.Entry<DBCollection, List<Object>> entry : deleted.entrySet())
+				ExternalValues.removeOwned(entry.getKey(), entry.getValue());
+		}
+
+		if (documentCache != null)
+		{
+			URI databaseURI = uri.trimQuery().trimFragment().trimSegments(2);
+
+			for (Map.Entry<DBCollection, List<Object>> entry : deleted.entrySet())
+			{
+				URI collectionURI = databaseURI.appendSegment(entry.getKey().getName());
+
+				for (Object id : entry.getValue())
+					documentCache.remove(collectionURI.appendSegment(id.toString()));
+			}
+		}
 	}
 
 	@Override
@@ -107,7 +225,7 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 		try
 		{
 			DBCollection collection = getCollection(uri, options);
-			return collection.findOne(new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri))) != null;
+			return collection.findOne(new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri)), new BasicDBObject(Keywords.ID_KEY, 1)) != null;
 		}
 		catch (Throwable exception)
 		{
@@ -115,6 +233,100 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 		}
 	}
 
+	/**
+	 * Supports the time stamp attribute of objects, which is read without reading the document.
+	 */
+	@Override
+	public Map<String, ?> getAttributes(URI uri, Map<?, ?> options)
+	{
+		HashMap<String, Object> attributes = new HashMap<String, Object>();
+		Set<String> requestedAttributes = getRequestedAttributes(options);
+
+		if (uri.query() != null || (requestedAttributes != null && !requestedAttributes.contains(URIConverter.ATTRIBUTE_TIME_STAMP)))
+			return attributes;
+
+		try
+		{
+			Map<URI, Long> timeStamps = probe(Collections.singleton(uri), options);
+
+			if (timeStamps.get(uri) != null)
+				attributes.put(URIConverter.ATTRIBUTE_TIME_STAMP, timeStamps.get(uri));
+		}
+		catch (IOException e)
+		{
+			// The attributes of objects that cannot be located are empty
+		}
+
+		return attributes;
+	}
+
+	@Override
+	public Map<URI, Long> probe(Collection<URI> uris, Map<?, ?> options) throws IOException
+	{
+		if (options == null)
+			options = Collections.emptyMap();
+
+		// The URIs are grouped by collection, and the ids of each collection are mapped back to their URIs
+
+		LinkedHashMap<String, Map<Object, List<URI>>> urisByCollection = new LinkedHashMap<String, Map<Object, List<URI>>>();
+		HashMap<String, URI> collectionURIs = new HashMap<String, URI>();
+
+		for (URI uri : uris)
+		{
+			URI objectURI = uri.trimFragment().trimQuery();
+			String collectionKey = objectURI.trimSegments(1).toString();
+			Map<Object, List<URI>> urisById = urisByCollection.get(collectionKey);
+
+			if (urisById == null)
+			{
+				urisById = new HashMap<Object, List<URI>>();
+				urisByCollection.put(collectionKey, urisById);
+				collectionURIs.put(collectionKey, objectURI);
+			}
+
+			Object id = MongoUtils.getID(objectURI);
+			List<URI> idURIs = urisById.get(id);
+
+			if (idURIs == null)
+			{
+				idURIs = new ArrayList<URI>(1);
+				urisById.put(id, idURIs);
+			}
+
+			idURIs.add(uri);
+		}
+
+		LinkedHashMap<URI, Long> timeStamps = new LinkedHashMap<URI, Long>();
+		BasicDBObject projection = new BasicDBObject(Keywords.ID_KEY, 1);
+		projection.put(Keywords.TIME_STAMP_KEY, 1);
+
+		for (Map.Entry<String, Map<Object, List<URI>>> entry : urisByCollection.entrySet())
+		{
+			DBCollection collection = getCollection(collectionURIs.get(entry.getKey()), options);
+			Map<Object, List<URI>> urisById = entry.getValue();
+			DBObject query = new BasicDBObject(Keywords.ID_KEY, new BasicDBObject("$in", new ArrayList<Object>(urisById.keySet())));
+			DBCursor cursor = collection.find(query, projection);
+
+			try
+			{
+				while (cursor.hasNext())
+				{
+					DBObject dbObject = cursor.next();
+					Long timeStamp = (Long) dbObject.get(Keywords.TIME_STAMP_KEY);
+
+					for (URI uri : urisById.get(dbObject.get(Keywords.ID_KEY)))
+						timeStamps.put(uri, timeStamp);
+				}
+			}
+			finally
+			{
+				cursor.close();
+			}
+		}
+
+		return timeStamps;
+	}
+
 	/**
 	 * This function locates the MongoDB collection instance corresponding to the collection
 	 * identifier extracted from the URI. The URI path must have exactly 3 segments and be of the form
@@ -156,4 +368,5 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 	private Map<String, MongoDatabaseProvider> mongoDatabaseProviders;
 	private InputStreamFactory inputStreamFactory;
 	private OutputStreamFactory outputStreamFactory;
+	private QueryEngine queryEngine;
 }
@@ -19,6 +19,7 @@ import org.eclipselabs.emodeling.UriHandlerProvider;
 import org.eclipselabs.emongo.MongoDatabaseProvider;
 import org.eclipselabs.mongoemf.InputStreamFactory;
 import org.eclipselabs.mongoemf.OutputStreamFactory;
+import org.eclipselabs.mongoemf.QueryEngine;
 
 /**
  * @author bhunt
@@ -30,7 +31,7 @@ public class MongoURIHandlerProvider implements UriHandlerProvider
 	public synchronized URIHandler getURIHandler()
 	{
 		if (uriHandler == null)
-			uriHandler = new MongoURIHandlerImpl(mongoDatabaseProviders, inputStreamFactory, outputStreamFactory);
+			uriHandler = new MongoURIHandlerImpl(mongoDatabaseProviders, inputStreamFactory, outputStreamFactory, queryEngine);
 
 		return uriHandler;
 	}
@@ -55,8 +56,14 @@ public class MongoURIHandlerProvider implements UriHandlerProvider
 		this.outputStreamFactory = outputStreamFactory;
 	}
 
+	public void bindQueryEngine(QueryEngine queryEngine)
+	{
+		this.queryEngine = queryEngine;
+	}
+
 	private MongoURIHandlerImpl uriHandler;
 	private Map<String, MongoDatabaseProvider> mongoDatabaseProviders = new ConcurrentHashMap<String, MongoDatabaseProvider>();
 	private InputStreamFactory inputStreamFactory;
 	private OutputStreamFactory outputStreamFactory;
+	private QueryEngine queryEngine;
 }
@@ -14,9 +14,17 @@ package org.eclipselabs.mongoemf.log;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
@@ -25,16 +33,51 @@ import org.eclipselabs.emodeling.ResourceSetFactory;
 import org.eclipselabs.emodeling.log.LogEntry;
 import org.eclipselabs.emodeling.log.LogFactory;
 import org.eclipselabs.emodeling.log.LogLevel;
+import org.eclipselabs.mongoemf.DeferredWriter;
 import org.eclipselabs.mongoemf.Options;
 import org.osgi.service.log.LogListener;
 import org.osgi.service.log.LogReaderService;
 
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
 /**
+ * Stores OSGi log entries in a MongoDB collection. By default each entry is saved
+ * synchronously on the logging thread. When the batchSize property is greater than zero,
+ * entries are placed in a bounded queue and written by a background thread with a single
+ * multi-document insert per batch. A batch is written when it is full or when flushInterval
+ * milliseconds have elapsed since its first entry was queued. When the queue is full, the
+ * overflowPolicy property decides what happens to a new entry:
+ * 
+ * <ul>
+ * <li>drop - the new entry is dropped (default)</li>
+ * <li>block - the logging thread waits for space in the queue</li>
+ * <li>sample - one of every sampleRate new entries replaces the oldest queued entry, the
+ * others are dropped</li>
+ * </ul>
+ * 
+ * When the coalesceWindow property is greater than zero, entries with the same level, message
+ * and exception stack that are logged within coalesceWindow milliseconds of the first are
+ * written as a single document. The document contains the first entry along with the
+ * OCCURRENCES_KEY, FIRST_SEEN_KEY and LAST_SEEN_KEY fields. Coalescing uses the background
+ * writer, so it is enabled with a batchSize of DEFAULT_BATCH_SIZE when batchSize is not set.
+ * 
  * @author bhunt
  * 
  */
 public class MongoDbLogListener implements LogListener
 {
+	public static final String OVERFLOW_POLICY_DROP = "drop";
+	public static final String OVERFLOW_POLICY_BLOCK = "block";
+	public static final String OVERFLOW_POLICY_SAMPLE = "sample";
+
+	public static final String OCCURRENCES_KEY = "_occurrences";
+	public static final String FIRST_SEEN_KEY = "_firstSeen";
+	public static final String LAST_SEEN_KEY = "_lastSeen";
+
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
 	public MongoDbLogListener()
 	{}
 
@@ -50,10 +93,168 @@ public class MongoDbLogListener implements LogListener
 		if (entry.getLevel() > logLevel.getValue())
 			return;
 
+		if (queue == null)
+		{
+			save(createResourceSet(), createLogEntry(entry, new Date()));
+			return;
+		}
+
+		if (queue.offer(entry))
+			return;
+
+		if (OVERFLOW_POLICY_BLOCK.equals(overflowPolicy))
+		{
+			try
+			{
+				queue.put(entry);
+			}
+			catch (InterruptedException e)
+			{
+				droppedEntries.incrementAndGet();
+				Thread.currentThread().interrupt();
+			}
+		}
+		else if (OVERFLOW_POLICY_SAMPLE.equals(overflowPolicy) && overflowedEntries.incrementAndGet() % sampleRate == 0)
+		{
+			if (queue.poll() != null)
+				droppedEntries.incrementAndGet();
+
+			if (!queue.offer(entry))
+				droppedEntries.incrementAndGet();
+		}
+		else
+			droppedEntries.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of log entries that were not stored because the queue was full
+	 *         or the batch containing them could not be saved
+	 */
+	public long getDroppedEntryCount()
+	{
+		return droppedEntries.get();
+	}
+
+	/**
+	 * @return the number of log entries waiting to be written by the background thread
+	 */
+	public int getQueuedEntryCount()
+	{
+		return queue != null ? queue.size() : 0;
+	}
+
+	public void bindLogReaderService(LogReaderService logReaderService)
+	{
+		this.logReaderService = logReaderService;
+	}
+
+	public void bindResourceSetFactory(ResourceSetFactory resourceSetFactory)
+	{
+		this.resourceSetFactory = resourceSetFactory;
+	}
+
+	public void activate(Map<String, Object> properties)
+	{
+		uri = URI.createURI((String) properties.get("uri"));
+
+		if (uri == null)
+			throw new IllegalStateException("uri property was not found");
+
+		Integer logLevelValue = (Integer) properties.get("logLevel");
+
+		if (logLevelValue != null)
+			this.logLevel = LogLevel.get(logLevelValue);
+
+		Integer batchSizeValue = (Integer) properties.get("batchSize");
+		Integer coalesceWindowValue = (Integer) properties.get("coalesceWindow");
+
+		if (coalesceWindowValue != null && coalesceWindowValue > 0)
+		{
+			coalesceWindow = coalesceWindowValue;
+
+			if (batchSizeValue == null || batchSizeValue <= 0)
+				batchSizeValue = DEFAULT_BATCH_SIZE;
+		}
+
+		if (batchSizeValue != null && batchSizeValue > 0)
+		{
+			batchSize = batchSizeValue;
+
+			Integer queueSize = (Integer) properties.get("queueSize");
+			queue = new ArrayBlockingQueue<org.osgi.service.log.LogEntry>(queueSize != null && queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE);
+
+			Integer flushIntervalValue = (Integer) properties.get("flushInterval");
+
+			if (flushIntervalValue != null && flushIntervalValue > 0)
+				flushInterval = flushIntervalValue;
+
+			String overflowPolicyValue = (String) properties.get("overflowPolicy");
+
+			if (overflowPolicyValue != null)
+				overflowPolicy = overflowPolicyValue;
+
+			Integer sampleRateValue = (Integer) properties.get("sampleRate");
+
+			if (sampleRateValue != null && sampleRateValue > 0)
+				sampleRate = sampleRateValue;
+
+			running = true;
+			writer = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					writeBatches();
+				}
+			}, "MongoDB Log Writer");
+
+			writer.setDaemon(true);
+			writer.start();
+		}
+
+		logReaderService.addLogListener(this);
+	}
+
+	/**
+	 * Stops the background writer. The writer is given flushInterval * 2 milliseconds to write
+	 * the queued entries. It is then interrupted, and the entries still queued are counted as
+	 * dropped.
+	 */
+	public void deactivate()
+	{
+		logReaderService.removeLogListener(this);
+
+		if (writer != null)
+		{
+			running = false;
+
+			try
+			{
+				writer.join(flushInterval * 2L);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+			if (writer.isAlive())
+			{
+				writer.interrupt();
+				ArrayList<org.osgi.service.log.LogEntry> abandoned = new ArrayList<org.osgi.service.log.LogEntry>();
+				queue.drainTo(abandoned);
+				droppedEntries.addAndGet(abandoned.size());
+			}
+
+			writer = null;
+		}
+	}
+
+	private LogEntry createLogEntry(org.osgi.service.log.LogEntry entry, Date createdOn)
+	{
 		LogEntry logEntry = LogFactory.eINSTANCE.createLogEntry();
 		logEntry.setLevel(LogLevel.get(entry.getLevel()));
 		logEntry.setMessage(entry.getMessage());
-		logEntry.setCreatedOn(new Date());
+		logEntry.setCreatedOn(createdOn);
 
 		Throwable exception = entry.getException();
 
@@ -67,56 +268,318 @@ public class MongoDbLogListener implements LogListener
 			logEntry.setExceptionStack(stack.toString());
 		}
 
-		ResourceSet resourceSet = resourceSetFactory.createResourceSet();
+		return logEntry;
+	}
+
+	private ResourceSet createResourceSet()
+	{
+		return resourceSetFactory.createResourceSet();
+	}
+
+	private boolean save(ResourceSet resourceSet, List<LogEntry> logEntries)
+	{
+		return save(resourceSet, logEntries, null);
+	}
 
+	/**
+	 * Saves the log entries with one insert. The additional fields, if any, are added to the
+	 * documents of the log entries at the same positions.
+	 */
+	private boolean save(ResourceSet resourceSet, List<LogEntry> logEntries, List<Map<String, Object>> additionalFields)
+	{
 		Resource resource = resourceSet.createResource(uri);
-		resource.getContents().add(logEntry);
+		resource.getContents().addAll(logEntries);
 
-		HashMap<String, Object> options = new HashMap<String, Object>(1);
+		HashMap<String, Object> options = new HashMap<String, Object>(2);
 		options.put(Options.OPTION_SERIALIZE_DEFAULT_ATTRIBUTE_VALUES, Boolean.TRUE);
 
+		AdditionalFieldsWriter writer = null;
+
+		if (additionalFields != null)
+		{
+			writer = new AdditionalFieldsWriter(additionalFields);
+			options.put(Options.OPTION_DEFERRED_WRITER, writer);
+		}
+
 		try
 		{
 			resource.save(options);
+
+			if (writer != null)
+				writer.insert();
+
+			return true;
 		}
 		catch (IOException e)
 		{
 			e.printStackTrace();
+			return false;
+		}
+		catch (MongoException e)
+		{
+			e.printStackTrace();
+			return false;
+		}
+		finally
+		{
+			resourceSet.getResources().remove(resource);
 		}
 	}
 
-	public void bindLogReaderService(LogReaderService logReaderService)
+	private boolean save(ResourceSet resourceSet, LogEntry logEntry)
 	{
-		this.logReaderService = logReaderService;
+		ArrayList<LogEntry> logEntries = new ArrayList<LogEntry>(1);
+		logEntries.add(logEntry);
+		return save(resourceSet, logEntries);
 	}
 
-	public void bindResourceSetFactory(ResourceSetFactory resourceSetFactory)
+	private void writeBatches()
 	{
-		this.resourceSetFactory = resourceSetFactory;
+		ResourceSet resourceSet = createResourceSet();
+		ArrayList<org.osgi.service.log.LogEntry> batch = new ArrayList<org.osgi.service.log.LogEntry>(batchSize);
+		LinkedHashMap<Fingerprint, Occurrence> occurrences = new LinkedHashMap<Fingerprint, Occurrence>();
+
+		while (running || !queue.isEmpty() || !occurrences.isEmpty())
+		{
+			try
+			{
+				org.osgi.service.log.LogEntry first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+
+				if (first != null)
+				{
+					batch.add(first);
+					long deadline = System.currentTimeMillis() + flushInterval;
+
+					while (running && batch.size() < batchSize)
+					{
+						queue.drainTo(batch, batchSize - batch.size());
+						long remaining = deadline - System.currentTimeMillis();
+
+						if (batch.size() >= batchSize || remaining <= 0)
+							break;
+
+						org.osgi.service.log.LogEntry next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+
+						if (next == null)
+							break;
+
+						batch.add(next);
+					}
+
+					queue.drainTo(batch, batchSize - batch.size());
+				}
+			}
+			catch (InterruptedException e)
+			{
+				running = false;
+			}
+
+			if (coalesceWindow > 0)
+			{
+				for (org.osgi.service.log.LogEntry entry : batch)
+				{
+					Fingerprint fingerprint = new Fingerprint(entry);
+					Occurrence occurrence = occurrences.get(fingerprint);
+
+					if (occurrence == null)
+						occurrences.put(fingerprint, new Occurrence(entry));
+					else
+						occurrence.add(entry);
+				}
+
+				batch.clear();
+				writeOccurrences(resourceSet, occurrences, running ? System.currentTimeMillis() - coalesceWindow : Long.MAX_VALUE);
+			}
+			else if (!batch.isEmpty())
+			{
+				ArrayList<LogEntry> logEntries = new ArrayList<LogEntry>(batch.size());
+
+				for (org.osgi.service.log.LogEntry entry : batch)
+					logEntries.add(createLogEntry(entry, new Date(entry.getTime())));
+
+				if (!save(resourceSet, logEntries))
+					droppedEntries.addAndGet(logEntries.size());
+
+				batch.clear();
+			}
+		}
 	}
 
-	void activate(Map<String, Object> properties)
+	/**
+	 * Writes the occurrences first seen at or before the cutoff time in batches of batchSize.
+	 * The occurrences are kept in the order they were first seen.
+	 */
+	private void writeOccurrences(ResourceSet resourceSet, LinkedHashMap<Fingerprint, Occurrence> occurrences, long cutoff)
 	{
-		uri = URI.createURI((String) properties.get("uri"));
+		Iterator<Occurrence> iterator = occurrences.values().iterator();
+		ArrayList<LogEntry> logEntries = new ArrayList<LogEntry>();
+		ArrayList<Map<String, Object>> additionalFields = new ArrayList<Map<String, Object>>();
+		int count = 0;
 
-		if (uri == null)
-			throw new IllegalStateException("uri property was not found");
+		while (iterator.hasNext())
+		{
+			Occurrence occurrence = iterator.next();
 
-		Integer logLevelValue = (Integer) properties.get("logLevel");
+			if (occurrence.firstSeen > cutoff)
+				break;
 
-		if (logLevelValue != null)
-			this.logLevel = LogLevel.get(logLevelValue);
+			iterator.remove();
 
-		logReaderService.addLogListener(this);
+			LogEntry logEntry = createLogEntry(occurrence.entry, new Date(occurrence.firstSeen));
+			HashMap<String, Object> fields = new HashMap<String, Object>(3);
+			fields.put(OCCURRENCES_KEY, occurrence.count);
+			fields.put(FIRST_SEEN_KEY, new Date(occurrence.firstSeen));
+			fields.put(LAST_SEEN_KEY, new Date(occurrence.lastSeen));
+
+			logEntries.add(logEntry);
+			additionalFields.add(fields);
+			count += occurrence.count;
+
+			if (logEntries.size() >= batchSize)
+			{
+				if (!save(resourceSet, logEntries, additionalFields))
+					droppedEntries.addAndGet(count);
+
+				logEntries.clear();
+				additionalFields.clear();
+				count = 0;
+			}
+		}
+
+		if (!logEntries.isEmpty() && !save(resourceSet, logEntries, additionalFields))
+			droppedEntries.addAndGet(count);
 	}
 
-	void deactivate()
+	/**
+	 * Adds fields that are not part of the log entry model to the documents built by a save, and
+	 * inserts the documents once the save has built all of them. The documents are passed in the
+	 * order of the log entries, so the fields are taken in the same order.
+	 */
+	private static class AdditionalFieldsWriter implements DeferredWriter
 	{
-		logReaderService.removeLogListener(this);
+		AdditionalFieldsWriter(List<Map<String, Object>> additionalFields)
+		{
+			this.additionalFields = additionalFields;
+		}
+
+		@Override
+		public void write(DBCollection collection, DBObject dbObject, boolean insert, Runnable written)
+		{
+			dbObject.putAll(additionalFields.get(dbObjects.size()));
+			this.collection = collection;
+			dbObjects.add(dbObject);
+
+			if (written != null)
+				callbacks.add(written);
+		}
+
+		void insert()
+		{
+			if (dbObjects.isEmpty())
+				return;
+
+			collection.insert(dbObjects);
+
+			for (Runnable written : callbacks)
+				written.run();
+		}
+
+		private final List<Map<String, Object>> additionalFields;
+		private final ArrayList<DBObject> dbObjects = new ArrayList<DBObject>();
+		private final ArrayList<Runnable> callbacks = new ArrayList<Runnable>();
+		private DBCollection collection;
 	}
 
+	/**
+	 * Identifies log entries with the same level, message and exception stack.
+	 */
+	private static class Fingerprint
+	{
+		Fingerprint(org.osgi.service.log.LogEntry entry)
+		{
+			level = entry.getLevel();
+			message = entry.getMessage();
+			ArrayList<Object> causes = new ArrayList<Object>();
+
+			for (Throwable exception = entry.getException(); exception != null && causes.size() < MAX_CAUSES; exception = exception.getCause())
+			{
+				causes.add(exception.getClass().getName());
+				causes.add(exception.getMessage());
+				causes.add(Arrays.asList(exception.getStackTrace()));
+			}
+
+			exceptions = causes;
+			hashCode = Arrays.hashCode(new Object[] { level, message, exceptions });
+		}
+
+		@Override
+		public boolean equals(Object object)
+		{
+			if (!(object instanceof Fingerprint))
+				return false;
+
+			Fingerprint other = (Fingerprint) object;
+			return hashCode == other.hashCode && level == other.level && equal(message, other.message) && exceptions.equals(other.exceptions);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		private static boolean equal(Object a, Object b)
+		{
+			return a == null ? b == null : a.equals(b);
+		}
+
+		private static final int MAX_CAUSES = 8;
+
+		private final int level;
+		private final String message;
+		private final List<Object> exceptions;
+		private final int hashCode;
+	}
+
+	/**
+	 * Counts the log entries with the same fingerprint.
+	 */
+	private static class Occurrence
+	{
+		Occurrence(org.osgi.service.log.LogEntry entry)
+		{
+			this.entry = entry;
+			this.count = 1;
+			this.firstSeen = entry.getTime();
+			this.lastSeen = entry.getTime();
+		}
+
+		void add(org.osgi.service.log.LogEntry entry)
+		{
+			count++;
+			lastSeen = Math.max(lastSeen, entry.getTime());
+		}
+
+		org.osgi.service.log.LogEntry entry;
+		int count;
+		long firstSeen;
+		long lastSeen;
+	}
+
+	private static final int DEFAULT_QUEUE_SIZE = 10000;
+
 	private URI uri;
 	private LogLevel logLevel = LogLevel.ERROR;
 	private LogReaderService logReaderService;
 	private ResourceSetFactory resourceSetFactory;
+	private ArrayBlockingQueue<org.osgi.service.log.LogEntry> queue;
+	private int batchSize;
+	private int flushInterval = 1000;
+	private String overflowPolicy = OVERFLOW_POLICY_DROP;
+	private int sampleRate = 10;
+	private int coalesceWindow;
+	private volatile boolean running;
+	private Thread writer;
+	private final AtomicLong droppedEntries = new AtomicLong();
+	private final AtomicLong overflowedEntries = new AtomicLong();
 }
@@ -11,6 +11,8 @@
 
 package org.eclipselabs.mongoemf.query.mongodb;
 
+import java.util.List;
+
 import org.eclipse.emf.common.util.URI;
 import org.eclipselabs.mongoemf.QueryEngine;
 import org.eclipselabs.mongoemf.model.ModelFactory;
@@ -20,6 +22,27 @@ import com.mongodb.DBObject;
 import com.mongodb.util.JSON;
 
 /**
+ * Builds a query from a URI whose query is a JSON document such as:
+ *
+ * <pre>
+ * {"filter" : {"name" : "Ed"}, "projection" : {"name" : 1}, "sort" : {"name" : 1}, "limit" : 10}
+ * </pre>
+ *
+ * The document may also contain "count" : true to count the matching documents, "distinct"
+ * with the key of the values to find, or "group" with the $group stage of an aggregate.
+ *
+ * A "pipeline" array of aggregation stages is run after a $match of the filter. The sort, skip
+ * and limit are then appended as stages. When every document it outputs has an _eClass field,
+ * the documents are built into detached objects holding the output, including computed and
+ * looked up fields of their features, rather than proxies of the stored objects. Otherwise, as
+ * after a $group stage, the documents are returned in the groups of a MongoQueryResult.
+ *
+ * The "hint" index name or key pattern, "maxTimeMS", "batchSize" and "comment" are passed to the server with the
+ * query; only "maxTimeMS" applies to aggregates.
+ *
+ * The "after" continuation token of the previous page of a sorted query is described by
+ * Options.RESPONSE_CONTINUATION_TOKEN.
+ *
  * @author bhunt
  * 
  */
@@ -34,8 +57,46 @@ public class NativeQueryEngine implements QueryEngine
 		mongoQuery.setFilter((DBObject) query.get("filter"));
 		mongoQuery.setProjection((DBObject) query.get("projection"));
 		mongoQuery.setSort((DBObject) query.get("sort"));
-		mongoQuery.setLimit((Integer) query.get("limit"));
+		mongoQuery.setSkip(getInteger(query, "skip"));
+		mongoQuery.setLimit(getInteger(query, "limit"));
+		mongoQuery.setCount(Boolean.TRUE.equals(query.get("count")));
+		mongoQuery.setDistinct((String) query.get("distinct"));
+		mongoQuery.setGroup((DBObject) query.get("group"));
+
+		List<?> pipeline = (List<?>) query.get("pipeline");
+
+		if (pipeline != null)
+		{
+			for (Object stage : pipeline)
+				mongoQuery.getPipeline().add((DBObject) stage);
+		}
+
+		Object hint = query.get("hint");
+
+		if (hint != null && !(hint instanceof DBObject) && !(hint instanceof String))
+			throw new IllegalArgumentException("The hint '" + hint + "' is neither an index name nor an index key pattern");
+
+		mongoQuery.setHint(hint);
+		mongoQuery.setMaxTimeMS(getInteger(query, "maxTimeMS"));
+		mongoQuery.setBatchSize(getInteger(query, "batchSize"));
+		mongoQuery.setComment((String) query.get("comment"));
+		mongoQuery.setAfter((String) query.get("after"));
 
 		return mongoQuery;
 	}
+
+	private static Integer getInteger(DBObject query, String key)
+	{
+		// The JSON parser returns a Long or a Double for numbers that are large or have a fraction
+
+		Object value = query.get(key);
+
+		if (value == null)
+			return null;
+
+		if (!(value instanceof Number))
+			throw new IllegalArgumentException("The value '" + value + "' of '" + key + "' is not a number");
+
+		return ((Number) value).intValue();
+	}
 }
@@ -0,0 +1,738 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt and Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt and Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.query.simple;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.emodeling.query.BinaryOperation;
+import org.eclipselabs.emodeling.query.Expression;
+import org.eclipselabs.emodeling.query.Literal;
+import org.eclipselabs.emodeling.query.util.ExpressionBuilder;
+import org.eclipselabs.mongoemf.ConverterService;
+import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.MongoUtils;
+
+/**
+ * Evaluates queries in the syntax of the SimpleQueryEngine against objects held in memory, such
+ * as the contents of a resource set or the values of a query result, without contacting MongoDB.
+ * An object matches a query when its document would match the filter built by SimpleQueryEngine:
+ *
+ * <ul>
+ * <li>Attributes are compared using the values they are stored as, so the values of non native
+ * types are converted with the converter service, or to strings if there is none.</li>
+ * <li>Literals are converted to the types of the attributes they are compared with, for the
+ * class of each object, as SimpleQueryEngine does when it is given the class, so count == '5'
+ * matches an int attribute.</li>
+ * <li>Unset features are not stored, so they match == null and != but not ==.</li>
+ * <li>A predicate on a many valued feature, or on a path through a many valued containment
+ * reference, matches when any of the values matches.</li>
+ * <li>Numbers are compared by value regardless of their type, and values of different types are
+ * never less or greater than each other.</li>
+ * </ul>
+ *
+ * Paths only navigate containment references, since other references are stored as proxies.
+ *
+ * Hash or sorted indexes can be created on attributes of the objects. An index is kept up to date
+ * as the objects change and is used to find the candidates of ==, and with a sorted index also
+ * <, <=, > and >= predicates, instead of testing every object.
+ *
+ * Queries can be evaluated concurrently as long as the objects, their values and the indexes are
+ * not changed at the same time. Adding, removing or changing objects, and creating indexes, must
+ * not run concurrently with any other function.
+ *
+ * @author bhunt
+ *
+ */
+public class InMemoryQueryEngine
+{
+	public InMemoryQueryEngine()
+	{
+		this(null);
+	}
+
+	/**
+	 * @param converterService the converter service used to store the objects, or null if the
+	 *          values of non native types are stored as strings
+	 */
+	public InMemoryQueryEngine(ConverterService converterService)
+	{
+		this.converterService = converterService;
+	}
+
+	/**
+	 * Adds an object to be queried. The object is matched as the root of its document.
+	 *
+	 * @param eObject the object
+	 */
+	public void add(EObject eObject)
+	{
+		if (objects.containsKey(eObject))
+			return;
+
+		objects.put(eObject, sequence++);
+		eObject.eAdapters().add(indexAdapter);
+		Integer count = eClasses.get(eObject.eClass());
+		eClasses.put(eObject.eClass(), count == null ? 1 : count + 1);
+
+		for (Index index : indexes.values())
+			index.add(eObject);
+	}
+
+	/**
+	 * Adds objects to be queried.
+	 *
+	 * @param eObjects the objects, for example the values of an ECollection or the contents of a
+	 *          resource
+	 */
+	public void addAll(Collection<? extends EObject> eObjects)
+	{
+		for (EObject eObject : eObjects)
+			add(eObject);
+	}
+
+	/**
+	 * @param eObject the object to no longer query
+	 */
+	public void remove(EObject eObject)
+	{
+		if (objects.remove(eObject) == null)
+			return;
+
+		eObject.eAdapters().remove(indexAdapter);
+		int count = eClasses.get(eObject.eClass());
+
+		if (count == 1)
+			eClasses.remove(eObject.eClass());
+		else
+			eClasses.put(eObject.eClass(), count - 1);
+
+		for (Index index : indexes.values())
+			index.remove(eObject);
+	}
+
+	/**
+	 * @return the number of objects queried
+	 */
+	public int getSize()
+	{
+		return objects.size();
+	}
+
+	/**
+	 * Indexes the values of an attribute of the objects. The index covers the attribute with the
+	 * same name in every class.
+	 *
+	 * @param attribute the attribute to index
+	 * @param sorted true to create an index that can be used for <, <=, > and >=; false to create
+	 *          a hash index that is only used for ==
+	 */
+	public void createIndex(EAttribute attribute, boolean sorted)
+	{
+		Index index = new Index(attribute.getName(), sorted);
+
+		for (EObject eObject : objects.keySet())
+			index.add(eObject);
+
+		indexes.put(attribute.getName(), index);
+	}
+
+	/**
+	 * @param uri a query URI in the syntax of the SimpleQueryEngine
+	 * @return the objects matching the query of the URI
+	 */
+	public List<EObject> evaluate(URI uri)
+	{
+		return evaluate(URI.decode(uri.query()));
+	}
+
+	/**
+	 * Evaluates the filter of the query, then sorts the matching objects by the order by clause
+	 * and applies the skip and limit clauses. The select clause is ignored since the objects are
+	 * already loaded.
+	 *
+	 * @param query a query in the syntax of the SimpleQueryEngine
+	 * @return the objects matching the query, in the order they were added if the query is not
+	 *         sorted
+	 * @throws IllegalArgumentException if the query contains an expression that is not supported,
+	 *           is a count, distinct or group by query, or has an after clause
+	 */
+	public List<EObject> evaluate(String query)
+	{
+		QueryClauses clauses = QueryClauses.parse(query);
+
+		if (clauses.isCount() || clauses.getDistinct() != null || clauses.getGroupBy() != null)
+			throw new IllegalArgumentException("The query '" + query + "' does not select objects");
+
+		if (clauses.getAfter() != null)
+			throw new IllegalArgumentException("The query '" + query + "' pages with a continuation token; use skip instead");
+
+		Expression expression = new ExpressionBuilder(clauses.getFilter()).parseExpression();
+		Map<EClass, Map<Literal, Object>> literalValues = new HashMap<EClass, Map<Literal, Object>>();
+		Collection<EObject> candidates = expression != null ? findCandidates(expression, literalValues) : null;
+		List<EObject> results = new ArrayList<EObject>();
+
+		for (EObject eObject : candidates != null ? candidates : objects.keySet())
+		{
+			if (expression == null || matches(eObject, expression, literalValues))
+				results.add(eObject);
+		}
+
+		if (candidates != null)
+		{
+			Collections.sort(results, new Comparator<EObject>()
+			{
+				@Override
+				public int compare(EObject o1, EObject o2)
+				{
+					return objects.get(o1).compareTo(objects.get(o2));
+				}
+			});
+		}
+
+		if (clauses.getOrderBy() != null)
+			Collections.sort(results, new SortComparator(clauses.getOrderBy()));
+
+		int fromIndex = clauses.getSkip() != null ? Math.min(clauses.getSkip(), results.size()) : 0;
+		int toIndex = clauses.getLimit() != null && clauses.getLimit() > 0 ? Math.min(fromIndex + clauses.getLimit(), results.size()) : results.size();
+		return fromIndex == 0 && toIndex == results.size() ? results : new ArrayList<EObject>(results.subList(fromIndex, toIndex));
+	}
+
+	/**
+	 * Uses the indexes to find the objects that can match the expression.
+	 *
+	 * @return a superset of the matching objects, or null if every object must be tested
+	 */
+	private Set<EObject> findCandidates(Expression expression, Map<EClass, Map<Literal, Object>> literalValues)
+	{
+		if (!(expression instanceof BinaryOperation))
+			return null;
+
+		BinaryOperation binaryOperation = (BinaryOperation) expression;
+		String operator = binaryOperation.getOperator();
+
+		if ("&&".equals(operator))
+		{
+			Set<EObject> left = findCandidates(binaryOperation.getLeftOperand(), literalValues);
+			Set<EObject> right = findCandidates(binaryOperation.getRightOperand(), literalValues);
+
+			if (left == null || right == null)
+				return left == null ? right : left;
+
+			return left.size() <= right.size() ? left : right;
+		}
+
+		if ("||".equals(operator))
+		{
+			Set<EObject> left = findCandidates(binaryOperation.getLeftOperand(), literalValues);
+			Set<EObject> right = findCandidates(binaryOperation.getRightOperand(), literalValues);
+
+			if (left == null || right == null)
+				return null;
+
+			Set<EObject> union = new HashSet<EObject>(left);
+			union.addAll(right);
+			return union;
+		}
+
+		String property = ExpressionBuilder.toString(binaryOperation.getLeftOperand());
+		Index index = indexes.get(property);
+
+		if (index == null || !(binaryOperation.getRightOperand() instanceof Literal))
+			return null;
+
+		// The literal may be converted differently for each class, so the objects of every value are found
+
+		Set<EObject> candidates = new HashSet<EObject>();
+
+		for (EClass eClass : eClasses.keySet())
+		{
+			Set<EObject> found = index.find(operator, getValue(eClass, property, (Literal) binaryOperation.getRightOperand(), literalValues));
+
+			if (found == null)
+				return null;
+
+			candidates.addAll(found);
+		}
+
+		return candidates;
+	}
+
+	private boolean matches(EObject eObject, Expression expression, Map<EClass, Map<Literal, Object>> literalValues)
+	{
+		if (!(expression instanceof BinaryOperation))
+			throw new IllegalArgumentException("The expression '" + ExpressionBuilder.toString(expression) + "' is not supported");
+
+		BinaryOperation binaryOperation = (BinaryOperation) expression;
+		String operator = binaryOperation.getOperator();
+
+		if ("&&".equals(operator))
+			return matches(eObject, binaryOperation.getLeftOperand(), literalValues) && matches(eObject, binaryOperation.getRightOperand(), literalValues);
+
+		if ("||".equals(operator))
+			return matches(eObject, binaryOperation.getLeftOperand(), literalValues) || matches(eObject, binaryOperation.getRightOperand(), literalValues);
+
+		String property = ExpressionBuilder.toString(binaryOperation.getLeftOperand());
+		Expression rightOperand = binaryOperation.getRightOperand();
+		List<Object> values = new ArrayList<Object>();
+		collectValues(eObject, property.split("\\."), 0, values);
+
+		if (!(rightOperand instanceof Literal))
+		{
+			if ("null".equals(ExpressionBuilder.toString(rightOperand)))
+			{
+				if ("==".equals(operator))
+					return values.isEmpty();
+
+				if ("!=".equals(operator))
+					return !values.isEmpty();
+			}
+
+			throw new IllegalArgumentException("The expression '" + ExpressionBuilder.toString(expression) + "' is not supported");
+		}
+
+		Object literal = Keywords.ID_KEY.equals(property) ? ((Literal) rightOperand).getLiteralValue() : getValue(eObject.eClass(), property, (Literal) rightOperand, literalValues);
+
+		if ("==".equals(operator))
+			return contains(values, literal);
+
+		if ("!=".equals(operator))
+			return !contains(values, literal);
+
+		if ("<".equals(operator) || "<=".equals(operator) || ">".equals(operator) || ">=".equals(operator))
+		{
+			for (Object value : values)
+			{
+				if (getOrder(value) == UNORDERED || getOrder(value) != getOrder(literal))
+					continue;
+
+				int result = compare(value, literal);
+
+				if ("<".equals(operator) ? result < 0 : "<=".equals(operator) ? result <= 0 : ">".equals(operator) ? result > 0 : result >= 0)
+					return true;
+			}
+
+			return false;
+		}
+
+		throw new IllegalArgumentException("The operator '" + operator + "' is not supported");
+	}
+
+	/**
+	 * Collects the stored values at the end of the path. References at the end of the path
+	 * contribute the referenced objects so that they can be tested for null.
+	 */
+	private void collectValues(EObject eObject, String[] path, int index, List<Object> values)
+	{
+		String name = path[index];
+
+		if (index == 0 && path.length == 1 && Keywords.ID_KEY.equals(name))
+		{
+			Object id = getID(eObject);
+
+			if (id != null)
+				values.add(id.toString());
+
+			return;
+		}
+
+		EStructuralFeature feature = eObject.eClass().getEStructuralFeature(name);
+
+		if (feature == null || !eObject.eIsSet(feature))
+			return;
+
+		Object value = eObject.eGet(feature);
+		boolean last = index == path.length - 1;
+
+		if (feature instanceof EAttribute)
+		{
+			if (!last)
+				return;
+
+			EDataType eDataType = ((EAttribute) feature).getEAttributeType();
+
+			if (feature.isMany())
+			{
+				for (Object element : (List<?>) value)
+					values.add(toStoredValue(eDataType, element));
+			}
+			else
+				values.add(toStoredValue(eDataType, value));
+		}
+		else if (last)
+		{
+			if (feature.isMany())
+				values.addAll((List<?>) value);
+			else
+				values.add(value);
+		}
+		else if (((EReference) feature).isContainment())
+		{
+			if (feature.isMany())
+			{
+				for (Object element : (List<?>) value)
+					collectValues((EObject) element, path, index + 1, values);
+			}
+			else
+				collectValues((EObject) value, path, index + 1, values);
+		}
+	}
+
+	private Object toStoredValue(EDataType eDataType, Object value)
+	{
+		if (value == null || MongoUtils.isNativeType(eDataType))
+			return value;
+
+		if (converterService != null)
+			return converterService.getConverter(eDataType).convertEMFValueToMongoDBValue(eDataType, value);
+
+		return EcoreUtil.convertToString(eDataType, value);
+	}
+
+	private static Object getID(EObject eObject)
+	{
+		if (eObject.eContainer() != null || eObject.eResource() == null)
+			return null;
+
+		try
+		{
+			return MongoUtils.getID(eObject.eResource().getURI());
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * @return the value of the literal as it is stored for the feature of the class, converted
+	 *         once per class in the literal values of the evaluation
+	 */
+	private Object getValue(EClass eClass, String property, Literal literal, Map<EClass, Map<Literal, Object>> literalValues)
+	{
+		Map<Literal, Object> values = literalValues.get(eClass);
+
+		if (values == null)
+		{
+			values = new HashMap<Literal, Object>();
+			literalValues.put(eClass, values);
+		}
+
+		if (!values.containsKey(literal))
+			values.put(literal, new QueryNormalizer(eClass, converterService).getValue(property, literal));
+
+		return values.get(literal);
+	}
+
+	private static boolean contains(List<Object> values, Object literal)
+	{
+		for (Object value : values)
+		{
+			if (isEqual(value, literal))
+				return true;
+		}
+
+		return false;
+	}
+
+	private static boolean isEqual(Object value, Object literal)
+	{
+		if (value instanceof byte[] && literal instanceof byte[])
+			return Arrays.equals((byte[]) value, (byte[]) literal);
+
+		int order = getOrder(value);
+
+		if (order == UNORDERED)
+			return value.equals(literal);
+
+		return order == getOrder(literal) && compare(value, literal) == 0;
+	}
+
+	/**
+	 * Groups values the way MongoDB does when comparing them. Values of different groups are
+	 * never equal, less or greater than each other.
+	 */
+	private static int getOrder(Object value)
+	{
+		if (value instanceof Number)
+			return 0;
+
+		if (value instanceof String)
+			return 1;
+
+		if (value instanceof Boolean)
+			return 2;
+
+		if (value instanceof Date)
+			return 3;
+
+		return UNORDERED;
+	}
+
+	/**
+	 * Compares two values of the same order.
+	 */
+	@SuppressWarnings("unchecked")
+	private static int compare(Object value1, Object value2)
+	{
+		if (value1 instanceof Number)
+			return Double.compare(((Number) value1).doubleValue(), ((Number) value2).doubleValue());
+
+		return ((Comparable<Object>) value1).compareTo(value2);
+	}
+
+	/**
+	 * Orders objects the way MongoDB sorts their documents. Missing values sort first, and a
+	 * many valued key sorts by its lowest value in ascending order and by its highest value in
+	 * descending order.
+	 */
+	private class SortComparator implements Comparator<EObject>
+	{
+		SortComparator(Map<String, Integer> orderBy)
+		{
+			this.orderBy = orderBy;
+		}
+
+		@Override
+		public int compare(EObject o1, EObject o2)
+		{
+			for (Map.Entry<String, Integer> key : orderBy.entrySet())
+			{
+				String[] path = key.getKey().split("\\.");
+				int direction = key.getValue();
+				int result = compareSortValues(getSortValue(o1, path, direction), getSortValue(o2, path, direction));
+
+				if (result != 0)
+					return result * direction;
+			}
+
+			return 0;
+		}
+
+		private Object getSortValue(EObject eObject, String[] path, int direction)
+		{
+			List<Object> values = new ArrayList<Object>();
+			collectValues(eObject, path, 0, values);
+			Object sortValue = null;
+
+			for (Object value : values)
+			{
+				if (getOrder(value) != UNORDERED && (sortValue == null || compareSortValues(value, sortValue) * direction < 0))
+					sortValue = value;
+			}
+
+			return sortValue;
+		}
+
+		private int compareSortValues(Object value1, Object value2)
+		{
+			if (value1 == null || value2 == null)
+				return value1 == null ? (value2 == null ? 0 : -1) : 1;
+
+			int order1 = getOrder(value1);
+			int order2 = getOrder(value2);
+			return order1 != order2 ? order1 - order2 : InMemoryQueryEngine.compare(value1, value2);
+		}
+
+		private Map<String, Integer> orderBy;
+	}
+
+	/**
+	 * An index of the values of the attributes with a given name. Numbers are keyed by their
+	 * double value so that values of different numeric types are found together.
+	 */
+	private class Index
+	{
+		Index(String name, boolean sorted)
+		{
+			this.path = new String[] { name };
+			this.sorted = sorted;
+
+			if (sorted)
+			{
+				entries = new TreeMap<Object, Set<EObject>>(new Comparator<Object>()
+				{
+					@Override
+					public int compare(Object o1, Object o2)
+					{
+						int order1 = getOrder(o1);
+						int order2 = getOrder(o2);
+						return order1 != order2 ? order1 - order2 : InMemoryQueryEngine.compare(o1, o2);
+					}
+				});
+			}
+			else
+				entries = new HashMap<Object, Set<EObject>>();
+		}
+
+		void add(EObject eObject)
+		{
+			List<Object> values = new ArrayList<Object>();
+			collectValues(eObject, path, 0, values);
+			List<Object> keys = new ArrayList<Object>(values.size());
+
+			for (Object value : values)
+			{
+				if (getOrder(value) == UNORDERED)
+					continue;
+
+				Object key = getKey(value);
+				Set<EObject> keyedObjects = entries.get(key);
+
+				if (keyedObjects == null)
+				{
+					keyedObjects = new LinkedHashSet<EObject>();
+					entries.put(key, keyedObjects);
+				}
+
+				keyedObjects.add(eObject);
+				keys.add(key);
+			}
+
+			if (!keys.isEmpty())
+				indexedKeys.put(eObject, keys);
+		}
+
+		void remove(EObject eObject)
+		{
+			List<Object> keys = indexedKeys.remove(eObject);
+
+			if (keys == null)
+				return;
+
+			for (Object key : keys)
+			{
+				Set<EObject> keyedObjects = entries.get(key);
+
+				if (keyedObjects != null)
+				{
+					keyedObjects.remove(eObject);
+
+					if (keyedObjects.isEmpty())
+						entries.remove(key);
+				}
+			}
+		}
+
+		/**
+		 * @return the objects with a value satisfying the predicate, or null if the index can't
+		 *         be used for the predicate
+		 */
+		Set<EObject> find(String operator, Object value)
+		{
+			int order = getOrder(value);
+
+			if (order == UNORDERED)
+				return null;
+
+			Object key = getKey(value);
+
+			if ("==".equals(operator))
+			{
+				Set<EObject> keyedObjects = entries.get(key);
+				return keyedObjects != null ? keyedObjects : Collections.<EObject> emptySet();
+			}
+
+			if (!sorted)
+				return null;
+
+			NavigableMap<Object, Set<EObject>> sortedEntries = (NavigableMap<Object, Set<EObject>>) entries;
+			NavigableMap<Object, Set<EObject>> range;
+
+			if ("<".equals(operator))
+				range = sortedEntries.headMap(key, false);
+			else if ("<=".equals(operator))
+				range = sortedEntries.headMap(key, true);
+			else if (">".equals(operator))
+				range = sortedEntries.tailMap(key, false);
+			else if (">=".equals(operator))
+				range = sortedEntries.tailMap(key, true);
+			else
+				return null;
+
+			Set<EObject> result = new HashSet<EObject>();
+
+			for (Map.Entry<Object, Set<EObject>> entry : range.entrySet())
+			{
+				if (getOrder(entry.getKey()) == order)
+					result.addAll(entry.getValue());
+			}
+
+			return result;
+		}
+
+		private Object getKey(Object value)
+		{
+			return value instanceof Number ? (Object) ((Number) value).doubleValue() : value;
+		}
+
+		private final String[] path;
+		private final boolean sorted;
+		private final Map<Object, Set<EObject>> entries;
+		private final Map<EObject, List<Object>> indexedKeys = new HashMap<EObject, List<Object>>();
+	}
+
+	/**
+	 * Updates the indexes of an attribute when its value changes.
+	 */
+	private class IndexAdapter extends AdapterImpl
+	{
+		@Override
+		public void notifyChanged(Notification notification)
+		{
+			if (notification.isTouch() || !(notification.getFeature() instanceof EAttribute))
+				return;
+
+			Index index = indexes.get(((EAttribute) notification.getFeature()).getName());
+
+			if (index != null)
+			{
+				EObject eObject = (EObject) notification.getNotifier();
+				index.remove(eObject);
+				index.add(eObject);
+			}
+		}
+	}
+
+	private static final int UNORDERED = Integer.MAX_VALUE;
+
+	private ConverterService converterService;
+	private Map<EObject, Integer> objects = new LinkedHashMap<EObject, Integer>();
+	private Map<EClass, Integer> eClasses = new HashMap<EClass, Integer>();
+	private Map<String, Index> indexes = new HashMap<String, Index>();
+	private IndexAdapter indexAdapter = new IndexAdapter();
+	private int sequence;
+}
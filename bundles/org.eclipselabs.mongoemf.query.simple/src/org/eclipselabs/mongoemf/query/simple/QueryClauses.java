@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt and Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt and Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.query.simple;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits a simple query into its filter expression and the clauses that follow it:
+ *
+ * <pre>
+ * [filter] [select feature, ...] [order by feature [asc | desc], ...] [after token] [skip n] [limit n]
+ * [filter] select count
+ * [filter] select distinct feature
+ * [filter] group by feature [select aggregate [as name], ...] [order by name [asc | desc], ...] [skip n] [limit n]
+ * </pre>
+ *
+ * The aggregates of a group by clause are count, sum(feature), avg(feature), min(feature) and
+ * max(feature). The after clause holds the continuation token of the previous page of a sorted
+ * query, as described by Options.RESPONSE_CONTINUATION_TOKEN. The clauses may be given in any
+ * order. Keywords are not case sensitive and are only recognized outside of quoted literals. A
+ * word is only taken to be a keyword when it is followed by what the clause expects, so a
+ * feature named limit can still be used in the filter as in limit == 5.
+ *
+ * @author bhunt
+ *
+ */
+final class QueryClauses
+{
+	/**
+	 * @param query the decoded query of a URI
+	 * @return the clauses of the query
+	 */
+	static QueryClauses parse(String query)
+	{
+		QueryClauses clauses = new QueryClauses();
+
+		if (query == null)
+			return clauses;
+
+		List<Integer> starts = new ArrayList<Integer>();
+		List<String> keywords = new ArrayList<String>();
+		char quote = 0;
+
+		for (int i = 0; i < query.length(); i++)
+		{
+			char c = query.charAt(i);
+
+			if (quote != 0)
+			{
+				if (c == quote)
+					quote = 0;
+			}
+			else if (c == '\'' || c == '"')
+				quote = c;
+			else if (i == 0 || Character.isWhitespace(query.charAt(i - 1)))
+			{
+				String keyword = getKeyword(query, i);
+
+				if (keyword != null)
+				{
+					starts.add(i);
+					keywords.add(keyword);
+					i += keyword.length() - 1;
+				}
+			}
+		}
+
+		clauses.filter = (starts.isEmpty() ? query : query.substring(0, starts.get(0))).trim();
+
+		for (int i = 0; i < starts.size(); i++)
+		{
+			String keyword = keywords.get(i);
+			int end = i + 1 < starts.size() ? starts.get(i + 1) : query.length();
+			String value = query.substring(starts.get(i) + keyword.length(), end).trim();
+
+			if (SELECT.equals(keyword))
+			{
+				if (COUNT.equalsIgnoreCase(value))
+				{
+					clauses.count = true;
+					continue;
+				}
+
+				if (value.regionMatches(true, 0, DISTINCT, 0, DISTINCT.length()) && value.length() > DISTINCT.length()
+						&& Character.isWhitespace(value.charAt(DISTINCT.length())))
+				{
+					clauses.distinct = value.substring(DISTINCT.length()).trim();
+					continue;
+				}
+
+				clauses.select = new ArrayList<String>();
+
+				for (String feature : value.split(","))
+					clauses.select.add(feature.trim());
+			}
+			else if (ORDER_BY.equals(keyword))
+			{
+				clauses.orderBy = new LinkedHashMap<String, Integer>();
+
+				for (String key : value.split(","))
+				{
+					String[] parts = key.trim().split("\\s+");
+					boolean descending = parts.length > 1 && "desc".equalsIgnoreCase(parts[1]);
+					clauses.orderBy.put(parts[0], descending ? -1 : 1);
+				}
+			}
+			else if (GROUP_BY.equals(keyword))
+				clauses.groupBy = value;
+			else if (AFTER.equals(keyword))
+				clauses.after = value;
+			else if (SKIP.equals(keyword))
+				clauses.skip = Integer.valueOf(value);
+			else
+				clauses.limit = Integer.valueOf(value);
+		}
+
+		return clauses;
+	}
+
+	/**
+	 * @return the filter expression, which is empty if the query has no filter
+	 */
+	String getFilter()
+	{
+		return filter;
+	}
+
+	/**
+	 * @return the names of the selected features, or null if all features are selected
+	 */
+	List<String> getSelect()
+	{
+		return select;
+	}
+
+	/**
+	 * @return true if the query is select count
+	 */
+	boolean isCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the feature of a select distinct clause, or null
+	 */
+	String getDistinct()
+	{
+		return distinct;
+	}
+
+	/**
+	 * @return the feature of the group by clause, or null; the select clause then holds the
+	 *         aggregates
+	 */
+	String getGroupBy()
+	{
+		return groupBy;
+	}
+
+	/**
+	 * @return the continuation token of the after clause, or null
+	 */
+	String getAfter()
+	{
+		return after;
+	}
+
+	/**
+	 * @return the sort keys mapped to 1 for ascending or -1 for descending order, or null if the
+	 *         query is not sorted
+	 */
+	Map<String, Integer> getOrderBy()
+	{
+		return orderBy;
+	}
+
+	/**
+	 * @return the number of results to skip, or null
+	 */
+	Integer getSkip()
+	{
+		return skip;
+	}
+
+	/**
+	 * @return the maximum number of results, or null
+	 */
+	Integer getLimit()
+	{
+		return limit;
+	}
+
+	/**
+	 * @return the keyword starting at the index if it is followed by white space and the value
+	 *         expected by its clause; null otherwise
+	 */
+	private static String getKeyword(String query, int index)
+	{
+		for (String keyword : KEYWORDS)
+		{
+			if (!query.regionMatches(true, index, keyword, 0, keyword.length()))
+				continue;
+
+			int next = index + keyword.length();
+
+			while (next < query.length() && Character.isWhitespace(query.charAt(next)))
+				next++;
+
+			if (next == index + keyword.length() || next == query.length())
+				continue;
+
+			char c = query.charAt(next);
+
+			if (SKIP.equals(keyword) || LIMIT.equals(keyword))
+			{
+				if (Character.isDigit(c))
+					return keyword;
+			}
+			else if (AFTER.equals(keyword))
+			{
+				if (Character.isLetterOrDigit(c))
+					return keyword;
+			}
+			else if (Character.isJavaIdentifierStart(c))
+				return keyword;
+		}
+
+		return null;
+	}
+
+	private static final String SELECT = "select";
+	private static final String ORDER_BY = "order by";
+	private static final String GROUP_BY = "group by";
+	private static final String AFTER = "after";
+	private static final String SKIP = "skip";
+	private static final String LIMIT = "limit";
+	private static final String[] KEYWORDS = { SELECT, ORDER_BY, GROUP_BY, AFTER, SKIP, LIMIT };
+	private static final String COUNT = "count";
+	private static final String DISTINCT = "distinct";
+
+	private String filter = "";
+	private List<String> select;
+	private boolean count;
+	private String distinct;
+	private String groupBy;
+	private String after;
+	private Map<String, Integer> orderBy;
+	private Integer skip;
+	private Integer limit;
+
+	private QueryClauses()
+	{}
+}
@@ -0,0 +1,413 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt and Ed Merks.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt and Ed Merks - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.query.simple;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.emodeling.query.BinaryOperation;
+import org.eclipselabs.emodeling.query.Expression;
+import org.eclipselabs.emodeling.query.Literal;
+import org.eclipselabs.emodeling.query.util.ExpressionBuilder;
+import org.eclipselabs.mongoemf.ConverterService;
+import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.MongoUtils;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.QueryOperators;
+
+/**
+ * Translates the filter expression of a simple query into a MongoDB query in a canonical form
+ * that the server can plan against its indexes:
+ *
+ * <ul>
+ * <li>Nested && and || operations are flattened into a single conjunction or disjunction.</li>
+ * <li>Equalities on the same feature in a disjunction become one $in, so a == 'x' || a == 'y'
+ * is { a : { $in : [ 'x', 'y' ] } } rather than an $or.</li>
+ * <li>Conditions on the same feature in a conjunction are combined into one document, so
+ * a > 1 && a < 5 is { a : { $gt : 1, $lt : 5 } }. Of two lower or two upper bounds only the
+ * tighter is kept, and inequalities become one $nin.</li>
+ * <li>Conditions that cannot be combined are kept in an $and rather than dropped.</li>
+ * </ul>
+ *
+ * Expressions that cannot be translated, such as the comparison of two features, are rejected
+ * rather than ignored, since ignoring them would widen the result.
+ *
+ * When the class of the objects is known, each literal is converted to the type of the
+ * attribute it is compared with, and then to the value stored in MongoDB the same way as the
+ * DBObjectBuilder does, so count == '5' matches an int attribute, enum literals match their
+ * stored names, and values of converted types match. Literals of features that are not found,
+ * or that are not values of the attribute's type, are used as they are.
+ *
+ * @author bhunt
+ *
+ */
+final class QueryNormalizer
+{
+	/**
+	 * @param eClass the class of the objects in the collection - may be null
+	 * @param converterService the service used to convert attribute values when storing objects -
+	 *          may be null
+	 */
+	QueryNormalizer(EClass eClass, ConverterService converterService)
+	{
+		this.eClass = eClass;
+		this.converterService = converterService;
+	}
+
+	/**
+	 * @param expression the filter expression - may be null
+	 * @return the MongoDB query matching the expression
+	 * @throws IllegalArgumentException if the expression contains an operation that is not
+	 *           supported
+	 */
+	DBObject buildDBObject(Expression expression)
+	{
+		if (expression == null)
+			return new BasicDBObject();
+
+		return buildConjunction(flatten(expression, AND, new ArrayList<Expression>()));
+	}
+
+	private DBObject buildConjunction(List<Expression> conjuncts)
+	{
+		DBObject dbObject = new BasicDBObject();
+		List<Object> and = new ArrayList<Object>();
+
+		for (Expression conjunct : conjuncts)
+		{
+			DBObject clause = isOperation(conjunct, OR) ? buildDisjunction(flatten(conjunct, OR, new ArrayList<Expression>())) : buildPredicate(conjunct);
+
+			for (String field : clause.keySet())
+			{
+				Object value = clause.get(field);
+
+				if (AND_OPERATOR.equals(field))
+					and.addAll((List<?>) value);
+				else if (!dbObject.containsField(field))
+					dbObject.put(field, value);
+				else
+				{
+					Object merged = field.startsWith("$") ? null : merge(dbObject.get(field), value);
+
+					if (merged != null)
+						dbObject.put(field, merged);
+					else
+						and.add(new BasicDBObject(field, value));
+				}
+			}
+		}
+
+		if (!and.isEmpty())
+			dbObject.put(AND_OPERATOR, and);
+
+		return dbObject;
+	}
+
+	private DBObject buildDisjunction(List<Expression> disjuncts)
+	{
+		List<DBObject> or = new ArrayList<DBObject>();
+		Map<String, List<Object>> in = new LinkedHashMap<String, List<Object>>();
+		Map<String, DBObject> inClauses = new LinkedHashMap<String, DBObject>();
+
+		for (Expression disjunct : disjuncts)
+		{
+			DBObject clause = isOperation(disjunct, AND) ? buildConjunction(flatten(disjunct, AND, new ArrayList<Expression>())) : buildPredicate(disjunct);
+
+			if (clause.keySet().size() == 1)
+			{
+				String field = clause.keySet().iterator().next();
+				Object value = clause.get(field);
+
+				if (!field.startsWith("$") && !isOperators(value))
+				{
+					// The clause of the first equality on a field stands for all of them so that
+					// the order of the clauses is kept
+
+					List<Object> values = in.get(field);
+
+					if (values == null)
+					{
+						values = new ArrayList<Object>();
+						in.put(field, values);
+						inClauses.put(field, clause);
+						or.add(clause);
+					}
+
+					if (!values.contains(value))
+						values.add(value);
+
+					continue;
+				}
+			}
+
+			or.add(clause);
+		}
+
+		for (Map.Entry<String, List<Object>> entry : in.entrySet())
+		{
+			if (entry.getValue().size() > 1)
+				inClauses.get(entry.getKey()).put(entry.getKey(), new BasicDBObject(QueryOperators.IN, entry.getValue()));
+		}
+
+		return or.size() == 1 ? or.get(0) : new BasicDBObject(OR_OPERATOR, or);
+	}
+
+	private DBObject buildPredicate(Expression expression)
+	{
+		if (!(expression instanceof BinaryOperation))
+			throw new IllegalArgumentException("The expression '" + ExpressionBuilder.toString(expression) + "' is not supported");
+
+		BinaryOperation binaryOperation = (BinaryOperation) expression;
+		String operator = binaryOperation.getOperator();
+		String property = ExpressionBuilder.toString(binaryOperation.getLeftOperand());
+		Expression rightOperand = binaryOperation.getRightOperand();
+
+		if (!(rightOperand instanceof Literal))
+		{
+			if ("null".equals(ExpressionBuilder.toString(rightOperand)))
+			{
+				if ("==".equals(operator))
+					return new BasicDBObject(property, new BasicDBObject(QueryOperators.EXISTS, Boolean.FALSE));
+
+				if ("!=".equals(operator))
+					return new BasicDBObject(property, new BasicDBObject(QueryOperators.EXISTS, Boolean.TRUE));
+			}
+
+			throw new IllegalArgumentException("The expression '" + ExpressionBuilder.toString(expression) + "' is not supported");
+		}
+
+		Object value = getValue(property, (Literal) rightOperand);
+
+		if ("==".equals(operator))
+			return new BasicDBObject(property, value);
+
+		if ("!=".equals(operator))
+			return new BasicDBObject(property, new BasicDBObject(QueryOperators.NE, value));
+
+		if ("<".equals(operator))
+			return new BasicDBObject(property, new BasicDBObject(QueryOperators.LT, value));
+
+		if ("<=".equals(operator))
+			return new BasicDBObject(property, new BasicDBObject(QueryOperators.LTE, value));
+
+		if (">".equals(operator))
+			return new BasicDBObject(property, new BasicDBObject(QueryOperators.GT, value));
+
+		if (">=".equals(operator))
+			return new BasicDBObject(property, new BasicDBObject(QueryOperators.GTE, value));
+
+		throw new IllegalArgumentException("The operator '" + operator + "' is not supported");
+	}
+
+	/**
+	 * @param property the feature path the literal is compared with
+	 * @param literal the literal
+	 * @return the value of the literal as it would be stored for the feature
+	 */
+	Object getValue(String property, Literal literal)
+	{
+		if (Keywords.ID_KEY.equals(property))
+		{
+			// Like MongoUtils.getID(), an id that is not an ObjectId is used as it is
+
+			try
+			{
+				return new ObjectId(literal.getLiteralValue());
+			}
+			catch (IllegalArgumentException e)
+			{
+				return literal.getLiteralValue();
+			}
+		}
+
+		Object value = literal.getValue() == null ? literal.getLiteralValue() : literal.getValue();
+		EDataType eDataType = getDataType(property);
+
+		if (eDataType == null)
+			return value;
+
+		Object emfValue;
+
+		try
+		{
+			emfValue = EcoreUtil.createFromString(eDataType, literal.getLiteralValue() != null ? literal.getLiteralValue() : String.valueOf(value));
+		}
+		catch (RuntimeException e)
+		{
+			return value;
+		}
+
+		if (emfValue == null || MongoUtils.isNativeType(eDataType))
+			return emfValue != null ? emfValue : value;
+
+		if (converterService != null)
+			return converterService.getConverter(eDataType).convertEMFValueToMongoDBValue(eDataType, emfValue);
+
+		return EcoreUtil.convertToString(eDataType, emfValue);
+	}
+
+	/**
+	 * @return the type of the attribute at the end of the feature path, or null if the path does
+	 *         not end with an attribute of the class
+	 */
+	private EDataType getDataType(String property)
+	{
+		EClass featureClass = eClass;
+		String[] path = property.split("\\.");
+
+		for (int i = 0; i < path.length && featureClass != null; i++)
+		{
+			EStructuralFeature feature = featureClass.getEStructuralFeature(path[i]);
+
+			if (feature instanceof EAttribute && i == path.length - 1)
+				return ((EAttribute) feature).getEAttributeType();
+
+			featureClass = feature instanceof EReference ? ((EReference) feature).getEReferenceType() : null;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Combines two conditions on the same field.
+	 *
+	 * @return the combined condition, or null if the conditions must be kept apart
+	 */
+	@SuppressWarnings("unchecked")
+	private Object merge(Object left, Object right)
+	{
+		if (!isOperators(left) && !isOperators(right))
+		{
+			if (left.equals(right))
+				return left;
+
+			// Both values must be contained by a many-valued feature
+
+			List<Object> all = new ArrayList<Object>();
+			all.add(left);
+			all.add(right);
+			return new BasicDBObject(QueryOperators.ALL, all);
+		}
+
+		DBObject merged = new BasicDBObject(isOperators(left) ? ((DBObject) left).toMap() : toAll(left).toMap());
+		DBObject operators = isOperators(right) ? (DBObject) right : toAll(right);
+
+		for (String operator : operators.keySet())
+		{
+			Object value = operators.get(operator);
+			Object existing = merged.get(operator);
+
+			if (existing == null)
+				merged.put(operator, value);
+			else if (QueryOperators.ALL.equals(operator) || QueryOperators.NIN.equals(operator))
+				((List<Object>) existing).addAll((List<Object>) value);
+			else if (QueryOperators.NE.equals(operator))
+			{
+				List<Object> nin = (List<Object>) merged.get(QueryOperators.NIN);
+
+				if (nin == null)
+				{
+					nin = new ArrayList<Object>();
+					merged.put(QueryOperators.NIN, nin);
+				}
+
+				merged.removeField(QueryOperators.NE);
+				nin.add(existing);
+				nin.add(value);
+			}
+			else if (existing.equals(value))
+				continue;
+			else if (isBound(operator) && existing instanceof Comparable && existing.getClass() == value.getClass())
+			{
+				int result = ((Comparable<Object>) existing).compareTo(value);
+				boolean lower = QueryOperators.GT.equals(operator) || QueryOperators.GTE.equals(operator);
+
+				if (lower ? result < 0 : result > 0)
+					merged.put(operator, value);
+			}
+			else
+				return null;
+		}
+
+		if (merged.containsField(QueryOperators.NE) && merged.containsField(QueryOperators.NIN))
+			((List<Object>) merged.get(QueryOperators.NIN)).add(merged.removeField(QueryOperators.NE));
+
+		return merged;
+	}
+
+	private static DBObject toAll(Object value)
+	{
+		List<Object> all = new ArrayList<Object>();
+		all.add(value);
+		return new BasicDBObject(QueryOperators.ALL, all);
+	}
+
+	private static boolean isBound(String operator)
+	{
+		return QueryOperators.GT.equals(operator) || QueryOperators.GTE.equals(operator) || QueryOperators.LT.equals(operator) || QueryOperators.LTE.equals(operator);
+	}
+
+	/**
+	 * @return true if the value is a document of query operators such as { $gt : 5 } rather than
+	 *         a value to be matched
+	 */
+	private static boolean isOperators(Object value)
+	{
+		if (!(value instanceof DBObject) || value instanceof List<?>)
+			return false;
+
+		for (String key : ((DBObject) value).keySet())
+		{
+			if (!key.startsWith("$"))
+				return false;
+		}
+
+		return true;
+	}
+
+	private static boolean isOperation(Expression expression, String operator)
+	{
+		return expression instanceof BinaryOperation && operator.equals(((BinaryOperation) expression).getOperator());
+	}
+
+	private static List<Expression> flatten(Expression expression, String operator, List<Expression> operands)
+	{
+		if (isOperation(expression, operator))
+		{
+			flatten(((BinaryOperation) expression).getLeftOperand(), operator, operands);
+			flatten(((BinaryOperation) expression).getRightOperand(), operator, operands);
+		}
+		else
+			operands.add(expression);
+
+		return operands;
+	}
+
+	private static final String AND = "&&";
+	private static final String OR = "||";
+	private static final String AND_OPERATOR = "$and";
+	private static final String OR_OPERATOR = "$or";
+
+	private EClass eClass;
+	private ConverterService converterService;
+}
@@ -11,231 +11,108 @@
 
 package org.eclipselabs.mongoemf.query.simple;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.URI;
-import org.eclipselabs.emodeling.query.BinaryOperation;
-import org.eclipselabs.emodeling.query.Expression;
-import org.eclipselabs.emodeling.query.Literal;
+import org.eclipse.emf.ecore.EClass;
 import org.eclipselabs.emodeling.query.util.ExpressionBuilder;
-import org.eclipselabs.emodeling.query.util.QuerySwitch;
+import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.Keywords;
-import org.eclipselabs.mongoemf.QueryEngine;
+import org.eclipselabs.mongoemf.TypedQueryEngine;
 import org.eclipselabs.mongoemf.model.ModelFactory;
 import org.eclipselabs.mongoemf.model.MongoQuery;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
-import com.mongodb.QueryOperators;
 
 /**
  * @author merks
  * 
  */
-public class SimpleQueryEngine implements QueryEngine
+public class SimpleQueryEngine implements TypedQueryEngine
 {
 
 	@Override
 	public MongoQuery buildDBObjectQuery(URI uri)
+	{
+		return buildDBObjectQuery(uri, null, null);
+	}
+
+	@Override
+	public MongoQuery buildDBObjectQuery(URI uri, EClass eClass, ConverterService converterService)
 	{
 		MongoQuery mongoQuery = ModelFactory.eINSTANCE.createMongoQuery();
-		mongoQuery.setFilter(buildDBObjectQuery(new ExpressionBuilder(URI.decode(uri.query())).parseExpression()));
+		QueryClauses clauses = QueryClauses.parse(URI.decode(uri.query()));
+		QueryNormalizer normalizer = new QueryNormalizer(eClass, converterService);
+		mongoQuery.setFilter(normalizer.buildDBObject(new ExpressionBuilder(clauses.getFilter()).parseExpression()));
+		mongoQuery.setCount(clauses.isCount());
+		mongoQuery.setDistinct(clauses.getDistinct());
+
+		if (clauses.getGroupBy() != null)
+			mongoQuery.setGroup(buildGroup(clauses.getGroupBy(), clauses.getSelect()));
+		else if (clauses.getSelect() != null)
+		{
+			// The class of each object is needed to build it from the projected document
+
+			DBObject projection = new BasicDBObject(Keywords.ECLASS_KEY, 1);
+
+			for (String feature : clauses.getSelect())
+				projection.put(feature, 1);
+
+			mongoQuery.setProjection(projection);
+		}
+
+		if (clauses.getOrderBy() != null)
+			mongoQuery.setSort(new BasicDBObject(clauses.getOrderBy()));
+
+		mongoQuery.setAfter(clauses.getAfter());
+		mongoQuery.setSkip(clauses.getSkip());
+		mongoQuery.setLimit(clauses.getLimit());
 		return mongoQuery;
 	}
 
-	private DBObject buildDBObjectQuery(Expression expression)
+	/**
+	 * Builds the $group stage of a group by clause. Each aggregate is named by its alias, or by
+	 * the function and the feature as in sum_price, since the names of the fields of the grouped
+	 * documents cannot contain dots. The group by feature itself may also be selected; it is the
+	 * _id of each grouped document.
+	 */
+	private DBObject buildGroup(String groupBy, List<String> aggregates)
 	{
-		final DBObject dbObject = new BasicDBObject();
+		DBObject group = new BasicDBObject(Keywords.ID_KEY, "$" + groupBy);
 
-		if (expression != null)
+		if (aggregates == null)
 		{
-			new QuerySwitch<Object>()
-			{
-				Object getValue(Literal literal)
-				{
-					return literal.getValue() == null ? literal.getLiteralValue() : literal.getValue();
-				}
-
-				@Override
-				public Object caseBinaryOperation(BinaryOperation binaryOperation)
-				{
-					Expression leftOperand = binaryOperation.getLeftOperand();
-					String operator = binaryOperation.getOperator();
-
-					if ("==".equals(operator))
-					{
-						Expression rightOperand = binaryOperation.getRightOperand();
-						String property = ExpressionBuilder.toString(leftOperand);
-
-						if (Keywords.ID_KEY.equals(property))
-						{
-							dbObject.put(property, new ObjectId(((Literal) rightOperand).getLiteralValue()));
-						}
-						else if (rightOperand instanceof Literal)
-						{
-							dbObject.put(property, getValue((Literal) rightOperand));
-						}
-						else if ("null".equals(ExpressionBuilder.toString(rightOperand)))
-						{
-							DBObject notExists = new BasicDBObject();
-							notExists.put("$exists", Boolean.FALSE);
-							dbObject.put(property, notExists);
-						}
-						else
-						{
-							// TODO: What to do?
-						}
-					}
-					else if ("!=".equals(operator))
-					{
-						Expression rightOperand = binaryOperation.getRightOperand();
-						String property = ExpressionBuilder.toString(leftOperand);
-						if (rightOperand instanceof Literal)
-						{
-							DBObject notEqual = new BasicDBObject();
-							notEqual.put("$ne", getValue((Literal) rightOperand));
-							dbObject.put(property, notEqual);
-						}
-						else if ("null".equals(ExpressionBuilder.toString(rightOperand)))
-						{
-							DBObject exists = new BasicDBObject();
-							exists.put("$exists", Boolean.TRUE);
-							dbObject.put(property, exists);
-						}
-						else
-						{
-							// TODO: What to do?
-						}
-					}
-					else if ("<".equals(operator) || "<=".equals(operator) || ">".equals(operator) || ">=".equals(operator))
-					{
-						Expression rightOperand = binaryOperation.getRightOperand();
-						String property = ExpressionBuilder.toString(leftOperand);
-						if (rightOperand instanceof Literal)
-						{
-							DBObject compare = new BasicDBObject();
-							compare.put("<".equals(operator) ? QueryOperators.LT : "<=".equals(operator) ? QueryOperators.LTE : ">".equals(operator) ? QueryOperators.GT : QueryOperators.GTE,
-									getValue((Literal) rightOperand));
-							dbObject.put(property, compare);
-						}
-						else
-						{
-							// TODO: What to do?
-						}
-					}
-					else if ("||".equals(operator))
-					{
-						DBObject leftObject = buildDBObjectQuery(leftOperand);
-						DBObject rightObject = buildDBObjectQuery(binaryOperation.getRightOperand());
-						@SuppressWarnings("unchecked")
-						List<Object> or = (List<Object>) leftObject.get("$or");
-						if (or != null)
-						{
-							or.add(rightObject);
-							dbObject.putAll(leftObject);
-						}
-						else
-						{
-							or = new ArrayList<Object>();
-							or.add(leftObject);
-							or.add(rightObject);
-							dbObject.put("$or", or);
-						}
-					}
-					else if ("&&".equals(operator))
-					{
-						dbObject.putAll(buildDBObjectQuery(leftOperand));
-						DBObject rightObject = buildDBObjectQuery(binaryOperation.getRightOperand());
-						for (String field : rightObject.keySet())
-						{
-							Object rightValue = rightObject.get(field);
-							Object leftValue = dbObject.get(field);
-							if (leftValue instanceof DBObject)
-							{
-								DBObject leftDBObject = (DBObject) leftValue;
-								if (rightValue instanceof DBObject)
-								{
-									DBObject rightDBObject = (DBObject) rightValue;
-									if (leftDBObject.containsField("$nin") && rightDBObject.containsField("$ne"))
-									{
-										@SuppressWarnings("unchecked")
-										List<Object> values = (List<Object>) leftDBObject.get("$nin");
-										values.add(rightDBObject.get("$ne"));
-									}
-									else if (leftDBObject.containsField("$ne") && rightDBObject.containsField("$ne"))
-									{
-										DBObject nin = new BasicDBObject();
-										List<Object> values = new ArrayList<Object>();
-										values.add(leftDBObject.get("$ne"));
-										values.add(rightDBObject.get("$ne"));
-										nin.put("$nin", values);
-										dbObject.put(field, nin);
-									}
-									else
-									{
-										leftDBObject.putAll(rightDBObject);
-									}
-								}
-								else
-								{
-									Object all = leftDBObject.get("$all");
-									if (all instanceof List<?>)
-									{
-										@SuppressWarnings("unchecked")
-										List<Object> allList = (List<Object>) all;
-										allList.add(rightValue);
-									}
-									else
-									{
-										// What to do?
-									}
-								}
-							}
-							else if (leftValue instanceof List<?>)
-							{
-								@SuppressWarnings("unchecked")
-								List<Object> leftListValue = (List<Object>) leftValue;
-								if (rightValue instanceof List<?>)
-								{
-									leftListValue.addAll((List<?>) rightValue);
-								}
-								else
-								{
-									leftListValue.add(rightValue);
-								}
-							}
-							else if (leftValue != null)
-							{
-								if (rightValue instanceof List<?>)
-								{
-									@SuppressWarnings("unchecked")
-									List<Object> rightListValue = (List<Object>) rightValue;
-									rightListValue.add(0, leftValue);
-									dbObject.put(field, rightListValue);
-								}
-								else
-								{
-									List<Object> listValue = new ArrayList<Object>();
-									listValue.add(leftValue);
-									listValue.add(rightValue);
-									DBObject in = new BasicDBObject("$all", listValue);
-									dbObject.put(field, in);
-								}
-							}
-							else
-							{
-								dbObject.put(field, rightValue);
-							}
-						}
-					}
-
-					return null;
-				}
-			}.doSwitch(expression);
+			group.put(COUNT, new BasicDBObject("$sum", 1));
+			return group;
 		}
 
-		return dbObject;
+		for (String aggregate : aggregates)
+		{
+			Matcher matcher = AGGREGATE_PATTERN.matcher(aggregate);
+
+			if (!matcher.matches())
+				throw new IllegalArgumentException("The aggregate '" + aggregate + "' is not supported");
+
+			String function = matcher.group(1);
+			String feature = matcher.group(2);
+			String alias = matcher.group(3);
+
+			if (feature == null && COUNT.equalsIgnoreCase(function))
+				group.put(alias != null ? alias : COUNT, new BasicDBObject("$sum", 1));
+			else if (feature != null && ACCUMULATORS.contains(function.toLowerCase()))
+				group.put(alias != null ? alias : function.toLowerCase() + "_" + feature.replace('.', '_'), new BasicDBObject("$" + function.toLowerCase(), "$" + feature));
+			else if (feature != null || alias != null || !function.equals(groupBy))
+				throw new IllegalArgumentException("The aggregate '" + aggregate + "' is not supported");
+		}
+
+		return group;
 	}
+
+	private static final String COUNT = "count";
+	private static final List<String> ACCUMULATORS = Arrays.asList("sum", "avg", "min", "max");
+	private static final Pattern AGGREGATE_PATTERN = Pattern.compile("([\\w.]+)\\s*(?:\\(\\s*([\\w.]+)\\s*\\))?(?:\\s+(?i:as)\\s+(\\w+))?");
 }
@@ -13,7 +13,10 @@ package org.eclipselabs.mongoemf.streams;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.emf.common.util.EList;
@@ -33,11 +36,17 @@ import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
 import org.eclipselabs.mongoemf.Options;
 import org.eclipselabs.mongoemf.QueryEngine;
+import org.eclipselabs.mongoemf.TypedQueryEngine;
 import org.eclipselabs.mongoemf.model.ModelFactory;
 import org.eclipselabs.mongoemf.model.MongoCursor;
 import org.eclipselabs.mongoemf.model.MongoQuery;
+import org.eclipselabs.mongoemf.model.MongoQueryResult;
+import org.eclipselabs.mongoemf.util.ContinuationToken;
+import org.eclipselabs.mongoemf.util.DocumentCache;
+import org.eclipselabs.mongoemf.util.MongoCursorPartitioner;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.CommandResult;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
@@ -90,26 +99,129 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 
 		if (uri.query() != null)
 		{
-			if (queryEngine == null)
+			QueryEngine engine = (QueryEngine) options.get(Options.OPTION_QUERY_ENGINE);
+
+			if (engine == null)
+				engine = queryEngine;
+
+			if (engine == null)
 				throw new IOException("The query engine was not found");
 
-			MongoQuery mongoQuery = queryEngine.buildDBObjectQuery(uri);
+			MongoQuery mongoQuery;
+
+			if (engine instanceof TypedQueryEngine)
+				mongoQuery = ((TypedQueryEngine) engine).buildDBObjectQuery(uri, (EClass) options.get(Options.OPTION_QUERY_ECLASS), converterService);
+			else
+				mongoQuery = engine.buildDBObjectQuery(uri);
+
+			// Counts, distinct values and groups are computed by the server and returned as a
+			// single result object instead of building an object for every matching document.
+
+			if (mongoQuery.isCount() || mongoQuery.getDistinct() != null || mongoQuery.getGroup() != null)
+			{
+				contents.add(buildQueryResult(mongoQuery));
+				return;
+			}
+
+			// The output of an aggregation pipeline is returned in a single reply, so it is always
+			// built into a collection rather than a cursor. The output documents may hold computed
+			// fields and need not be stored documents, so they are built as detached objects rather
+			// than proxies, and output without an _eClass is returned as is.
+
+			if (!mongoQuery.getPipeline().isEmpty())
+			{
+				List<DBObject> output = aggregate(mongoQuery, mongoQuery.getPipeline());
+
+				if (hasEClasses(output))
+				{
+					EReferenceCollection eCollection = EmodelingFactory.eINSTANCE.createEReferenceCollection();
+					InternalEList<EObject> values = (InternalEList<EObject>) eCollection.getValues();
+
+					for (DBObject dbObject : output)
+						values.addUnique(builder.buildEObject(collection, dbObject, resource, false));
+
+					contents.add(eCollection);
+				}
+				else
+				{
+					MongoQueryResult result = ModelFactory.eINSTANCE.createMongoQueryResult();
+					result.getGroups().addAll(output);
+					result.setCount(output.size());
+					contents.add(result);
+				}
+
+				return;
+			}
+
+			DBObject filter = mongoQuery.getFilter();
+			DBObject projection = mongoQuery.getProjection();
+			DBObject sort = mongoQuery.getSort();
+
+			// A sorted and limited query is read a page at a time, so its sort is made total and the
+			// sort keys are projected for the continuation token of the next page.
+
+			boolean paged = sort != null && mongoQuery.getLimit() != null && mongoQuery.getLimit() != 0;
+
+			if (mongoQuery.getAfter() != null && sort == null)
+				throw new IOException("The query '" + uri.query() + "' must be sorted to use a continuation token");
+
+			if (sort != null && (paged || mongoQuery.getAfter() != null))
+			{
+				sort = ContinuationToken.getSort(sort);
+
+				if (projection != null)
+				{
+					projection = new BasicDBObject(projection.toMap());
+
+					for (String key : sort.keySet())
+						projection.put(key, 1);
+				}
+
+				if (mongoQuery.getAfter() != null)
+				{
+					try
+					{
+						filter = ContinuationToken.seek(filter, sort, mongoQuery.getAfter());
+					}
+					catch (IllegalArgumentException e)
+					{
+						throw new IOException(e.getMessage(), e);
+					}
+				}
+			}
+
 			DBCursor resultCursor = null;
 
-			if (mongoQuery.getProjection() == null)
-				resultCursor = collection.find(mongoQuery.getFilter());
+			if (projection == null)
+				resultCursor = collection.find(filter);
 			else
-				resultCursor = collection.find(mongoQuery.getFilter(), mongoQuery.getProjection());
+				resultCursor = collection.find(filter, projection);
 
 			if (mongoQuery.getSkip() != null)
 				resultCursor.skip(mongoQuery.getSkip());
 
-			if (mongoQuery.getSort() != null)
-				resultCursor = resultCursor.sort(mongoQuery.getSort());
+			if (sort != null)
+				resultCursor = resultCursor.sort(sort);
 
 			if (mongoQuery.getLimit() != null)
 				resultCursor = resultCursor.limit(mongoQuery.getLimit());
 
+			if (mongoQuery.getHint() instanceof String)
+				resultCursor = resultCursor.hint((String) mongoQuery.getHint());
+			else if (mongoQuery.getHint() != null)
+				resultCursor = resultCursor.hint((DBObject) mongoQuery.getHint());
+
+			if (mongoQuery.getMaxTimeMS() != null)
+				resultCursor = resultCursor.addSpecial("$maxTimeMS", mongoQuery.getMaxTimeMS());
+
+			if (mongoQuery.getComment() != null)
+				resultCursor = resultCursor.addSpecial("$comment", mongoQuery.getComment());
+
+			Number batchSize = mongoQuery.getBatchSize() != null ? mongoQuery.getBatchSize() : (Number) options.get(Options.OPTION_BATCH_SIZE);
+
+			if (batchSize != null)
+				resultCursor = resultCursor.batchSize(batchSize.intValue());
+
 			boolean createCursor = Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_CURSOR));
 
 			if (createCursor)
@@ -118,22 +230,56 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 				cursor.setDbCollection(collection);
 				cursor.setDbCursor(resultCursor);
 				cursor.setObjectBuilder(builder);
+				cursor.setDetached(Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_CURSOR_DETACHED)));
+				MongoCursorPartitioner.setQuery(cursor, mongoQuery);
 				contents.add(cursor);
 			}
 			else
 			{
 				EReferenceCollection eCollection = EmodelingFactory.eINSTANCE.createEReferenceCollection();
-				InternalEList<EObject> values = (InternalEList<EObject>) eCollection.getValues();
-
-				for (DBObject dbObject : resultCursor)
-					values.addUnique(builder.buildEObject(collection, dbObject, resource, true));
-
+				DBObject last = buildCollection(eCollection, resultCursor, builder, resource);
 				contents.add(eCollection);
+
+				if (paged && eCollection.getValues().size() == Math.abs(mongoQuery.getLimit()))
+				{
+					try
+					{
+						response.put(Options.RESPONSE_CONTINUATION_TOKEN, ContinuationToken.create(sort, last));
+					}
+					catch (IllegalArgumentException e)
+					{
+						throw new IOException(e.getMessage(), e);
+					}
+				}
 			}
 		}
 		else
 		{
-			DBObject dbObject = collection.findOne(new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri)));
+			Object id = MongoUtils.getID(uri);
+			Long loadedTimeStamp = (Long) options.get(Options.OPTION_LOADED_TIME_STAMP);
+
+			if (loadedTimeStamp != null && !contents.isEmpty())
+			{
+				// Only the time stamp is read to check whether the loaded contents are still current
+
+				DBObject probe = collection.findOne(new BasicDBObject(Keywords.ID_KEY, id), new BasicDBObject(Keywords.TIME_STAMP_KEY, 1));
+
+				if (probe != null && loadedTimeStamp.equals(probe.get(Keywords.TIME_STAMP_KEY)))
+				{
+					response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, loadedTimeStamp);
+					return;
+				}
+
+				resource.unload();
+			}
+
+			DocumentCache documentCache = (DocumentCache) options.get(Options.OPTION_DOCUMENT_CACHE);
+			DBObject dbObject;
+
+			if (documentCache != null)
+				dbObject = documentCache.find(collection, uri, id);
+			else
+				dbObject = collection.findOne(new BasicDBObject(Keywords.ID_KEY, id));
 
 			if (dbObject != null)
 			{
@@ -147,6 +293,102 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 		}
 	}
 
+	private MongoQueryResult buildQueryResult(MongoQuery mongoQuery)
+	{
+		MongoQueryResult result = ModelFactory.eINSTANCE.createMongoQueryResult();
+		DBObject filter = mongoQuery.getFilter() != null ? mongoQuery.getFilter() : new BasicDBObject();
+
+		if (mongoQuery.getGroup() != null)
+		{
+			result.getGroups().addAll(aggregate(mongoQuery, Collections.<DBObject> singletonList(new BasicDBObject("$group", mongoQuery.getGroup()))));
+			result.setCount(result.getGroups().size());
+		}
+		else if (mongoQuery.getDistinct() != null)
+		{
+			result.getValues().addAll(collection.distinct(mongoQuery.getDistinct(), filter));
+			result.setCount(result.getValues().size());
+		}
+		else if (mongoQuery.getSkip() != null || mongoQuery.getLimit() != null)
+		{
+			DBCursor resultCursor = collection.find(filter);
+
+			if (mongoQuery.getSkip() != null)
+				resultCursor.skip(mongoQuery.getSkip());
+
+			if (mongoQuery.getLimit() != null)
+				resultCursor.limit(mongoQuery.getLimit());
+
+			result.setCount(resultCursor.size());
+		}
+		else
+			result.setCount(collection.count(filter));
+
+		return result;
+	}
+
+	private static boolean hasEClasses(List<DBObject> dbObjects)
+	{
+		for (DBObject dbObject : dbObjects)
+		{
+			if (dbObject.get(Keywords.ECLASS_KEY) == null)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the last of the documents, or null if there are none
+	 */
+	private DBObject buildCollection(EReferenceCollection eCollection, Iterable<DBObject> dbObjects, EObjectBuilder builder, Resource resource)
+	{
+		InternalEList<EObject> values = (InternalEList<EObject>) eCollection.getValues();
+		DBObject last = null;
+
+		for (DBObject dbObject : dbObjects)
+		{
+			values.addUnique(builder.buildEObject(collection, dbObject, resource, true));
+			last = dbObject;
+		}
+
+		return last;
+	}
+
+	/**
+	 * Runs the aggregate command with the stages after a $match of the filter, followed by the
+	 * sort, skip and limit of the query. The command is built here rather than with
+	 * DBCollection.aggregate() so that maxTimeMS can be passed to the server.
+	 */
+	@SuppressWarnings("unchecked")
+	private List<DBObject> aggregate(MongoQuery mongoQuery, List<DBObject> stages)
+	{
+		List<DBObject> pipeline = new ArrayList<DBObject>();
+
+		if (mongoQuery.getFilter() != null && !mongoQuery.getFilter().keySet().isEmpty())
+			pipeline.add(new BasicDBObject("$match", mongoQuery.getFilter()));
+
+		pipeline.addAll(stages);
+
+		if (mongoQuery.getSort() != null)
+			pipeline.add(new BasicDBObject("$sort", mongoQuery.getSort()));
+
+		if (mongoQuery.getSkip() != null)
+			pipeline.add(new BasicDBObject("$skip", mongoQuery.getSkip()));
+
+		if (mongoQuery.getLimit() != null)
+			pipeline.add(new BasicDBObject("$limit", mongoQuery.getLimit()));
+
+		DBObject command = new BasicDBObject("aggregate", collection.getName());
+		command.put("pipeline", pipeline);
+
+		if (mongoQuery.getMaxTimeMS() != null)
+			command.put("maxTimeMS", mongoQuery.getMaxTimeMS());
+
+		CommandResult result = collection.getDB().command(command);
+		result.throwOnError();
+		return (List<DBObject>) result.get("result");
+	}
+
 	@Override
 	public int read() throws IOException
 	{
@@ -14,8 +14,11 @@ package org.eclipselabs.mongoemf.streams;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
+import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EAttribute;
@@ -32,9 +35,12 @@ import org.eclipselabs.emongo.MongoIdFactory;
 import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.DBObjectBuilder;
 import org.eclipselabs.mongoemf.DBObjectBuilderFactory;
+import org.eclipselabs.mongoemf.DeferredWriter;
 import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
 import org.eclipselabs.mongoemf.Options;
+import org.eclipselabs.mongoemf.util.DocumentCache;
+import org.eclipselabs.mongoemf.util.ExternalValues;
 
 import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
@@ -133,29 +139,55 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 		response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, timeStamp);
 
 		Boolean useIdAttributeAsPrimaryKey = (Boolean) options.get(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY);
+		WriteConcern writeConcern = (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN);
+		DeferredWriter deferredWriter = (DeferredWriter) options.get(Options.OPTION_DEFERRED_WRITER);
+		int queued = 0;
 
-		for (EObject eObject : contents)
+		try
 		{
-			DBObject dbObject = builder.buildDBObject(eObject);
-			dbObject.put(Keywords.TIME_STAMP_KEY, timeStamp);
-
-			if (useIdAttributeAsPrimaryKey != null && useIdAttributeAsPrimaryKey)
+			for (EObject eObject : contents)
 			{
-				EAttribute idAttribute = eObject.eClass().getEIDAttribute();
+				DBObject dbObject = builder.buildDBObject(eObject);
+				dbObject.put(Keywords.TIME_STAMP_KEY, timeStamp);
+
+				if (useIdAttributeAsPrimaryKey != null && useIdAttributeAsPrimaryKey)
+				{
+					EAttribute idAttribute = eObject.eClass().getEIDAttribute();
+
+					if (idAttribute != null)
+						dbObject.put(Keywords.ID_KEY, eObject.eGet(idAttribute));
+				}
+
+				// The ids are generated here rather than by the driver so that the external values are
+				// stored with the id of their object, and so that deferred writes have them for the proxies below
+
+				if (dbObject.get(Keywords.ID_KEY) == null)
+					dbObject.put(Keywords.ID_KEY, new ObjectId());
 
-				if (idAttribute != null)
-					dbObject.put(Keywords.ID_KEY, eObject.eGet(idAttribute));
+				dbObjects.add(dbObject);
+				ExternalValues.store(collection, dbObject);
 			}
 
-			dbObjects.add(dbObject);
+			if (deferredWriter != null)
+			{
+				for (DBObject dbObject : dbObjects)
+				{
+					deferredWriter.write(collection, dbObject, true, null);
+					queued++;
+				}
+			}
+			else if (writeConcern == null)
+				collection.insert(dbObjects);
+			else
+				collection.insert(dbObjects, writeConcern);
 		}
+		catch (RuntimeException e)
+		{
+			// The objects already handed to the deferred writer keep their external values
 
-		WriteConcern writeConcern = (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN);
-
-		if (writeConcern == null)
-			collection.insert(dbObjects);
-		else
-			collection.insert(dbObjects, writeConcern);
+			removeUnwritten(dbObjects.subList(queued, dbObjects.size()));
+			throw e;
+		}
 
 		URI baseURI = resource.getURI().trimSegments(1);
 		InternalEObject[] eObjects = contents.toArray(new InternalEObject[contents.size()]);
@@ -179,7 +211,7 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 		// Build a MongoDB object from the EMF object.
 
 		EObject eObject = resource.getContents().get(0);
-		DBObject dbObject = builder.buildDBObject(eObject);
+		final DBObject dbObject = builder.buildDBObject(eObject);
 
 		// The timestamp needs to be persisted with the object, and set in the response
 
@@ -187,11 +219,12 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 		dbObject.put(Keywords.TIME_STAMP_KEY, timeStamp);
 		response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, timeStamp);
 		WriteConcern writeConcern = (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN);
+		DeferredWriter deferredWriter = (DeferredWriter) options.get(Options.OPTION_DEFERRED_WRITER);
 
 		if (id == null)
 		{
-			// The id was not specified in the URI, so we can let MongoDB generate the id or use the value
-			// of the ID attribute
+			// The id was not specified in the URI, so we generate the id or use the value of the ID
+			// attribute
 
 			Boolean useIdAttributeAsPrimaryKey = (Boolean) options.get(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY);
 			EAttribute idAttribute = eObject.eClass().getEIDAttribute();
@@ -204,20 +237,34 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 				id = eObject.eGet(idAttribute);
 				dbObject.put(Keywords.ID_KEY, id);
 			}
-
-			if (writeConcern == null)
-				collection.insert(dbObject);
 			else
-				collection.insert(dbObject, writeConcern);
+			{
+				// The id is generated here rather than by the driver so that the external values are
+				// stored with the id of their object, and so that a deferred write has it
+				id = new ObjectId();
+				dbObject.put(Keywords.ID_KEY, id);
+			}
+
+			// Values marked for external storage are written to GridFS and replaced by their handles
 
-			if (!idSpecifiedByClient)
+			try
 			{
-				// The id was not specified, so we are creating an object and letting MongoDB generate the
-				// id
-				id = dbObject.get(Keywords.ID_KEY);
+				ExternalValues.store(collection, dbObject);
+
+				if (deferredWriter != null)
+					deferredWriter.write(collection, dbObject, true, null);
+				else if (writeConcern == null)
+					collection.insert(dbObject);
+				else
+					collection.insert(dbObject, writeConcern);
+			}
+			catch (RuntimeException e)
+			{
+				removeUnwritten(Collections.singletonList(dbObject));
+				throw e;
 			}
 
-			// Modify the EMF Resource URI to include the id generated by MongoDB or specified in the ID
+			// Modify the EMF Resource URI to include the generated id or the id specified in the ID
 			// attribute by removing the dummy id and appending the real id.
 
 			URI newURI = resource.getURI().trimSegments(1).appendSegment(id.toString());
@@ -233,12 +280,78 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 			// object. If the object already exists, then it will be updated; otherwise it will
 			// be inserted.
 
-			dbObject.put(Keywords.ID_KEY, id);
+			final Object objectId = id;
+			dbObject.put(Keywords.ID_KEY, objectId);
 
-			if (writeConcern == null)
-				collection.save(dbObject);
-			else
-				collection.save(dbObject, writeConcern);
+			try
+			{
+				ExternalValues.store(collection, dbObject);
+			}
+			catch (RuntimeException e)
+			{
+				removeUnwritten(Collections.singletonList(dbObject));
+				throw e;
+			}
+
+			// The cached document is removed once the object has been written, otherwise a load before a
+			// deferred write would cache the previous document again. The external values replaced by
+			// the save are removed once they are no longer referenced, which is only looked for when
+			// the object can own values in GridFS.
+
+			final DocumentCache documentCache = (DocumentCache) options.get(Options.OPTION_DOCUMENT_CACHE);
+			final boolean external = ExternalValues.containsHandles(dbObject) || ExternalValues.hasExternalAttributes(eObject)
+					|| Boolean.TRUE.equals(options.get(Options.OPTION_EXTERNAL_STORAGE));
+			Runnable written = null;
+
+			if (documentCache != null || external)
+			{
+				written = new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						if (documentCache != null)
+							documentCache.remove(uri);
+
+						if (external)
+							ExternalValues.removeReplaced(collection, objectId, dbObject);
+					}
+				};
+			}
+
+			try
+			{
+				if (deferredWriter != null)
+					deferredWriter.write(collection, dbObject, false, written);
+				else if (writeConcern == null)
+					collection.save(dbObject);
+				else
+					collection.save(dbObject, writeConcern);
+			}
+			catch (RuntimeException e)
+			{
+				removeUnwritten(Collections.singletonList(dbObject));
+				throw e;
+			}
+
+			if (deferredWriter == null && written != null)
+				written.run();
+		}
+	}
+
+	/**
+	 * Removes the external values stored for objects whose write failed. A failure to remove them
+	 * is not reported so that the error of the write is.
+	 */
+	private void removeUnwritten(List<DBObject> dbObjects)
+	{
+		try
+		{
+			ExternalValues.removeUnwritten(collection, dbObjects);
+		}
+		catch (RuntimeException e)
+		{
+			// The files are owned by the objects and removed by their next save or delete
 		}
 	}
 
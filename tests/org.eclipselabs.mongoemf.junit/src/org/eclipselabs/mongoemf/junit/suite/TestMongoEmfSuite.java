@@ -11,6 +11,7 @@
 
 package org.eclipselabs.mongoemf.junit.suite;
 
+import org.eclipselabs.mongoemf.junit.tests.TestAsyncResourceAccessor;
 import org.eclipselabs.mongoemf.junit.tests.TestMongoCursor;
 import org.eclipselabs.mongoemf.junit.tests.TestMongoEmfAttributes;
 import org.eclipselabs.mongoemf.junit.tests.TestMongoEmfBasics;
@@ -20,6 +21,6 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ TestMongoEmfBasics.class, TestMongoEmfAttributes.class, TestMongoEmfReferences.class, TestMongoCursor.class })
+@SuiteClasses({ TestMongoEmfBasics.class, TestMongoEmfAttributes.class, TestMongoEmfReferences.class, TestMongoCursor.class, TestAsyncResourceAccessor.class })
 public class TestMongoEmfSuite
 {}
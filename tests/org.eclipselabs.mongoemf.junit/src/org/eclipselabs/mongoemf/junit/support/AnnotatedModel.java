@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.junit.support;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.EcorePackage;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.Annotations;
+
+/**
+ * A dynamic model with features carrying MongoEMF annotations.
+ * 
+ * @author bhunt
+ * 
+ */
+public class AnnotatedModel
+{
+	public static final String NS_URI = "http://www.eclipselabs.org/mongoemf/junit/annotated";
+
+	public static final EPackage PACKAGE;
+	public static final EClass SAMPLES;
+	public static final EAttribute SAMPLES__INTS;
+	public static final EAttribute SAMPLES__DOUBLES;
+	public static final EAttribute SAMPLES__COUNTS;
+
+	public static final EClass BLOB;
+	public static final EAttribute BLOB__NAME;
+	public static final EAttribute BLOB__DATA;
+	public static final EAttribute BLOB__TEXT;
+	public static final EAttribute BLOB__BYTES;
+
+	public static final EClass NODE;
+	public static final EAttribute NODE__LABEL;
+	public static final EReference NODE__CHILDREN;
+
+	public static final EClass TREE;
+	public static final EAttribute TREE__NAME;
+	public static final EReference TREE__ROOTS;
+
+	static
+	{
+		EcoreFactory factory = EcoreFactory.eINSTANCE;
+
+		PACKAGE = factory.createEPackage();
+		PACKAGE.setName("annotated");
+		PACKAGE.setNsPrefix("annotated");
+		PACKAGE.setNsURI(NS_URI);
+
+		SAMPLES = factory.createEClass();
+		SAMPLES.setName("Samples");
+		PACKAGE.getEClassifiers().add(SAMPLES);
+
+		SAMPLES__INTS = createAttribute(SAMPLES, "ints", EcorePackage.Literals.EINT, -1, Annotations.ENCODING_PACKED);
+		SAMPLES__DOUBLES = createAttribute(SAMPLES, "doubles", EcorePackage.Literals.EDOUBLE, -1, Annotations.ENCODING_PACKED);
+		SAMPLES__COUNTS = createAttribute(SAMPLES, "counts", EcorePackage.Literals.EINTEGER_OBJECT, -1, Annotations.ENCODING_PACKED);
+
+		BLOB = factory.createEClass();
+		BLOB.setName("Blob");
+		PACKAGE.getEClassifiers().add(BLOB);
+
+		BLOB__NAME = createAttribute(BLOB, "name", EcorePackage.Literals.ESTRING, 1, null);
+		BLOB__DATA = createAttribute(BLOB, "data", EcorePackage.Literals.EBYTE_ARRAY, 1, null);
+		EcoreUtil.setAnnotation(BLOB__DATA, Annotations.SOURCE, Annotations.STORAGE, Annotations.STORAGE_EXTERNAL);
+		BLOB__TEXT = createAttribute(BLOB, "text", EcorePackage.Literals.ESTRING, 1, Annotations.ENCODING_COMPRESSED);
+		BLOB__BYTES = createAttribute(BLOB, "bytes", EcorePackage.Literals.EBYTE_ARRAY, 1, Annotations.ENCODING_COMPRESSED);
+
+		NODE = factory.createEClass();
+		NODE.setName("Node");
+		PACKAGE.getEClassifiers().add(NODE);
+
+		NODE__LABEL = createAttribute(NODE, "label", EcorePackage.Literals.ESTRING, 1, null);
+		NODE__CHILDREN = createContainment(NODE, "children", NODE, -1, null);
+
+		TREE = factory.createEClass();
+		TREE.setName("Tree");
+		PACKAGE.getEClassifiers().add(TREE);
+
+		TREE__NAME = createAttribute(TREE, "name", EcorePackage.Literals.ESTRING, 1, null);
+		TREE__ROOTS = createContainment(TREE, "roots", NODE, -1, Annotations.ENCODING_BINARY);
+	}
+
+	/**
+	 * Registers the model with the resource set so that objects can be loaded.
+	 * 
+	 * @param resourceSet the resource set
+	 * @return the resource set
+	 */
+	public static ResourceSet register(ResourceSet resourceSet)
+	{
+		resourceSet.getPackageRegistry().put(NS_URI, PACKAGE);
+		return resourceSet;
+	}
+
+	private static EAttribute createAttribute(EClass eClass, String name, EDataType eDataType, int upperBound, String encoding)
+	{
+		EAttribute attribute = EcoreFactory.eINSTANCE.createEAttribute();
+		attribute.setName(name);
+		attribute.setEType(eDataType);
+		attribute.setUpperBound(upperBound);
+		attribute.setUnique(false);
+
+		if (encoding != null)
+			EcoreUtil.setAnnotation(attribute, Annotations.SOURCE, Annotations.ENCODING, encoding);
+
+		eClass.getEStructuralFeatures().add(attribute);
+		return attribute;
+	}
+
+	private static EReference createContainment(EClass eClass, String name, EClass eType, int upperBound, String encoding)
+	{
+		EReference reference = EcoreFactory.eINSTANCE.createEReference();
+		reference.setName(name);
+		reference.setEType(eType);
+		reference.setUpperBound(upperBound);
+		reference.setContainment(true);
+
+		if (encoding != null)
+			EcoreUtil.setAnnotation(reference, Annotations.SOURCE, Annotations.ENCODING, encoding);
+
+		eClass.getEStructuralFeatures().add(reference);
+		return reference;
+	}
+
+	private AnnotatedModel()
+	{}
+}
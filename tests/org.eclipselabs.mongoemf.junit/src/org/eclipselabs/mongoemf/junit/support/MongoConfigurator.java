@@ -26,6 +26,11 @@ import org.osgi.service.cm.ConfigurationAdmin;
  */
 public class MongoConfigurator
 {
+	/**
+	 * The size at which the builder factory stores byte[] and String values in GridFS.
+	 */
+	public static final int EXTERNAL_STORAGE_THRESHOLD = 1000000;
+
 	private volatile ConfigurationAdmin configurationAdmin;
 
 	public void activate() throws IOException
@@ -43,6 +48,11 @@ public class MongoConfigurator
 		properties.put(MongoDatabaseProvider.PROP_ALIAS, "junit");
 		properties.put(MongoDatabaseProvider.PROP_DATABASE, "junit");
 		config.update(properties);
+
+		config = configurationAdmin.getConfiguration("org.eclipselabs.mongoemf.builders.factory", null);
+		properties = new Hashtable<String, Object>();
+		properties.put("externalStorageThreshold", EXTERNAL_STORAGE_THRESHOLD);
+		config.update(properties);
 	}
 
 	public void bindConfigurationAdmin(ConfigurationAdmin configurationAdmin)
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.junit.tests;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipselabs.emodeling.ECollection;
+import org.eclipselabs.mongoemf.Options;
+import org.eclipselabs.mongoemf.junit.model.ModelFactory;
+import org.eclipselabs.mongoemf.junit.model.ModelPackage;
+import org.eclipselabs.mongoemf.junit.model.TargetObject;
+import org.eclipselabs.mongoemf.junit.support.TestHarness;
+import org.eclipselabs.mongoemf.query.mongodb.NativeQueryEngine;
+import org.eclipselabs.mongoemf.util.AsyncResourceAccessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author bhunt
+ *
+ */
+public class TestAsyncResourceAccessor extends TestHarness
+{
+	@Before
+	public void setUp() throws UnknownHostException
+	{
+		super.setUp();
+		executorService = Executors.newSingleThreadExecutor();
+		accessor = new AsyncResourceAccessor(executorService);
+	}
+
+	@After
+	public void tearDown()
+	{
+		executorService.shutdown();
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception
+	{
+		// Setup : Create a resource holding a target object
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit");
+		Resource resource = createResourceSet().createResource(createCollectionURI(targetObject.eClass()));
+		resource.getContents().add(targetObject);
+
+		// Test : Save the resource, then load it twice into another resource set
+
+		RecordingCallback<Resource> saved = new RecordingCallback<Resource>();
+		accessor.save(resource, null, saved);
+		assertTrue(saved.await());
+
+		ResourceSet resourceSet = createResourceSet();
+		RecordingCallback<Resource> loaded = new RecordingCallback<Resource>();
+		accessor.load(resourceSet, resource.getURI(), null, loaded);
+		assertTrue(loaded.await());
+		Resource reloaded = accessor.load(resourceSet, resource.getURI(), null).get(10, TimeUnit.SECONDS);
+
+		// Verify : Check that the object was stored and the second load reused the loaded resource
+
+		assertThat(saved.failure, is(nullValue()));
+		assertThat(saved.result, is(sameInstance(resource)));
+		assertThat(getCollection(ModelPackage.Literals.TARGET_OBJECT).count(), is(1L));
+		assertThat(loaded.failure, is(nullValue()));
+		assertThat(((TargetObject) loaded.result.getContents().get(0)).getSingleAttribute(), is("junit"));
+		assertThat(reloaded, is(sameInstance(loaded.result)));
+		assertThat(resourceSet.getResources().size(), is(1));
+	}
+
+	@Test
+	public void testFailedLoad() throws Exception
+	{
+		// Setup : Use the native query engine so the query can be rejected
+
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_ENGINE, new NativeQueryEngine());
+		URI uri = createCollectionURI(ModelPackage.Literals.TARGET_OBJECT).appendQuery(URI.encodeQuery("{\"after\" : \"junit\"}", false));
+
+		// Test : Load an unsorted query with a continuation token
+
+		RecordingCallback<Resource> loaded = new RecordingCallback<Resource>();
+		accessor.load(resourceSet, uri, null, loaded);
+
+		// Verify : Check that the failure was reported and the resource was removed from the resource set
+
+		assertTrue(loaded.await());
+		assertThat(loaded.result, is(nullValue()));
+		assertThat(loaded.failure, is(instanceOf(IOException.class)));
+		assertThat(resourceSet.getResources().size(), is(0));
+	}
+
+	@Test
+	public void testDelete() throws Exception
+	{
+		// Setup : Store a target object
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit");
+		saveObject(targetObject);
+		URI uri = targetObject.eResource().getURI();
+
+		// Test : Delete the object
+
+		RecordingCallback<URI> deleted = new RecordingCallback<URI>();
+		accessor.delete(createResourceSet(), uri, null, deleted);
+
+		// Verify : Check that the object was removed from the database
+
+		assertTrue(deleted.await());
+		assertThat(deleted.failure, is(nullValue()));
+		assertThat(deleted.result, is(uri));
+		assertThat(getCollection(ModelPackage.Literals.TARGET_OBJECT).count(), is(0L));
+	}
+
+	@Test
+	public void testQuery() throws Exception
+	{
+		// Setup : Store two target objects
+
+		for (int i = 0; i < 2; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit" + i);
+			saveObject(targetObject);
+		}
+
+		// Test : Query the objects, store a third object, and run the query again in the same resource set
+
+		ResourceSet resourceSet = createResourceSet();
+		URI uri = createCollectionURI(ModelPackage.Literals.TARGET_OBJECT).appendQuery(URI.encodeQuery("", false));
+		RecordingCallback<EList<EObject>> queried = new RecordingCallback<EList<EObject>>();
+		accessor.query(resourceSet, uri, null, queried);
+		assertTrue(queried.await());
+		int queriedCount = ((ECollection) queried.result.get(0)).getValues().size();
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit2");
+		saveObject(targetObject);
+
+		EList<EObject> requeried = accessor.query(resourceSet, uri, null).get(10, TimeUnit.SECONDS);
+
+		// Verify : Check that each query returned the current objects in a single resource
+
+		assertThat(queried.failure, is(nullValue()));
+		assertThat(queriedCount, is(2));
+		assertThat(requeried.get(0), is(instanceOf(ECollection.class)));
+		assertThat(((ECollection) requeried.get(0)).getValues().size(), is(3));
+		assertThat(resourceSet.getResources().size(), is(1));
+	}
+
+	private static class RecordingCallback<T> implements AsyncResourceAccessor.Callback<T>
+	{
+		@Override
+		public void onSuccess(T result)
+		{
+			this.result = result;
+			completed.countDown();
+		}
+
+		@Override
+		public void onFailure(Throwable throwable)
+		{
+			failure = throwable;
+			completed.countDown();
+		}
+
+		boolean await() throws InterruptedException
+		{
+			return completed.await(10, TimeUnit.SECONDS);
+		}
+
+		volatile T result;
+		volatile Throwable failure;
+		private final CountDownLatch completed = new CountDownLatch(1);
+	}
+
+	private ExecutorService executorService;
+	private AsyncResourceAccessor accessor;
+}
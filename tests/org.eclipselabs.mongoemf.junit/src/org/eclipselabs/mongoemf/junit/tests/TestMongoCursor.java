@@ -14,6 +14,7 @@ package org.eclipselabs.mongoemf.junit.tests;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
@@ -22,7 +23,13 @@ import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
@@ -33,6 +40,8 @@ import org.eclipselabs.mongoemf.junit.model.ModelPackage;
 import org.eclipselabs.mongoemf.junit.model.TargetObject;
 import org.eclipselabs.mongoemf.junit.support.TestHarness;
 import org.eclipselabs.mongoemf.model.MongoCursor;
+import org.eclipselabs.mongoemf.util.AsyncResourceAccessor;
+import org.eclipselabs.mongoemf.util.AsyncResourceAccessor.Subscription;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -158,4 +167,228 @@ public class TestMongoCursor extends TestHarness
 		assertFalse(iterator.hasNext());
 		assertTrue(pendingTargets.isEmpty());
 	}
+
+	@Test
+	public void testDetachedIteration() throws IOException
+	{
+		// Setup : Store multiple target objects to the database.
+
+		TargetObject targetObject1 = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject1.setSingleAttribute("junit1");
+		saveObject(targetObject1);
+
+		TargetObject targetObject2 = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject2.setSingleAttribute("junit2");
+		saveObject(targetObject2);
+
+		// Test: Query the database to return a detached cursor
+
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_CURSOR, Boolean.TRUE);
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_CURSOR_DETACHED, Boolean.TRUE);
+		resourceSet.getLoadOptions().put(Options.OPTION_BATCH_SIZE, 1);
+		Resource resource = resourceSet.getResource(queryURI, true);
+
+		// Verify: Make sure the objects are returned without being added to the resource set
+
+		MongoCursor cursor = (MongoCursor) resource.getContents().get(0);
+		assertTrue(cursor.isDetached());
+
+		HashSet<String> pendingTargets = new HashSet<String>(2);
+		pendingTargets.add(targetObject1.getSingleAttribute());
+		pendingTargets.add(targetObject2.getSingleAttribute());
+
+		Iterator<EObject> iterator = cursor.iterator();
+
+		while (iterator.hasNext())
+		{
+			TargetObject actualObject = (TargetObject) iterator.next();
+			assertThat(actualObject.eResource(), is(nullValue()));
+			pendingTargets.remove(actualObject.getSingleAttribute());
+		}
+
+		cursor.close();
+
+		assertTrue(pendingTargets.isEmpty());
+		assertThat(resourceSet.getResources().size(), is(1));
+	}
+
+	@Test
+	public void testPartitionedIteration() throws IOException
+	{
+		// Setup : Store multiple target objects to the database.
+
+		HashSet<String> pendingTargets = new HashSet<String>(10);
+
+		for (int i = 0; i < 10; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit" + i);
+			saveObject(targetObject);
+			pendingTargets.add(targetObject.getSingleAttribute());
+		}
+
+		// Test: Query the database to return a detached cursor and partition it
+
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_CURSOR, Boolean.TRUE);
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_CURSOR_DETACHED, Boolean.TRUE);
+		Resource resource = resourceSet.getResource(queryURI, true);
+
+		MongoCursor cursor = (MongoCursor) resource.getContents().get(0);
+		EList<Iterator<EObject>> partitions = cursor.partition(3);
+
+		// Verify: Make sure the partitions together return each object exactly once
+
+		assertThat(partitions.size(), is(3));
+
+		int count = 0;
+
+		for (Iterator<EObject> iterator : partitions)
+		{
+			while (iterator.hasNext())
+			{
+				TargetObject actualObject = (TargetObject) iterator.next();
+				assertTrue(pendingTargets.remove(actualObject.getSingleAttribute()));
+				count++;
+			}
+		}
+
+		cursor.close();
+
+		assertThat(count, is(10));
+		assertTrue(pendingTargets.isEmpty());
+	}
+
+	@Test
+	public void testPartitionedIterationSorted() throws IOException
+	{
+		// Setup : Store multiple target objects to the database.
+
+		for (int i = 0; i < 10; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit" + i);
+			saveObject(targetObject);
+		}
+
+		// Test: Partition a sorted cursor
+
+		MongoCursor cursor = loadCursor("order by singleAttribute desc");
+		EList<Iterator<EObject>> partitions = cursor.partition(2);
+
+		// Verify: Make sure each partition is read in the order of the query
+
+		int count = 0;
+
+		for (Iterator<EObject> iterator : partitions)
+		{
+			String previous = null;
+
+			while (iterator.hasNext())
+			{
+				String value = ((TargetObject) iterator.next()).getSingleAttribute();
+				assertTrue(previous == null || previous.compareTo(value) > 0);
+				previous = value;
+				count++;
+			}
+		}
+
+		cursor.close();
+		assertThat(count, is(10));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartitionedIterationWithLimit() throws IOException
+	{
+		// Test: Partition a limited cursor
+
+		MongoCursor cursor = loadCursor("limit 5");
+
+		try
+		{
+			cursor.partition(2);
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+
+	@Test
+	public void testSubscribedIteration() throws Exception
+	{
+		// Setup : Store multiple target objects to the database.
+
+		final HashSet<String> pendingTargets = new HashSet<String>(3);
+
+		for (int i = 0; i < 3; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit" + i);
+			saveObject(targetObject);
+			pendingTargets.add(targetObject.getSingleAttribute());
+		}
+
+		// Test: Stream the query results requesting one object at a time
+
+		ExecutorService executorService = Executors.newSingleThreadExecutor();
+		final CountDownLatch completed = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		try
+		{
+			AsyncResourceAccessor accessor = new AsyncResourceAccessor(executorService);
+			accessor.query(createResourceSet(), queryURI, null, new AsyncResourceAccessor.Subscriber()
+			{
+				@Override
+				public void onSubscribe(Subscription subscription)
+				{
+					this.subscription = subscription;
+					subscription.request(1);
+				}
+
+				@Override
+				public void onNext(EObject eObject)
+				{
+					pendingTargets.remove(((TargetObject) eObject).getSingleAttribute());
+					subscription.request(1);
+				}
+
+				@Override
+				public void onError(Throwable throwable)
+				{
+					failure.set(throwable);
+					completed.countDown();
+				}
+
+				@Override
+				public void onComplete()
+				{
+					completed.countDown();
+				}
+
+				private Subscription subscription;
+			});
+
+			// Verify: Make sure all of the objects were delivered
+
+			assertTrue(completed.await(10, TimeUnit.SECONDS));
+			assertThat(failure.get(), is(nullValue()));
+			assertTrue(pendingTargets.isEmpty());
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	private MongoCursor loadCursor(String query)
+	{
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_CURSOR, Boolean.TRUE);
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_CURSOR_DETACHED, Boolean.TRUE);
+		URI uri = createCollectionURI(ModelPackage.Literals.TARGET_OBJECT).appendQuery(URI.encodeQuery(query, false));
+		return (MongoCursor) resourceSet.getResource(uri, true).getContents().get(0);
+	}
 }
@@ -11,6 +11,7 @@
 
 package org.eclipselabs.mongoemf.junit.tests;
 
+import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertFalse;
@@ -18,19 +19,34 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 
+import org.bson.types.Binary;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.Options;
 import org.eclipselabs.mongoemf.junit.model.ModelFactory;
 import org.eclipselabs.mongoemf.junit.model.ModelPackage;
 import org.eclipselabs.mongoemf.junit.model.PrimaryObject;
 import org.eclipselabs.mongoemf.junit.model.TargetObject;
+import org.eclipselabs.mongoemf.junit.support.AnnotatedModel;
 import org.eclipselabs.mongoemf.junit.support.EChecker;
+import org.eclipselabs.mongoemf.junit.support.MongoConfigurator;
 import org.eclipselabs.mongoemf.junit.support.TestHarness;
+import org.eclipselabs.mongoemf.util.ExternalValues;
 import org.junit.Test;
 
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
 /**
  * @author bhunt
  * 
@@ -192,4 +208,276 @@ public class TestMongoEmfAttributes extends TestHarness
 		PrimaryObject actual = EChecker.checkObject(primaryObject, excludeFeatures, createResourceSet());
 		assertThat(actual.getFeatureMapAttributeCollection().size(), is(2));
 	}
+
+	@Test
+	public void testPackedArrayAttribute() throws IOException
+	{
+		// Setup : Create an object with packed numeric array attributes.
+
+		EObject samples = EcoreUtil.create(AnnotatedModel.SAMPLES);
+		@SuppressWarnings("unchecked")
+		EList<Integer> ints = (EList<Integer>) samples.eGet(AnnotatedModel.SAMPLES__INTS);
+		@SuppressWarnings("unchecked")
+		EList<Double> doubles = (EList<Double>) samples.eGet(AnnotatedModel.SAMPLES__DOUBLES);
+
+		for (int i = 0; i < 1000; i++)
+		{
+			ints.add(i % 10);
+			doubles.add(i / 10.0);
+		}
+
+		// Test : Store the object to MongoDB
+
+		saveObject(AnnotatedModel.register(createResourceSet()), samples);
+
+		// Verify : Check that the arrays were stored as bytes and read back in order.
+
+		DBObject dbObject = getCollection(AnnotatedModel.SAMPLES).findOne();
+		assertThat(dbObject.get("ints"), is(instanceOf(byte[].class)));
+		assertThat(((byte[]) dbObject.get("ints")).length, is(4000));
+		assertThat(dbObject.get("doubles"), is(instanceOf(byte[].class)));
+
+		ResourceSet resourceSet = AnnotatedModel.register(createResourceSet());
+		EObject actual = resourceSet.getResource(samples.eResource().getURI(), true).getContents().get(0);
+		assertThat(actual.eGet(AnnotatedModel.SAMPLES__INTS), is((Object) ints));
+		assertThat(actual.eGet(AnnotatedModel.SAMPLES__DOUBLES), is((Object) doubles));
+	}
+
+	@Test
+	public void testPackedArrayAttributeWithNull() throws IOException
+	{
+		// Setup : Create an object with a packed array attribute holding a null value.
+
+		EObject samples = EcoreUtil.create(AnnotatedModel.SAMPLES);
+		@SuppressWarnings("unchecked")
+		EList<Integer> counts = (EList<Integer>) samples.eGet(AnnotatedModel.SAMPLES__COUNTS);
+		counts.addAll(Arrays.asList(1, null, 3));
+
+		// Test : Store the object to MongoDB
+
+		saveObject(AnnotatedModel.register(createResourceSet()), samples);
+
+		// Verify : Check that the array was stored unpacked and read back with the null value.
+
+		DBObject dbObject = getCollection(AnnotatedModel.SAMPLES).findOne();
+		assertThat(dbObject.get("counts"), is(instanceOf(List.class)));
+
+		ResourceSet resourceSet = AnnotatedModel.register(createResourceSet());
+		EObject actual = resourceSet.getResource(samples.eResource().getURI(), true).getContents().get(0);
+		assertThat(actual.eGet(AnnotatedModel.SAMPLES__COUNTS), is((Object) counts));
+	}
+
+	@Test
+	public void testExternalAttribute() throws IOException
+	{
+		// Setup : Create an object with an externally stored attribute.
+
+		byte[] data = new byte[100000];
+		new Random().nextBytes(data);
+
+		EObject blob = EcoreUtil.create(AnnotatedModel.BLOB);
+		blob.eSet(AnnotatedModel.BLOB__NAME, "junit");
+		blob.eSet(AnnotatedModel.BLOB__DATA, data);
+
+		// Test : Store the object to MongoDB
+
+		saveObject(AnnotatedModel.register(createResourceSet()), blob);
+
+		// Verify : Check that the document only holds a handle and the value is read on demand.
+
+		DBCollection collection = getCollection(AnnotatedModel.BLOB);
+		DBObject dbObject = collection.findOne();
+		assertTrue(ExternalValues.isHandle(dbObject.get("data")));
+		assertThat(collection.getDB().getCollection(collection.getName() + ".files").count(), is(1L));
+
+		ResourceSet resourceSet = AnnotatedModel.register(createResourceSet());
+		Resource resource = resourceSet.getResource(blob.eResource().getURI(), true);
+		EObject actual = resource.getContents().get(0);
+		assertThat(actual.eGet(AnnotatedModel.BLOB__DATA), is(nullValue()));
+
+		// Verify : Check that saving without reading the value keeps the handle.
+
+		actual.eSet(AnnotatedModel.BLOB__NAME, "updated");
+		resource.save(null);
+		assertThat(collection.findOne().get("data"), is(dbObject.get("data")));
+
+		assertThat((byte[]) ExternalValues.resolve(actual, AnnotatedModel.BLOB__DATA), is(data));
+	}
+
+	@Test
+	public void testExternalAttributeReplacedAndDeleted() throws IOException
+	{
+		// Setup : Store an object with an externally stored attribute.
+
+		byte[] data = new byte[100000];
+		new Random().nextBytes(data);
+
+		EObject blob = EcoreUtil.create(AnnotatedModel.BLOB);
+		blob.eSet(AnnotatedModel.BLOB__DATA, data);
+		saveObject(AnnotatedModel.register(createResourceSet()), blob);
+
+		DBCollection collection = getCollection(AnnotatedModel.BLOB);
+		DBCollection files = collection.getDB().getCollection(collection.getName() + ".files");
+		DBCollection chunks = collection.getDB().getCollection(collection.getName() + ".chunks");
+
+		// Test : Replace the value and save the object
+
+		byte[] replacement = new byte[1000];
+		new Random().nextBytes(replacement);
+		blob.eSet(AnnotatedModel.BLOB__DATA, replacement);
+		blob.eResource().save(null);
+
+		// Verify : Check that only the file of the new value is left
+
+		assertThat(files.count(), is(1L));
+		assertThat(((Number) files.findOne().get("length")).longValue(), is(1000L));
+		assertThat(chunks.count(), is(1L));
+
+		// Test : Delete the object
+
+		blob.eResource().delete(Collections.singletonMap(Options.OPTION_EXTERNAL_STORAGE, Boolean.TRUE));
+
+		// Verify : Check that the file of the deleted object was removed
+
+		assertThat(files.count(), is(0L));
+		assertThat(chunks.count(), is(0L));
+	}
+
+	@Test
+	public void testThresholdExternalValueReplaced() throws IOException
+	{
+		// Setup : Store an object with a value that reaches the external storage threshold.
+
+		char[] name = new char[MongoConfigurator.EXTERNAL_STORAGE_THRESHOLD];
+		Arrays.fill(name, 'a');
+
+		EObject blob = EcoreUtil.create(AnnotatedModel.BLOB);
+		blob.eSet(AnnotatedModel.BLOB__NAME, new String(name));
+		saveObject(AnnotatedModel.register(createResourceSet()), blob);
+
+		DBCollection collection = getCollection(AnnotatedModel.BLOB);
+		DBCollection files = collection.getDB().getCollection(collection.getName() + ".files");
+		assertTrue(ExternalValues.isHandle(collection.findOne().get("name")));
+
+		// Test : Load the object, which reads the value, and save it twice with a new value
+
+		ResourceSet resourceSet = AnnotatedModel.register(createResourceSet());
+		Resource resource = resourceSet.getResource(blob.eResource().getURI(), true);
+		EObject actual = resource.getContents().get(0);
+
+		name[0] = 'b';
+		actual.eSet(AnnotatedModel.BLOB__NAME, new String(name));
+		resource.save(null);
+
+		name[0] = 'c';
+		actual.eSet(AnnotatedModel.BLOB__NAME, new String(name));
+		resource.save(null);
+
+		// Verify : Check that only the file of the last value is left
+
+		assertThat(files.count(), is(1L));
+		EObject reloaded = AnnotatedModel.register(createResourceSet()).getResource(blob.eResource().getURI(), true).getContents().get(0);
+		assertThat(reloaded.eGet(AnnotatedModel.BLOB__NAME), is((Object) new String(name)));
+
+		// Test : Save a value below the threshold
+
+		actual.eSet(AnnotatedModel.BLOB__NAME, "junit");
+		resource.save(null);
+
+		// Verify : Check that the file of the replaced value was removed
+
+		assertThat(collection.findOne().get("name"), is((Object) "junit"));
+		assertThat(files.count(), is(0L));
+	}
+
+	@Test
+	public void testCompressedAttribute() throws IOException
+	{
+		// Setup : Create an object with a large compressible string.
+
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < 10000; i++)
+			text.append("junit ");
+
+		EObject blob = EcoreUtil.create(AnnotatedModel.BLOB);
+		blob.eSet(AnnotatedModel.BLOB__TEXT, text.toString());
+
+		// Test : Store the object to MongoDB
+
+		saveObject(AnnotatedModel.register(createResourceSet()), blob);
+
+		// Verify : Check that the string was stored compressed and read back intact.
+
+		DBObject dbObject = getCollection(AnnotatedModel.BLOB).findOne();
+		assertThat(dbObject.get("text"), is(instanceOf(Binary.class)));
+		assertTrue(((Binary) dbObject.get("text")).length() < text.length() / 4);
+
+		ResourceSet resourceSet = AnnotatedModel.register(createResourceSet());
+		EObject actual = resourceSet.getResource(blob.eResource().getURI(), true).getContents().get(0);
+		assertThat((String) actual.eGet(AnnotatedModel.BLOB__TEXT), is(text.toString()));
+	}
+
+	@Test
+	public void testIncompressibleAttribute() throws IOException
+	{
+		// Setup : Create an object with random bytes that deflating makes larger.
+
+		byte[] bytes = new byte[1000];
+		new Random(0).nextBytes(bytes);
+
+		EObject blob = EcoreUtil.create(AnnotatedModel.BLOB);
+		blob.eSet(AnnotatedModel.BLOB__BYTES, bytes);
+
+		// Test : Store the object to MongoDB
+
+		saveObject(AnnotatedModel.register(createResourceSet()), blob);
+
+		// Verify : Check that the bytes were stored uncompressed and read back intact.
+
+		DBObject dbObject = getCollection(AnnotatedModel.BLOB).findOne();
+		assertThat(dbObject.get("bytes"), is(instanceOf(byte[].class)));
+
+		ResourceSet resourceSet = AnnotatedModel.register(createResourceSet());
+		EObject actual = resourceSet.getResource(blob.eResource().getURI(), true).getContents().get(0);
+		assertTrue(Arrays.equals((byte[]) actual.eGet(AnnotatedModel.BLOB__BYTES), bytes));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBinaryContainmentReference() throws IOException
+	{
+		// Setup : Create a tree with nested nodes.
+
+		EObject tree = EcoreUtil.create(AnnotatedModel.TREE);
+		tree.eSet(AnnotatedModel.TREE__NAME, "junit");
+
+		for (int i = 0; i < 3; i++)
+		{
+			EObject root = EcoreUtil.create(AnnotatedModel.NODE);
+			root.eSet(AnnotatedModel.NODE__LABEL, "root " + i);
+			((EList<EObject>) tree.eGet(AnnotatedModel.TREE__ROOTS)).add(root);
+
+			for (int j = 0; j < 3; j++)
+			{
+				EObject child = EcoreUtil.create(AnnotatedModel.NODE);
+				child.eSet(AnnotatedModel.NODE__LABEL, "child " + i + "." + j);
+				((EList<EObject>) root.eGet(AnnotatedModel.NODE__CHILDREN)).add(child);
+			}
+		}
+
+		// Test : Store the object to MongoDB
+
+		saveObject(AnnotatedModel.register(createResourceSet()), tree);
+
+		// Verify : Check that the subtree was stored as a single binary value and read back intact.
+
+		DBObject dbObject = getCollection(AnnotatedModel.TREE).findOne();
+		assertThat(dbObject.get("roots"), is(instanceOf(Binary.class)));
+
+		ResourceSet resourceSet = AnnotatedModel.register(createResourceSet());
+		EObject actual = resourceSet.getResource(tree.eResource().getURI(), true).getContents().get(0);
+		assertTrue(EcoreUtil.equals(tree, actual));
+		assertThat(((EList<EObject>) actual.eGet(AnnotatedModel.TREE__ROOTS)).get(1).eContainer(), is(actual));
+	}
 }
@@ -22,11 +22,15 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
@@ -37,12 +41,15 @@ import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.xmi.XMIResource;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
 import org.eclipse.emf.ecore.xmi.impl.XMLResourceFactoryImpl;
 import org.eclipselabs.emodeling.ECollection;
+import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.MetadataProbe;
 import org.eclipselabs.mongoemf.MongoUtils;
 import org.eclipselabs.mongoemf.Options;
 import org.eclipselabs.mongoemf.junit.model.ETypes;
@@ -52,10 +59,18 @@ import org.eclipselabs.mongoemf.junit.model.PrimaryObject;
 import org.eclipselabs.mongoemf.junit.model.TargetObject;
 import org.eclipselabs.mongoemf.junit.support.EChecker;
 import org.eclipselabs.mongoemf.junit.support.TestHarness;
+import org.eclipselabs.mongoemf.util.BulkSave;
+import org.eclipselabs.mongoemf.util.CollectionSnapshot;
+import org.eclipselabs.mongoemf.util.DocumentCache;
+import org.eclipselabs.mongoemf.util.ResourceRefresh;
+import org.eclipselabs.mongoemf.util.WriteBehindQueue;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
 import com.mongodb.WriteConcern;
 
 /**
@@ -157,6 +172,205 @@ public class TestMongoEmfBasics extends TestHarness
 		assertFalse(targetObject.eResource().getResourceSet().getURIConverter().exists(URI.createURI("mongodb://host:8080/junit/junit/id"), null));
 	}
 
+	@Test
+	public void testProbe() throws IOException
+	{
+		// Setup : Store two target objects
+
+		ResourceSet resourceSet = createResourceSet();
+		ArrayList<URI> uris = new ArrayList<URI>();
+
+		for (int i = 0; i < 2; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			saveObject(resourceSet, targetObject);
+			uris.add(targetObject.eResource().getURI());
+		}
+
+		URI missingURI = createObjectURI(ModelPackage.Literals.TARGET_OBJECT, new ObjectId());
+		uris.add(missingURI);
+
+		// Test : Probe the URIs of the objects along with a URI of an object that does not exist
+
+		MetadataProbe probe = (MetadataProbe) resourceSet.getURIConverter().getURIHandler(missingURI);
+		Map<URI, Long> timeStamps = probe.probe(uris, null);
+
+		// Verify : Check that the time stamps of the stored objects were returned
+
+		assertThat(timeStamps.size(), is(2));
+		assertFalse(timeStamps.containsKey(missingURI));
+
+		for (Resource resource : resourceSet.getResources())
+			assertThat(timeStamps.get(resource.getURI()), is(resource.getTimeStamp()));
+
+		assertThat(resourceSet.getURIConverter().timeStamp(uris.get(0), null), is(resourceSet.getResources().get(0).getTimeStamp()));
+	}
+
+	@Test
+	public void testRefresh() throws IOException, InterruptedException
+	{
+		// Setup : Store a target object and load it into another resource set
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit");
+		saveObject(targetObject);
+
+		Resource resource = createResourceSet().getResource(targetObject.eResource().getURI(), true);
+		EObject loaded = resource.getContents().get(0);
+
+		// Test : Refresh the resource before and after the object is changed
+
+		boolean unchangedRefreshed = ResourceRefresh.refresh(resource, null);
+		Thread.sleep(10);
+		targetObject.setSingleAttribute("junit updated");
+		targetObject.eResource().save(null);
+		boolean changedRefreshed = ResourceRefresh.refresh(resource, null);
+
+		// Verify : Check that the contents were kept while unchanged and reloaded after the change
+
+		assertFalse(unchangedRefreshed);
+		assertTrue(changedRefreshed);
+		assertTrue(loaded.eIsProxy());
+		assertThat(((TargetObject) resource.getContents().get(0)).getSingleAttribute(), is("junit updated"));
+		assertThat(resource.getTimeStamp(), is(targetObject.eResource().getTimeStamp()));
+	}
+
+	@Test
+	public void testDocumentCache() throws IOException
+	{
+		// Setup : Store a target object and create a cache shared by the resource sets
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit");
+		saveObject(targetObject);
+
+		DocumentCache documentCache = new DocumentCache(1024 * 1024, 60000);
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_DOCUMENT_CACHE, documentCache);
+
+		// Test : Load the object into two resource sets, then update it and load it again
+
+		URI uri = targetObject.eResource().getURI();
+		TargetObject first = (TargetObject) loadResource(uri, options).getContents().get(0);
+		TargetObject second = (TargetObject) loadResource(uri, options).getContents().get(0);
+
+		targetObject.setSingleAttribute("junit updated");
+		targetObject.eResource().save(options);
+		TargetObject third = (TargetObject) loadResource(uri, options).getContents().get(0);
+
+		// Verify : Check that the second load was served from the cache and the save invalidated it
+
+		assertThat(first.getSingleAttribute(), is("junit"));
+		assertThat(second.getSingleAttribute(), is("junit"));
+		assertThat(third.getSingleAttribute(), is("junit updated"));
+		assertThat(documentCache.getHitCount(), is(1L));
+		assertThat(documentCache.getMissCount(), is(2L));
+		assertTrue(documentCache.getSize() > 0);
+	}
+
+	@Test
+	public void testDocumentCacheDeferredWriteAndDelete() throws IOException
+	{
+		// Setup : Store a target object, cache it, and create a write behind queue
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit");
+		saveObject(targetObject);
+
+		DocumentCache documentCache = new DocumentCache(1024 * 1024, 60000);
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_DOCUMENT_CACHE, documentCache);
+
+		URI uri = targetObject.eResource().getURI();
+		loadResource(uri, options);
+
+		WriteBehindQueue queue = new WriteBehindQueue(60000, null);
+		HashMap<String, Object> saveOptions = new HashMap<String, Object>(options);
+		saveOptions.put(Options.OPTION_DEFERRED_WRITER, queue);
+
+		try
+		{
+			// Test : Update the object through the queue, loading it before and after the queue is flushed
+
+			targetObject.setSingleAttribute("junit updated");
+			targetObject.eResource().save(saveOptions);
+			TargetObject beforeFlush = (TargetObject) loadResource(uri, options).getContents().get(0);
+
+			queue.flush();
+			TargetObject afterFlush = (TargetObject) loadResource(uri, options).getContents().get(0);
+
+			// Verify : Check that the cached document was only removed once the object was written
+
+			assertThat(beforeFlush.getSingleAttribute(), is("junit"));
+			assertThat(afterFlush.getSingleAttribute(), is("junit updated"));
+			assertThat(documentCache.getMissCount(), is(2L));
+		}
+		finally
+		{
+			queue.shutdown();
+		}
+
+		// Test : Delete the object with a query
+
+		URI queryURI = createCollectionURI(targetObject.eClass()).appendQuery(URI.encodeQuery("singleAttribute=='junit updated'", false));
+		createResourceSet().getURIConverter().delete(queryURI, options);
+
+		// Verify : Check that the document of the deleted object was removed from the cache
+
+		assertThat(documentCache.getSize(), is(0L));
+	}
+
+	@Test
+	public void testCollectionSnapshot() throws IOException
+	{
+		// Setup : Store two target objects and write a snapshot of their collection
+
+		TargetObject first = ModelFactory.eINSTANCE.createTargetObject();
+		first.setSingleAttribute("first");
+		saveObject(first);
+
+		TargetObject second = ModelFactory.eINSTANCE.createTargetObject();
+		second.setSingleAttribute("second");
+		saveObject(second);
+
+		File file = new File(temporaryFolder.getRoot(), "TargetObject.snapshot");
+		int initialCount = new CollectionSnapshot(file).sync(getCollection(ModelPackage.Literals.TARGET_OBJECT));
+
+		// Test : Store a third object, then sync a new snapshot from the file and warm a cache from it
+
+		TargetObject third = ModelFactory.eINSTANCE.createTargetObject();
+		third.setSingleAttribute("third");
+		saveObject(third);
+
+		CollectionSnapshot snapshot = new CollectionSnapshot(file);
+		int deltaCount = snapshot.sync(getCollection(ModelPackage.Literals.TARGET_OBJECT));
+
+		DocumentCache documentCache = new DocumentCache(1024 * 1024, 60000);
+		snapshot.warm(documentCache, getCollection(ModelPackage.Literals.TARGET_OBJECT), createCollectionURI(ModelPackage.Literals.TARGET_OBJECT));
+
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_DOCUMENT_CACHE, documentCache);
+		TargetObject loaded = (TargetObject) loadResource(first.eResource().getURI(), options).getContents().get(0);
+
+		TargetObject fourth = ModelFactory.eINSTANCE.createTargetObject();
+		fourth.setSingleAttribute("fourth");
+		saveObject(fourth);
+		snapshot.sync(getCollection(ModelPackage.Literals.TARGET_OBJECT));
+
+		// Verify : Check that the new documents were read, the object was loaded from the snapshot,
+		// and the snapshot could be written again while mapped
+
+		assertThat(initialCount, is(2));
+		assertTrue(deltaCount >= 1);
+		assertThat(snapshot.getSize(), is(4));
+		assertThat(snapshot.getDocuments(getCollection(ModelPackage.Literals.TARGET_OBJECT)).size(), is(4));
+		assertThat(loaded.getSingleAttribute(), is("first"));
+		assertThat(documentCache.getHitCount(), is(1L));
+		assertThat(documentCache.getMissCount(), is(0L));
+		assertThat(new CollectionSnapshot(file).getDocuments(getCollection(ModelPackage.Literals.TARGET_OBJECT)).size(), is(4));
+	}
+
 	@Test
 	public void testLoadNonexistentResource()
 	{
@@ -207,6 +421,88 @@ public class TestMongoEmfBasics extends TestHarness
 		EChecker.checkObject(eTypes, createResourceSet());
 	}
 
+	@Test
+	public void testTypedConverterStorage() throws IOException
+	{
+		// Setup
+
+		ETypes eTypes = ModelFactory.eINSTANCE.createETypes();
+		eTypes.setEBigInteger(BigInteger.valueOf(42));
+		eTypes.setEChar('j');
+
+		// Test
+
+		saveObject(eTypes);
+
+		// Verify : Check that the values are stored as native types and can be read back
+
+		DBObject dbObject = getCollection(eTypes.eClass()).findOne();
+		assertThat(dbObject.get("eBigInteger"), is(instanceOf(String.class)));
+		assertThat(dbObject.get("eChar"), is(instanceOf(Integer.class)));
+		EChecker.checkObject(eTypes, createResourceSet());
+	}
+
+	@Test
+	public void testBigIntegerOrder() throws IOException
+	{
+		// Setup : Store big integers of both signs and of different lengths out of order
+
+		String[] values = { "12345678901234567890123", "-5", "0", "-98765432109876543210", "7", "-6", "10" };
+
+		for (String value : values)
+		{
+			ETypes eTypes = ModelFactory.eINSTANCE.createETypes();
+			eTypes.setEBigInteger(new BigInteger(value));
+			saveObject(eTypes);
+		}
+
+		// Test : Sort the documents by the stored values
+
+		DBCursor cursor = getCollection(ModelPackage.Literals.ETYPES).find().sort(new BasicDBObject("eBigInteger", 1));
+		ArrayList<BigInteger> sorted = new ArrayList<BigInteger>();
+		ResourceSet resourceSet = createResourceSet();
+
+		while (cursor.hasNext())
+		{
+			Object id = cursor.next().get(Keywords.ID_KEY);
+			sorted.add(((ETypes) resourceSet.getResource(createObjectURI(ModelPackage.Literals.ETYPES, id), true).getContents().get(0)).getEBigInteger());
+		}
+
+		// Verify : Check that the documents are in the order of the values
+
+		ArrayList<BigInteger> expected = new ArrayList<BigInteger>();
+
+		for (String value : values)
+			expected.add(new BigInteger(value));
+
+		Collections.sort(expected);
+		assertThat(sorted, is(expected));
+	}
+
+	@Test
+	public void testTypedConverterLegacyStrings() throws IOException
+	{
+		// Setup : Store values as strings the way the default converter does
+
+		ObjectId id = new ObjectId();
+		BasicDBObject dbObject = new BasicDBObject(Keywords.ID_KEY, id);
+		dbObject.put(Keywords.ECLASS_KEY, EcoreUtil.getURI(ModelPackage.Literals.ETYPES).toString());
+		dbObject.put("eBigInteger", "12345678901234567890123");
+		dbObject.put("eChar", "j");
+		getCollection(ModelPackage.Literals.ETYPES).insert(dbObject);
+
+		// Test
+
+		ResourceSet resourceSet = createResourceSet();
+		Resource resource = resourceSet.getResource(createObjectURI(ModelPackage.Literals.ETYPES, id), true);
+
+		// Verify
+
+		ETypes eTypes = (ETypes) resource.getContents().get(0);
+		assertThat(eTypes.getEBigInteger(), is(new BigInteger("12345678901234567890123")));
+		assertThat(eTypes.getEChar(), is('j'));
+	}
+
 	@Test
 	public void testTargetObjectWithObjectId() throws IOException
 	{
@@ -247,6 +543,206 @@ public class TestMongoEmfBasics extends TestHarness
 		assertThat(EChecker.getID(actual), is(id));
 	}
 
+	@Test
+	public void testBulkSave() throws IOException
+	{
+		// Setup : Store one target object, then modify it and create three new ones in the same resource set
+
+		ResourceSet resourceSet = createResourceSet();
+		TargetObject existing = ModelFactory.eINSTANCE.createTargetObject();
+		existing.setSingleAttribute("junit");
+		saveObject(resourceSet, existing);
+		existing.setSingleAttribute("junit updated");
+
+		for (int i = 0; i < 3; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			Resource resource = resourceSet.createResource(createCollectionURI(targetObject.eClass()));
+			resource.getContents().add(targetObject);
+		}
+
+		// Test : Save all of the resources at once
+
+		List<Resource> resources = BulkSave.saveAll(resourceSet, null);
+
+		// Verify : Check that the new objects were given ids and all of the objects were stored
+
+		assertThat(resources.size(), is(4));
+		assertThat(getCollection(existing.eClass()).getCount(), is(4L));
+
+		for (Resource resource : resources)
+		{
+			assertThat(resource.getURI().lastSegment().isEmpty(), is(false));
+			EChecker.checkObject((TargetObject) resource.getContents().get(0), createResourceSet());
+		}
+	}
+
+	@Test
+	public void testBulkSaveWriteFailure() throws IOException
+	{
+		// Setup : Store a primary object, then create another one with the same id in a new resource set
+
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY, Boolean.TRUE);
+		options.put(Options.OPTION_WRITE_CONCERN, WriteConcern.SAFE);
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setIdAttribute("duplicate");
+		saveObject(primaryObject, createCollectionURI(primaryObject.eClass()), options);
+
+		ResourceSet resourceSet = createResourceSet();
+		PrimaryObject duplicate = ModelFactory.eINSTANCE.createPrimaryObject();
+		duplicate.setIdAttribute("duplicate");
+		Resource resource = resourceSet.createResource(createCollectionURI(duplicate.eClass()));
+		resource.getContents().add(duplicate);
+		long timeStamp = resource.getTimeStamp();
+
+		// Test : Save all of the resources at once
+
+		IOException failure = null;
+
+		try
+		{
+			BulkSave.saveAll(resourceSet, options);
+		}
+		catch (IOException e)
+		{
+			failure = e;
+		}
+
+		// Verify : Check that the failed insert was reported and the resource still needs to be saved
+
+		assertThat(failure, is(notNullValue()));
+		assertThat(resource.isModified(), is(true));
+		assertThat(resource.getTimeStamp(), is(timeStamp));
+		assertThat(getCollection(duplicate.eClass()).getCount(), is(1L));
+	}
+
+	@Test
+	public void testWriteBehindSave() throws IOException
+	{
+		// Setup : Create a target object and a write behind queue that holds saves back long enough to coalesce them
+
+		WriteBehindQueue queue = new WriteBehindQueue(60000, null);
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_DEFERRED_WRITER, queue);
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		Resource resource = createResourceSet().createResource(createCollectionURI(targetObject.eClass()));
+		resource.getContents().add(targetObject);
+
+		try
+		{
+			// Test : Save the object several times
+
+			for (int i = 0; i < 3; i++)
+			{
+				targetObject.setSingleAttribute("junit " + i);
+				resource.save(options);
+			}
+
+			// Verify : Check that nothing was written until the queue was flushed, and that only the last save was written
+
+			assertThat(getCollection(targetObject.eClass()).getCount(), is(0L));
+			assertThat(queue.getQueuedCount(), is(1));
+			assertThat(queue.getCoalescedCount(), is(2L));
+
+			queue.flush();
+
+			assertThat(getCollection(targetObject.eClass()).getCount(), is(1L));
+			EChecker.checkObject(targetObject, createResourceSet());
+		}
+		finally
+		{
+			queue.shutdown();
+		}
+	}
+
+	@Test
+	public void testWriteBehindCapacity() throws IOException
+	{
+		// Setup : Create a write behind queue that holds a single object
+
+		WriteBehindQueue queue = new WriteBehindQueue(60000, WriteConcern.SAFE, 1);
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_DEFERRED_WRITER, queue);
+
+		try
+		{
+			// Test : Save two objects
+
+			TargetObject targetObject = null;
+
+			for (int i = 0; i < 2; i++)
+			{
+				targetObject = ModelFactory.eINSTANCE.createTargetObject();
+				targetObject.setSingleAttribute("junit " + i);
+				Resource resource = createResourceSet().createResource(createCollectionURI(targetObject.eClass()));
+				resource.getContents().add(targetObject);
+				resource.save(options);
+			}
+
+			// Verify : Check that the second save waited for the first object to be written
+
+			assertThat(getCollection(targetObject.eClass()).getCount(), is(1L));
+			assertThat(queue.getQueuedCount(), is(1));
+		}
+		finally
+		{
+			queue.shutdown();
+		}
+	}
+
+	@Test
+	public void testWriteBehindFailure() throws IOException
+	{
+		// Setup : Store a primary object, and create a write behind queue
+
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY, Boolean.TRUE);
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setIdAttribute("duplicate");
+		saveObject(primaryObject, createCollectionURI(primaryObject.eClass()), options);
+
+		WriteBehindQueue queue = new WriteBehindQueue(60000, WriteConcern.SAFE);
+		options.put(Options.OPTION_DEFERRED_WRITER, queue);
+
+		try
+		{
+			// Test : Queue another object with the same id and flush the queue
+
+			PrimaryObject duplicate = ModelFactory.eINSTANCE.createPrimaryObject();
+			duplicate.setIdAttribute("duplicate");
+			saveObject(duplicate, createCollectionURI(duplicate.eClass()), options);
+
+			WriteBehindQueue.WriteBehindException failure = null;
+
+			try
+			{
+				queue.flush();
+			}
+			catch (WriteBehindQueue.WriteBehindException e)
+			{
+				failure = e;
+			}
+
+			// Verify : Check that the failed write was reported once along with its object
+
+			assertThat(failure, is(notNullValue()));
+			assertThat(failure.getErrors().size(), is(1));
+			assertThat(failure.getFailedObjects().size(), is(1));
+			assertThat(failure.getFailedObjects().get(0).get(Keywords.ID_KEY), is((Object) "duplicate"));
+
+			queue.flush();
+		}
+		finally
+		{
+			queue.shutdown();
+		}
+	}
+
 	@Test
 	public void testTargetObjectWithWriteConcern() throws IOException
 	{
@@ -580,4 +1076,11 @@ public class TestMongoEmfBasics extends TestHarness
 // new MongoURIHandlerImpl().createInputStream(URI.createURI("mongodb://localhost/junit/junit/id"),
 // Collections.emptyMap()).read();
 	}
+
+	private Resource loadResource(URI uri, Map<String, Object> options) throws IOException
+	{
+		Resource resource = createResourceSet().createResource(uri);
+		resource.load(options);
+		return resource;
+	}
 }
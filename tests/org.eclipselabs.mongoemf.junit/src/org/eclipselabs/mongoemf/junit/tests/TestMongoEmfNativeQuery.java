@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.junit.tests;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipselabs.emodeling.ECollection;
+import org.eclipselabs.mongoemf.Options;
+import org.eclipselabs.mongoemf.junit.model.ModelFactory;
+import org.eclipselabs.mongoemf.junit.model.ModelPackage;
+import org.eclipselabs.mongoemf.junit.model.TargetObject;
+import org.eclipselabs.mongoemf.junit.support.TestHarness;
+import org.eclipselabs.mongoemf.model.MongoQueryResult;
+import org.eclipselabs.mongoemf.query.mongodb.NativeQueryEngine;
+import org.junit.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+
+/**
+ * @author bhunt
+ *
+ */
+public class TestMongoEmfNativeQuery extends TestHarness
+{
+	@Test
+	public void testPipeline() throws IOException
+	{
+		// Setup : Store three target objects
+
+		saveTargetObjects();
+
+		// Test : Run a pipeline that outputs the documents of two of the objects
+
+		ECollection eCollection = query("{\"pipeline\" : [{\"$match\" : {\"singleAttribute\" : {\"$ne\" : \"b\"}}}], \"sort\" : {\"singleAttribute\" : 1}}");
+
+		// Verify : Check that the documents were built into objects
+
+		assertThat(eCollection.getValues().size(), is(2));
+		assertThat(eCollection.getValues().get(0), is(instanceOf(TargetObject.class)));
+		assertThat(((TargetObject) eCollection.getValues().get(0)).getSingleAttribute(), is("a"));
+		assertThat(((TargetObject) eCollection.getValues().get(1)).getSingleAttribute(), is("c"));
+	}
+
+	@Test
+	public void testPipelineOutput() throws IOException
+	{
+		// Setup : Store three target objects
+
+		saveTargetObjects();
+
+		// Test : Run a pipeline that computes the attribute, and one that groups the documents
+
+		ECollection computed = query("{\"pipeline\" : [{\"$project\" : {\"_eClass\" : 1, \"singleAttribute\" : {\"$concat\" : [\"$singleAttribute\", \"!\"]}}}], \"sort\" : {\"singleAttribute\" : 1}}");
+		EObject grouped = load("{\"pipeline\" : [{\"$group\" : {\"_id\" : null, \"count\" : {\"$sum\" : 1}}}]}");
+
+		// Verify : Check that the objects hold the computed values and the groups are returned as is
+
+		assertThat(computed.getValues().size(), is(3));
+		assertThat(computed.getValues().get(0).eIsProxy(), is(false));
+		assertThat(((TargetObject) computed.getValues().get(0)).getSingleAttribute(), is("a!"));
+		assertThat(grouped, is(instanceOf(MongoQueryResult.class)));
+		assertThat(((MongoQueryResult) grouped).getGroups().size(), is(1));
+		assertThat(((Number) ((MongoQueryResult) grouped).getGroups().get(0).get("count")).intValue(), is(3));
+	}
+
+	@Test
+	public void testHintAndSkip() throws IOException
+	{
+		// Setup : Store three target objects and index their attribute
+
+		saveTargetObjects();
+		getCollection(ModelPackage.Literals.TARGET_OBJECT).ensureIndex(new BasicDBObject("singleAttribute", 1));
+
+		// Test : Skip the first object hinting the index by name and by key pattern, with numbers
+		// that the JSON parser returns as doubles
+
+		ECollection byName = query("{\"sort\" : {\"singleAttribute\" : 1}, \"skip\" : 1.0, \"batchSize\" : 2.0, \"hint\" : \"singleAttribute_1\"}");
+		ECollection byKeyPattern = query("{\"sort\" : {\"singleAttribute\" : 1}, \"skip\" : 1, \"hint\" : {\"singleAttribute\" : 1}}");
+
+		// Verify : Check that the first object was skipped
+
+		assertThat(byName.getValues().size(), is(2));
+		assertThat(((TargetObject) byName.getValues().get(0)).getSingleAttribute(), is("b"));
+		assertThat(((TargetObject) byName.getValues().get(1)).getSingleAttribute(), is("c"));
+		assertThat(byKeyPattern.getValues().size(), is(2));
+		assertThat(((TargetObject) byKeyPattern.getValues().get(0)).getSingleAttribute(), is("b"));
+	}
+
+	@Test
+	public void testPipelineMaxTimeMS() throws IOException
+	{
+		// Setup : Store three target objects and profile every operation
+
+		saveTargetObjects();
+		DB db = getCollection(ModelPackage.Literals.TARGET_OBJECT).getDB();
+		db.command(new BasicDBObject("profile", 2));
+
+		// Test : Run a pipeline with a time limit
+
+		try
+		{
+			query("{\"pipeline\" : [{\"$match\" : {}}], \"maxTimeMS\" : 60000}");
+		}
+		finally
+		{
+			db.command(new BasicDBObject("profile", 0));
+		}
+
+		// Verify : Check that the time limit was passed with the aggregate command
+
+		BasicDBObject profileQuery = new BasicDBObject("command.aggregate", ModelPackage.Literals.TARGET_OBJECT.getName());
+		profileQuery.put("command.maxTimeMS", 60000);
+		assertThat(db.getCollection("system.profile").count(profileQuery), is(1L));
+	}
+
+	private void saveTargetObjects() throws IOException
+	{
+		for (String value : new String[] { "c", "a", "b" })
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute(value);
+			saveObject(targetObject);
+		}
+	}
+
+	private ECollection query(String query)
+	{
+		return (ECollection) load(query);
+	}
+
+	private EObject load(String query)
+	{
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_ENGINE, new NativeQueryEngine());
+		Resource resource = resourceSet.getResource(createCollectionURI(ModelPackage.Literals.TARGET_OBJECT).appendQuery(URI.encodeQuery(query, false)), true);
+		return resource.getContents().get(0);
+	}
+}
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 
+import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EStructuralFeature;
 import org.eclipse.emf.ecore.resource.Resource;
@@ -40,6 +41,9 @@ import org.eclipselabs.mongoemf.junit.support.EChecker;
 import org.eclipselabs.mongoemf.junit.support.TestHarness;
 import org.junit.Test;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+
 /**
  * @author bhunt
  * 
@@ -316,6 +320,123 @@ public class TestMongoEmfReferences extends TestHarness
 		assertTrue(actual.getSingleContainmentReferenceProxies().eIsProxy());
 	}
 
+	@Test
+	public void testCascadingDelete() throws IOException
+	{
+		// Setup : Create a primary object containing another primary object in its own document,
+		// which in turn contains target objects in other documents.
+
+		ResourceSet resourceSet = createResourceSet();
+
+		TargetObject targetObject1 = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject1.setSingleAttribute("one");
+		saveObject(resourceSet, targetObject1);
+
+		TargetObject targetObject2 = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject2.setSingleAttribute("two");
+		saveObject(resourceSet, targetObject2);
+
+		PrimaryObject child = ModelFactory.eINSTANCE.createPrimaryObject();
+		child.setName("child");
+		child.getMultipleContainmentReferenceProxies().add(targetObject1);
+		child.getMultipleContainmentReferenceProxies().add(targetObject2);
+		saveObject(resourceSet, child);
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+		primaryObject.setContainmentReferenceSameCollectioin(child);
+		saveObject(resourceSet, primaryObject);
+
+		// Test : Delete the primary object with the cascade option
+
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_CASCADE_DELETE, Boolean.TRUE);
+		resourceSet.getURIConverter().delete(primaryObject.eResource().getURI(), options);
+
+		// Verify : Check that all of the objects were deleted
+
+		assertThat(getCollection(primaryObject.eClass()).getCount(), is(0L));
+		assertThat(getCollection(targetObject1.eClass()).getCount(), is(0L));
+	}
+
+	@Test
+	public void testDeleteByQuery() throws IOException
+	{
+		// Setup : Create two target objects
+
+		ResourceSet resourceSet = createResourceSet();
+
+		TargetObject targetObject1 = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject1.setSingleAttribute("one");
+		saveObject(resourceSet, targetObject1);
+
+		TargetObject targetObject2 = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject2.setSingleAttribute("two");
+		saveObject(resourceSet, targetObject2);
+
+		// Test : Delete the objects matching a query
+
+		URI queryURI = createCollectionURI(targetObject1.eClass()).appendQuery(URI.encodeQuery("singleAttribute=='one'", false));
+		resourceSet.getURIConverter().delete(queryURI, new HashMap<String, Object>());
+
+		// Verify : Check that only the matching object was deleted
+
+		assertThat(getCollection(targetObject1.eClass()).getCount(), is(1L));
+		assertThat((String) getCollection(targetObject1.eClass()).findOne().get("singleAttribute"), is("two"));
+	}
+
+	@Test
+	public void testDeleteByQueryWithLimit() throws IOException
+	{
+		// Setup : Create three target objects, two of them matching the query
+
+		ResourceSet resourceSet = createResourceSet();
+
+		for (String value : new String[] { "one", "one", "two" })
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute(value);
+			saveObject(resourceSet, targetObject);
+		}
+
+		// Test : Delete one of the objects matching the query
+
+		URI queryURI = createCollectionURI(ModelPackage.Literals.TARGET_OBJECT).appendQuery(URI.encodeQuery("singleAttribute=='one' limit 1", false));
+		resourceSet.getURIConverter().delete(queryURI, new HashMap<String, Object>());
+
+		// Verify : Check that only one object was deleted
+
+		DBCollection collection = getCollection(ModelPackage.Literals.TARGET_OBJECT);
+		assertThat(collection.getCount(), is(2L));
+		assertThat(collection.getCount(new BasicDBObject("singleAttribute", "one")), is(1L));
+
+		// Test : Delete one object without a filter, which must be allowed explicitly
+
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_DELETE_UNFILTERED, Boolean.TRUE);
+		queryURI = createCollectionURI(ModelPackage.Literals.TARGET_OBJECT).appendQuery(URI.encodeQuery("limit 1", false));
+		resourceSet.getURIConverter().delete(queryURI, options);
+
+		// Verify : Check that only one more object was deleted
+
+		assertThat(collection.getCount(), is(1L));
+	}
+
+	@Test(expected = IOException.class)
+	public void testDeleteByQueryWithoutFilter() throws IOException
+	{
+		// Setup : Create a target object
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("one");
+		saveObject(targetObject);
+
+		// Test : Delete with a query that only has a limit
+
+		URI queryURI = createCollectionURI(targetObject.eClass()).appendQuery(URI.encodeQuery("limit 1", false));
+		createResourceSet().getURIConverter().delete(queryURI, new HashMap<String, Object>());
+	}
+
 	@Test
 	public void testFeatureMap() throws IOException
 	{
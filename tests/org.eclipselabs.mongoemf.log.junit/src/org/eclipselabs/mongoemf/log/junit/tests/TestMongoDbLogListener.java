@@ -15,12 +15,21 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipselabs.emodeling.ResourceSetFactory;
@@ -29,14 +38,19 @@ import org.eclipselabs.emodeling.log.LogLevel;
 import org.eclipselabs.emongo.MongoClientProvider;
 import org.eclipselabs.emongo.junit.util.MongoDatabase;
 import org.eclipselabs.eunit.junit.utils.ServiceLocator;
+import org.eclipselabs.mongoemf.log.MongoDbLogListener;
 import org.eclipselabs.mongoemf.log.junit.support.EChecker;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.log.LogReaderService;
 import org.osgi.service.log.LogService;
 
+import com.mongodb.DBObject;
+
 /**
  * @author bhunt
  * 
@@ -59,6 +73,8 @@ public class TestMongoDbLogListener
 	private LogService osgiLogService;
 	private ResourceSetFactory resourceSetFactory;
 	private ConfigurationAdmin configurationAdmin;
+	private CountDownLatch writerReleased;
+	private MongoDbLogListener listener;
 
 	@Before
 	public void setUp() throws IOException
@@ -84,6 +100,16 @@ public class TestMongoDbLogListener
 		config.update(properties);
 	}
 
+	@After
+	public void tearDown()
+	{
+		if (listener != null)
+		{
+			writerReleased.countDown();
+			listener.deactivate();
+		}
+	}
+
 	@Test
 	public void testLogDebug() throws InterruptedException, IOException
 	{
@@ -149,15 +175,262 @@ public class TestMongoDbLogListener
 		assertThat(logEntry, is(nullValue()));
 	}
 
+	@Test
+	public void testLogBatched() throws InterruptedException, IOException
+	{
+		Hashtable<String, Object> properties = new Hashtable<String, Object>();
+		properties.put("batchSize", 10);
+		properties.put("flushInterval", 100);
+		setLogLevel(LogLevel.ERROR, properties);
+		Thread.sleep(100);
+
+		for (int i = 0; i < 5; i++)
+			osgiLogService.log(LogService.LOG_ERROR, "batched");
+
+		Thread.sleep(500);
+		Collection<LogEntry> logEntries = EChecker.getObjects(createResourceSet(), "junit", DB_LOGS);
+		assertThat(logEntries.size(), is(5));
+
+		for (LogEntry entry : logEntries)
+			assertThat(entry.getMessage(), is("batched"));
+	}
+
+	@Test
+	public void testLogCoalesced() throws InterruptedException, IOException
+	{
+		Hashtable<String, Object> properties = new Hashtable<String, Object>();
+		properties.put("flushInterval", 50);
+		properties.put("coalesceWindow", 200);
+		setLogLevel(LogLevel.ERROR, properties);
+		Thread.sleep(100);
+
+		Exception exception = new IllegalStateException("failed");
+		long start = System.currentTimeMillis();
+
+		for (int i = 0; i < 5; i++)
+			osgiLogService.log(LogService.LOG_ERROR, "coalesced", exception);
+
+		long end = System.currentTimeMillis();
+		Thread.sleep(600);
+		Collection<LogEntry> logEntries = EChecker.getObjects(createResourceSet(), "junit", DB_LOGS);
+		assertThat(logEntries.size(), is(1));
+
+		LogEntry logEntry = logEntries.iterator().next();
+		assertThat(logEntry.getMessage(), is("coalesced"));
+		assertThat(logEntry.getExceptionMessage(), is("failed"));
+
+		DBObject dbObject = DB.getMongoDB().getCollection(DB_LOGS).findOne();
+		assertThat((Integer) dbObject.get(MongoDbLogListener.OCCURRENCES_KEY), is(5));
+
+		Date firstSeen = (Date) dbObject.get(MongoDbLogListener.FIRST_SEEN_KEY);
+		Date lastSeen = (Date) dbObject.get(MongoDbLogListener.LAST_SEEN_KEY);
+		assertThat(firstSeen, is(logEntry.getCreatedOn()));
+		assertTrue(firstSeen.getTime() >= start);
+		assertTrue(lastSeen.getTime() >= firstSeen.getTime());
+		assertTrue(lastSeen.getTime() <= end);
+	}
+
+	@Test
+	public void testOverflowDrop() throws InterruptedException, IOException
+	{
+		// Setup : Create a listener with a queue of two entries and a stalled writer
+
+		createListener(MongoDbLogListener.OVERFLOW_POLICY_DROP);
+
+		// Test : Log five entries
+
+		for (int i = 0; i < 5; i++)
+			listener.logged(createEntry(Integer.toString(i)));
+
+		int queued = listener.getQueuedEntryCount();
+		writerReleased.countDown();
+		listener.deactivate();
+
+		// Verify : Check that the first two entries were stored and the others were dropped
+
+		assertThat(queued, is(2));
+		assertThat(listener.getDroppedEntryCount(), is(3L));
+		assertThat(getMessages(), is(createSet("0", "1")));
+	}
+
+	@Test
+	public void testOverflowSample() throws InterruptedException, IOException
+	{
+		// Setup : Create a listener with a queue of two entries, a sample rate of two and a stalled
+		// writer
+
+		createListener(MongoDbLogListener.OVERFLOW_POLICY_SAMPLE);
+
+		// Test : Log five entries
+
+		for (int i = 0; i < 5; i++)
+			listener.logged(createEntry(Integer.toString(i)));
+
+		int queued = listener.getQueuedEntryCount();
+		writerReleased.countDown();
+		listener.deactivate();
+
+		// Verify : Check that every second overflowing entry replaced the oldest queued entry
+
+		assertThat(queued, is(2));
+		assertThat(listener.getDroppedEntryCount(), is(3L));
+		assertThat(getMessages(), is(createSet("1", "3")));
+	}
+
+	@Test
+	public void testOverflowBlock() throws InterruptedException, IOException
+	{
+		// Setup : Create a listener with a queue of two entries and a stalled writer
+
+		createListener(MongoDbLogListener.OVERFLOW_POLICY_BLOCK);
+
+		// Test : Fill the queue, then log a third entry from another thread
+
+		listener.logged(createEntry("0"));
+		listener.logged(createEntry("1"));
+
+		Thread logger = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				listener.logged(createEntry("2"));
+			}
+		});
+
+		logger.start();
+
+		for (int i = 0; i < 100 && logger.getState() != Thread.State.WAITING; i++)
+			Thread.sleep(10);
+
+		Thread.State blockedState = logger.getState();
+		writerReleased.countDown();
+		logger.join(1000);
+		listener.deactivate();
+
+		// Verify : Check that the third entry waited for space and no entries were dropped
+
+		assertThat(blockedState, is(Thread.State.WAITING));
+		assertThat(logger.isAlive(), is(false));
+		assertThat(listener.getDroppedEntryCount(), is(0L));
+		assertThat(getMessages(), is(createSet("0", "1", "2")));
+	}
+
+	@Test
+	public void testDeactivateAbandonedEntries() throws InterruptedException, IOException
+	{
+		// Setup : Create a listener with a stalled writer and fill its queue
+
+		createListener(MongoDbLogListener.OVERFLOW_POLICY_DROP);
+		listener.logged(createEntry("0"));
+		listener.logged(createEntry("1"));
+
+		// Test : Deactivate the listener without releasing the writer
+
+		listener.deactivate();
+
+		// Verify : Check that the queued entries were counted as dropped
+
+		assertThat(listener.getQueuedEntryCount(), is(0));
+		assertThat(listener.getDroppedEntryCount(), is(2L));
+	}
+
 	private ResourceSet createResourceSet()
 	{
 		return resourceSetFactory.createResourceSet();
 	}
 
+	/**
+	 * Creates a listener with a queue of two entries whose writer does not start reading the
+	 * queue until writerReleased is counted down.
+	 */
+	private void createListener(String overflowPolicy)
+	{
+		writerReleased = new CountDownLatch(1);
+		listener = new MongoDbLogListener();
+		listener.bindLogReaderService(createProxy(LogReaderService.class, new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				return null;
+			}
+		}));
+
+		listener.bindResourceSetFactory(createProxy(ResourceSetFactory.class, new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+			{
+				if (method.getName().equals("createResourceSet"))
+					writerReleased.await();
+
+				return method.invoke(resourceSetFactory, args);
+			}
+		}));
+
+		HashMap<String, Object> properties = new HashMap<String, Object>();
+		properties.put("uri", "mongodb://localhost/junit/logs/");
+		properties.put("logLevel", LogLevel.ERROR.getValue());
+		properties.put("batchSize", 10);
+		properties.put("queueSize", 2);
+		properties.put("flushInterval", 500);
+		properties.put("overflowPolicy", overflowPolicy);
+		properties.put("sampleRate", 2);
+		listener.activate(properties);
+	}
+
+	private org.osgi.service.log.LogEntry createEntry(final String message)
+	{
+		final long time = System.currentTimeMillis();
+
+		return createProxy(org.osgi.service.log.LogEntry.class, new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args)
+			{
+				if (method.getName().equals("getLevel"))
+					return LogService.LOG_ERROR;
+
+				if (method.getName().equals("getMessage"))
+					return message;
+
+				if (method.getName().equals("getTime"))
+					return time;
+
+				return null;
+			}
+		});
+	}
+
+	private <T> T createProxy(Class<T> type, InvocationHandler handler)
+	{
+		return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, handler));
+	}
+
+	private HashSet<String> getMessages() throws IOException
+	{
+		HashSet<String> messages = new HashSet<String>();
+
+		for (LogEntry logEntry : EChecker.<LogEntry> getObjects(createResourceSet(), "junit", DB_LOGS))
+			messages.add(logEntry.getMessage());
+
+		return messages;
+	}
+
+	private static HashSet<String> createSet(String... values)
+	{
+		return new HashSet<String>(Arrays.asList(values));
+	}
+
 	private void setLogLevel(LogLevel logLevel) throws IOException
+	{
+		setLogLevel(logLevel, new Hashtable<String, Object>());
+	}
+
+	private void setLogLevel(LogLevel logLevel, Hashtable<String, Object> properties) throws IOException
 	{
 		Configuration configuration = configurationAdmin.getConfiguration("org.eclipselabs.mongoemf.log", null);
-		Hashtable<String, Object> properties = new Hashtable<String, Object>();
 		properties.put("uri", "mongodb://localhost/junit/logs/");
 		properties.put("logLevel", logLevel.getValue());
 		configuration.update(properties);
@@ -16,21 +16,30 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EcoreFactory;
 import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipselabs.emodeling.ECollection;
 import org.eclipselabs.mongoemf.Options;
@@ -38,6 +47,9 @@ import org.eclipselabs.mongoemf.junit.model.ETypes;
 import org.eclipselabs.mongoemf.junit.model.PrimaryObject;
 import org.eclipselabs.mongoemf.junit.model.TargetObject;
 import org.eclipselabs.mongoemf.junit.support.TestHarness;
+import org.eclipselabs.mongoemf.model.MongoQueryResult;
+import org.eclipselabs.mongoemf.query.simple.InMemoryQueryEngine;
+import org.eclipselabs.mongoemf.query.simple.SimpleQueryEngine;
 import org.eclipselabs.mongoemf.query.simple.junit.model.Library;
 import org.eclipselabs.mongoemf.query.simple.junit.model.ModelPackage;
 import org.eclipselabs.mongoemf.query.simple.junit.model.Person;
@@ -346,6 +358,297 @@ public class TestMongoEmfQuery extends TestHarness
 		assertThat(eCollection.getValues().size(), is(1));
 	}
 
+	@Test
+	public void testQueryOrderBySkipLimit()
+	{
+		// Setup : Create authors, one of them named after a clause keyword
+
+		createAuthor("Dean Kontz");
+		createAuthor("Bryan Hunt");
+		createAuthor("Stephen King");
+		createAuthor("Ed Merks");
+		createAuthor("limit 1");
+
+		// Test : Query a page of the authors sorted by descending name, selecting only the name
+
+		String query = "name != 'limit 1' select name order by name desc skip 1 limit 2";
+		Resource resource = createResourceSet().getResource(createQueryURI(ModelPackage.Literals.PERSON, query), true);
+
+		InMemoryQueryEngine queryEngine = new InMemoryQueryEngine();
+		queryEngine.addAll(((ECollection) createResourceSet().getResource(createQueryURI(ModelPackage.Literals.PERSON, ""), true).getContents().get(0)).getValues());
+
+		// Verify : Check that the server and the in-memory engine return the second and third names
+
+		List<String> expected = new ArrayList<String>();
+		expected.add("Ed Merks");
+		expected.add("Dean Kontz");
+
+		assertThat(getNames(((ECollection) resource.getContents().get(0)).getValues()), is(expected));
+		assertThat(getNames(queryEngine.evaluate(query)), is(expected));
+	}
+
+	@Test
+	public void testInMemoryQuery()
+	{
+		// Setup : Create authors and load them all into an in-memory query engine with a sorted index on the name
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Dean Kontz");
+		createAuthor(null);
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		Resource resource = createResourceSet().getResource(createQueryURI(ModelPackage.Literals.PERSON, ""), true);
+		InMemoryQueryEngine queryEngine = new InMemoryQueryEngine();
+		queryEngine.addAll(((ECollection) resource.getContents().get(0)).getValues());
+		queryEngine.createIndex(ModelPackage.Literals.PERSON__NAME, true);
+
+		String[] queries = { "name == 'Ed Merks'", "name != 'Ed Merks'", "name == null", "name != null", "name >= 'Dean Kontz'", "name < 'Ed Merks'",
+				"(name > 'Bryan Hunt') && (name < 'Stephen King')", "(name == 'Bryan Hunt') || (name == 'Stephen King')", "(name != 'Dean Kontz') && (name != 'Stephen King')" };
+
+		for (String query : queries)
+		{
+			// Test : Run the query in memory and on the server
+
+			List<EObject> inMemoryResults = queryEngine.evaluate(query);
+			Resource serverResults = createResourceSet().getResource(createQueryURI(ModelPackage.Literals.PERSON, query), true);
+
+			// Verify : Check that both return the same authors in the same order
+
+			assertThat(query, getNames(inMemoryResults), is(getNames(((ECollection) serverResults.getContents().get(0)).getValues())));
+		}
+
+		// Test : Change a name after the index was built
+
+		((Person) queryEngine.evaluate("name == 'Ed Merks'").get(0)).setName("Edward Merks");
+
+		// Verify : Check that the index follows the change
+
+		assertThat(queryEngine.evaluate("name == 'Ed Merks'").size(), is(0));
+		assertThat(queryEngine.evaluate("name == 'Edward Merks'").size(), is(1));
+	}
+
+	@Test
+	public void testInMemoryQueryConcurrent() throws Exception
+	{
+		// Setup : Create authors, load them into an in-memory query engine, and evaluate each query once
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Dean Kontz");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		Resource resource = createResourceSet().getResource(createQueryURI(ModelPackage.Literals.PERSON, ""), true);
+		final InMemoryQueryEngine queryEngine = new InMemoryQueryEngine();
+		queryEngine.addAll(((ECollection) resource.getContents().get(0)).getValues());
+		queryEngine.createIndex(ModelPackage.Literals.PERSON__NAME, true);
+
+		final String[] queries = { "name == 'Ed Merks'", "name != 'Ed Merks'", "name >= 'Dean Kontz'", "(name > 'Bryan Hunt') && (name < 'Stephen King')" };
+		final List<List<String>> expected = new ArrayList<List<String>>();
+
+		for (String query : queries)
+			expected.add(getNames(queryEngine.evaluate(query)));
+
+		// Test : Evaluate the queries from several threads at the same time
+
+		ExecutorService executorService = Executors.newFixedThreadPool(4);
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+
+		try
+		{
+			for (int i = 0; i < 4; i++)
+			{
+				final int offset = i;
+
+				futures.add(executorService.submit(new Callable<Boolean>()
+				{
+					@Override
+					public Boolean call()
+					{
+						for (int j = 0; j < 1000; j++)
+						{
+							int index = (offset + j) % queries.length;
+
+							if (!getNames(queryEngine.evaluate(queries[index])).equals(expected.get(index)))
+								return false;
+						}
+
+						return true;
+					}
+				}));
+			}
+
+			// Verify : Check that every evaluation returned the same authors as the single evaluation
+
+			for (Future<Boolean> future : futures)
+				assertThat(future.get(30, TimeUnit.SECONDS), is(true));
+		}
+		finally
+		{
+			executorService.shutdown();
+		}
+	}
+
+	@Test
+	public void testQueryCountDistinctGroup()
+	{
+		// Setup : Create authors, two of them with the same name
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		// Test : Count, find the distinct names, and group the authors by name
+
+		ResourceSet resourceSet = createResourceSet();
+		MongoQueryResult count = (MongoQueryResult) resourceSet.getResource(createQueryURI(ModelPackage.Literals.PERSON, "name != 'Stephen King' select count"), true).getContents().get(0);
+		MongoQueryResult distinct = (MongoQueryResult) resourceSet.getResource(createQueryURI(ModelPackage.Literals.PERSON, "select distinct name"), true).getContents().get(0);
+		MongoQueryResult group = (MongoQueryResult) resourceSet.getResource(createQueryURI(ModelPackage.Literals.PERSON, "group by name select name, count as authors order by authors desc limit 1"), true)
+				.getContents().get(0);
+
+		// Verify : Check the count, the names, and that the most frequent name is counted twice
+
+		assertThat(count.getCount(), is(3L));
+
+		List<Object> names = new ArrayList<Object>(distinct.getValues());
+		Collections.sort(names, null);
+		assertThat(names, is(Arrays.<Object> asList("Bryan Hunt", "Ed Merks", "Stephen King")));
+
+		assertThat(group.getGroups().size(), is(1));
+		assertThat(group.getGroups().get(0).get("_id"), is((Object) "Ed Merks"));
+		assertThat(((Number) group.getGroups().get(0).get("authors")).intValue(), is(2));
+	}
+
+	@Test
+	public void testQueryContinuationToken() throws IOException
+	{
+		// Setup : Create authors, two of them with the same name
+
+		createAuthor("Stephen King");
+		createAuthor("Ed Merks");
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Dean Kontz");
+
+		// Test : Read the authors sorted by name two at a time, resuming each page from the token of
+		// the previous page
+
+		List<List<String>> pages = new ArrayList<List<String>>();
+		String token = null;
+
+		do
+		{
+			String query = "name != null order by name" + (token != null ? " after " + token : "") + " limit 2";
+			HashMap<Object, Object> response = new HashMap<Object, Object>();
+			HashMap<Object, Object> options = new HashMap<Object, Object>();
+			options.put(URIConverter.OPTION_RESPONSE, response);
+
+			Resource resource = createResourceSet().createResource(createQueryURI(ModelPackage.Literals.PERSON, query));
+			resource.load(options);
+			pages.add(getNames(((ECollection) resource.getContents().get(0)).getValues()));
+			token = (String) response.get(Options.RESPONSE_CONTINUATION_TOKEN);
+		}
+		while (token != null && pages.size() < 5);
+
+		// Verify : Check that each author was read once in order, and that the last page has no token
+
+		assertThat(pages.size(), is(3));
+		assertThat(pages.get(0), is(Arrays.asList("Bryan Hunt", "Dean Kontz")));
+		assertThat(pages.get(1), is(Arrays.asList("Ed Merks", "Ed Merks")));
+		assertThat(pages.get(2), is(Arrays.asList("Stephen King")));
+	}
+
+	@Test(expected = IOException.class)
+	public void testQueryContinuationTokenMissingSortKey() throws IOException
+	{
+		// Setup : Create authors, two of them without a name
+
+		createAuthor(null);
+		createAuthor(null);
+		createAuthor("Ed Merks");
+
+		// Test : Read the first page of the authors sorted by name, which ends with an author without
+		// a name
+
+		HashMap<Object, Object> options = new HashMap<Object, Object>();
+		options.put(URIConverter.OPTION_RESPONSE, new HashMap<Object, Object>());
+		createResourceSet().createResource(createQueryURI(ModelPackage.Literals.PERSON, "order by name limit 2")).load(options);
+	}
+
+	@Test
+	public void testQueryNormalization()
+	{
+		// Setup : Create authors
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Chris Smith");
+		createAuthor("Dean Kontz");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		// Test : Query with equalities on the same feature in a disjunction, and bounds and
+		// inequalities on the same feature in nested conjunctions
+
+		String or = "name == 'Bryan Hunt' || (name == 'Ed Merks' || name == 'Stephen King')";
+		String and = "(name > 'A' && name > 'Bryan Hunt') && ((name < 'Stephen King' && name != 'Dean Kontz') && name != 'Ed Merks')";
+		SimpleQueryEngine queryEngine = new SimpleQueryEngine();
+		DBObject orFilter = queryEngine.buildDBObjectQuery(createQueryURI(ModelPackage.Literals.PERSON, or)).getFilter();
+		DBObject andFilter = queryEngine.buildDBObjectQuery(createQueryURI(ModelPackage.Literals.PERSON, and)).getFilter();
+
+		ResourceSet resourceSet = createResourceSet();
+		Resource orResource = resourceSet.getResource(createQueryURI(ModelPackage.Literals.PERSON, or + " order by name"), true);
+		Resource andResource = resourceSet.getResource(createQueryURI(ModelPackage.Literals.PERSON, and), true);
+
+		// Verify : Check that the disjunction is an $in, that the conjunction is one bound
+		// document, and that the server returns the matching authors
+
+		DBObject in = new BasicDBObject("name", new BasicDBObject("$in", Arrays.asList("Bryan Hunt", "Ed Merks", "Stephen King")));
+		assertThat(orFilter, is(in));
+
+		DBObject range = new BasicDBObject("$gt", "Bryan Hunt");
+		range.put("$lt", "Stephen King");
+		range.put("$nin", Arrays.asList("Dean Kontz", "Ed Merks"));
+		assertThat(andFilter, is((DBObject) new BasicDBObject("name", range)));
+
+		assertThat(getNames(((ECollection) orResource.getContents().get(0)).getValues()), is(Arrays.asList("Bryan Hunt", "Ed Merks", "Stephen King")));
+		assertThat(getNames(((ECollection) andResource.getContents().get(0)).getValues()), is(Arrays.asList("Chris Smith")));
+	}
+
+	@Test
+	public void testQueryTypedLiterals() throws IOException
+	{
+		// Setup : Save an object with an int, a string and a converted BigDecimal value
+
+		ETypes eTypes = org.eclipselabs.mongoemf.junit.model.ModelFactory.eINSTANCE.createETypes();
+		eTypes.setEInt(5);
+		eTypes.setEString("5");
+		eTypes.setEBigDecimal(new BigDecimal("1.50"));
+		saveObject(eTypes);
+
+		// Test : Query each attribute with a literal of another type
+
+		EClass eClass = org.eclipselabs.mongoemf.junit.model.ModelPackage.Literals.ETYPES;
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_ECLASS, eClass);
+		Resource intResource = resourceSet.getResource(createQueryURI(eClass, "eInt == '5'"), true);
+		Resource stringResource = resourceSet.getResource(createQueryURI(eClass, "eString == 5"), true);
+		Resource bigDecimalResource = resourceSet.getResource(createQueryURI(eClass, "eBigDecimal == 1.50"), true);
+
+		// Verify : Check that the literals were converted to the stored values of the attributes
+
+		assertThat(((ECollection) intResource.getContents().get(0)).getValues().size(), is(1));
+		assertThat(((ECollection) stringResource.getContents().get(0)).getValues().size(), is(1));
+		assertThat(((ECollection) bigDecimalResource.getContents().get(0)).getValues().size(), is(1));
+
+		// Verify : Check that the in-memory evaluation converts the literals the same way
+
+		InMemoryQueryEngine queryEngine = new InMemoryQueryEngine();
+		queryEngine.add(eTypes);
+		assertThat(queryEngine.evaluate("eInt == '5'").size(), is(1));
+		assertThat(queryEngine.evaluate("eString == 5").size(), is(1));
+	}
+
 	@Ignore
 	@Test
 	public void testQueryWithInvalidOperator() throws IOException
@@ -469,6 +772,16 @@ public class TestMongoEmfQuery extends TestHarness
 		return proxyObject;
 	}
 
+	private List<String> getNames(List<EObject> persons)
+	{
+		List<String> names = new ArrayList<String>();
+
+		for (EObject person : persons)
+			names.add(((Person) person).getName());
+
+		return names;
+	}
+
 	private URI createQueryURI(EClass eClass, String query)
 	{
 		return createCollectionURI(eClass).appendQuery(URI.encodeQuery(query, false));